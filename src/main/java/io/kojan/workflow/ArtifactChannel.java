@@ -0,0 +1,134 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Artifact;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Artifacts of a single task, made available to streaming dependent tasks while the task is still
+ * running. Once the task finishes successfully, all artifacts of its final result are available.
+ *
+ * <p>All channels of a workflow execution share a single lock, so that a consumer can wait for
+ * artifacts from several channels at once. Paths of artifacts of the finished task are not
+ * resolved under the lock, as that may require extracting or decompressing them; consumers
+ * resolve them through the finished task after releasing the lock.
+ *
+ * @author Mikolaj Izdebski
+ */
+class ArtifactChannel {
+    private final Object lock;
+    private final List<Artifact> artifacts = new ArrayList<>();
+    private final List<Path> paths = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private FinishedTask finishedTask;
+    private String failure;
+
+    public ArtifactChannel(Object lock) {
+        this.lock = lock;
+    }
+
+    /**
+     * Creates a channel of a task that has already finished successfully.
+     *
+     * @param lock the lock shared by all channels
+     * @param finishedTask the finished task
+     * @return finished channel
+     */
+    public static ArtifactChannel ofFinishedTask(Object lock, FinishedTask finishedTask) {
+        ArtifactChannel channel = new ArtifactChannel(lock);
+        channel.finish(finishedTask);
+        return channel;
+    }
+
+    public Object getLock() {
+        return lock;
+    }
+
+    private void add(Artifact artifact, Path path) {
+        if (names.add(artifact.getName())) {
+            artifacts.add(artifact);
+            paths.add(path);
+        }
+    }
+
+    public void publish(Artifact artifact, Path path) {
+        synchronized (lock) {
+            if (finishedTask == null && failure == null) {
+                add(artifact, path);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    public void finish(FinishedTask finishedTask) {
+        synchronized (lock) {
+            if (failure == null) {
+                for (Artifact artifact : finishedTask.getResult().getArtifacts()) {
+                    add(artifact, null);
+                }
+                this.finishedTask = finishedTask;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    public void fail(String reason) {
+        synchronized (lock) {
+            if (finishedTask == null && failure == null) {
+                failure = reason;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    // The following methods must be called with the lock held
+
+    public boolean isFinished() {
+        return finishedTask != null || failure != null;
+    }
+
+    public FinishedTask getFinishedTask() {
+        return finishedTask;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public int size() {
+        return artifacts.size();
+    }
+
+    public Artifact getArtifact(int index) {
+        return artifacts.get(index);
+    }
+
+    /**
+     * Obtain path to a published artifact.
+     *
+     * @param index index of the artifact
+     * @return path to the artifact, or {@code null} if the artifact belongs to the result of the
+     *     finished task and its path has to be obtained through {@link #getFinishedTask()}
+     */
+    public Path getPath(int index) {
+        return paths.get(index);
+    }
+}
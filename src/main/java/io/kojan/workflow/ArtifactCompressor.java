@@ -0,0 +1,267 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Artifact;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stores artifact files in compressed form and decompresses them on access.
+ *
+ * <p>Artifacts are compressed with GZIP by a shared pool of daemon threads, each artifact file
+ * being replaced by a file with {@code .gz} suffix, which has the same POSIX mode. Artifacts in
+ * common compressed formats are recognized by their magic bytes and kept as they are without
+ * trying to compress them, and so are artifacts that do not compress well. Only regular files are
+ * compressed, artifacts that are directories or symbolic links are never compressed.
+ *
+ * @author Mikolaj Izdebski
+ */
+final class ArtifactCompressor {
+    /** Encoding of artifacts compressed with GZIP. */
+    static final String GZIP_ENCODING = "gzip";
+
+    private static final String GZIP_SUFFIX = ".gz";
+    private static final int BUFFER_SIZE = 65536;
+
+    // Artifacts which compressed size exceeds this fraction of original size are kept uncompressed
+    private static final double MAX_COMPRESSION_RATIO = 0.9;
+
+    // Magic bytes of GZIP, BZIP2, XZ, Zstandard and ZIP files
+    private static final byte[][] COMPRESSED_MAGICS = {
+        {0x1F, (byte) 0x8B},
+        {'B', 'Z', 'h'},
+        {(byte) 0xFD, '7', 'z', 'X', 'Z', 0},
+        {0x28, (byte) 0xB5, 0x2F, (byte) 0xFD},
+        {'P', 'K', 3, 4},
+    };
+
+    private static final ExecutorService POOL =
+            Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "artifact-compressor");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+    private ArtifactCompressor() {}
+
+    /**
+     * Determines name of the file in which artifact is stored, which is different from artifact
+     * name if the artifact is encoded.
+     *
+     * @param artifact the artifact
+     * @return name of the stored artifact file
+     */
+    static String getStoredName(Artifact artifact) {
+        if (GZIP_ENCODING.equals(artifact.getEncoding())) {
+            return artifact.getName() + GZIP_SUFFIX;
+        }
+        return artifact.getName();
+    }
+
+    /**
+     * Determines path to the file in which artifact is stored, which is different from artifact
+     * path if the artifact is encoded.
+     *
+     * @param resultDir result directory containing artifact files
+     * @param artifact the artifact
+     * @return path to the stored artifact file
+     */
+    static Path getStoredPath(Path resultDir, Artifact artifact) {
+        return resultDir.resolve(getStoredName(artifact));
+    }
+
+    private static boolean isCompressed(Path path) throws IOException {
+        byte[] header;
+        try (InputStream is = Files.newInputStream(path)) {
+            header = is.readNBytes(6);
+        }
+        for (byte[] magic : COMPRESSED_MAGICS) {
+            if (header.length >= magic.length
+                    && Arrays.equals(header, 0, magic.length, magic, 0, magic.length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies POSIX mode of a file to another file, if POSIX permissions are supported.
+     *
+     * @param source the file which mode is copied
+     * @param target the file which mode is set
+     * @throws IOException in case I/O error occurs when reading or setting the mode
+     */
+    static void copyMode(Path source, Path target) throws IOException {
+        PosixFileAttributeView sourceView =
+                Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        PosixFileAttributeView targetView =
+                Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (sourceView != null && targetView != null) {
+            targetView.setPermissions(sourceView.readAttributes().permissions());
+        }
+    }
+
+    private static boolean compress(Path path, Path compressedPath) throws IOException {
+        if (isCompressed(path)) {
+            return false;
+        }
+        try (InputStream is = Files.newInputStream(path);
+                OutputStream os =
+                        new GZIPOutputStream(Files.newOutputStream(compressedPath), BUFFER_SIZE)) {
+            is.transferTo(os);
+        }
+        if (Files.size(compressedPath) > Files.size(path) * MAX_COMPRESSION_RATIO) {
+            Files.delete(compressedPath);
+            return false;
+        }
+        copyMode(path, compressedPath);
+        Files.delete(path);
+        return true;
+    }
+
+    /**
+     * Compresses artifact files in parallel and waits until all of them are compressed.
+     *
+     * @param artifacts the artifacts to compress
+     * @param resultDir result directory containing artifact files
+     * @param compressedTypes predicate determining types of artifacts that should be compressed
+     * @return artifacts with encoding set for those that were compressed
+     * @throws IOException in case I/O error occurs when compressing artifact files
+     */
+    static List<Artifact> compressArtifacts(
+            List<Artifact> artifacts, Path resultDir, Predicate<String> compressedTypes)
+            throws IOException {
+        List<Future<Boolean>> compressions = new ArrayList<>(artifacts.size());
+        for (Artifact artifact : artifacts) {
+            Path path = resultDir.resolve(artifact.getName());
+            Path compressedPath = resultDir.resolve(artifact.getName() + GZIP_SUFFIX);
+            if (artifact.getEncoding() == null
+                    && compressedTypes.test(artifact.getType())
+                    && Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)
+                    && !Files.exists(compressedPath)) {
+                compressions.add(POOL.submit(() -> compress(path, compressedPath)));
+            } else {
+                compressions.add(null);
+            }
+        }
+        List<Artifact> compressed = new ArrayList<>(artifacts.size());
+        for (int i = 0; i < artifacts.size(); i++) {
+            Artifact artifact = artifacts.get(i);
+            Future<Boolean> compression = compressions.get(i);
+            if (compression != null && await(compression)) {
+                artifact =
+                        new Artifact(
+                                artifact.getType(),
+                                artifact.getName(),
+                                artifact.getSize(),
+                                artifact.getDigest(),
+                                GZIP_ENCODING);
+            }
+            compressed.add(artifact);
+        }
+        return compressed;
+    }
+
+    private static boolean await(Future<Boolean> compression) throws IOException {
+        try {
+            return compression.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compressing artifact", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Opens stored artifact file for reading its decoded content.
+     *
+     * @param resultDir result directory containing artifact files
+     * @param artifact the artifact to read
+     * @return input stream with decoded artifact content
+     * @throws IOException in case I/O error occurs when opening artifact file
+     */
+    static InputStream open(Path resultDir, Artifact artifact) throws IOException {
+        return decode(Files.newInputStream(getStoredPath(resultDir, artifact)), artifact);
+    }
+
+    /**
+     * Wraps a stream with stored content of an artifact in a stream decompressing it, if the
+     * artifact is stored in compressed form.
+     *
+     * @param is stream with stored content of the artifact
+     * @param artifact the artifact
+     * @return input stream with content of the artifact
+     * @throws IOException in case I/O error occurs when reading compression header
+     */
+    static InputStream decode(InputStream is, Artifact artifact) throws IOException {
+        if (GZIP_ENCODING.equals(artifact.getEncoding())) {
+            try {
+                return new GZIPInputStream(is, BUFFER_SIZE);
+            } catch (IOException e) {
+                is.close();
+                throw e;
+            }
+        }
+        return is;
+    }
+
+    /**
+     * Reads size of decompressed content recorded in trailer of GZIP file, which is the size
+     * modulo 2<sup>32</sup>.
+     *
+     * @param compressedPath path to GZIP file
+     * @return decompressed size modulo 2<sup>32</sup>
+     * @throws IOException in case I/O error occurs when reading the file
+     */
+    static long readDecompressedSize(Path compressedPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(compressedPath, StandardOpenOption.READ)) {
+            ByteBuffer trailer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            long position = channel.size() - 4;
+            while (trailer.hasRemaining()) {
+                if (position < 0 || channel.read(trailer, position + trailer.position()) < 0) {
+                    throw new IOException("Truncated GZIP file " + compressedPath);
+                }
+            }
+            return trailer.getInt(0) & 0xFFFFFFFFL;
+        }
+    }
+}
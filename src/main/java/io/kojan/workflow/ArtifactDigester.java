@@ -0,0 +1,346 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Artifact;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Computes and verifies sizes and content digests of artifacts.
+ *
+ * <p>Files are split into chunks, which are memory-mapped and hashed in parallel by a shared pool
+ * of daemon threads, so that large artifacts do not add serial latency. Digest of a file that fits
+ * in a single chunk is the SHA-256 of its content, digest of a larger file is the SHA-256 of
+ * concatenated SHA-256 digests of its chunks. Artifacts that are directories are digested as
+ * sorted list of relative paths of their files together with digests of the files. Size and
+ * digest of compressed artifacts refer to their decompressed content.
+ *
+ * @author Mikolaj Izdebski
+ */
+final class ArtifactDigester {
+    private static final long CHUNK_SIZE = 8 << 20;
+
+    private static final ExecutorService POOL =
+            Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "artifact-digester");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+    private ArtifactDigester() {}
+
+    // A regular file being digested, with digests of its chunks computed by the pool
+    private static class FileDigest {
+        private final Path relativePath;
+        private final long size;
+        private final List<Future<byte[]>> chunks = new ArrayList<>();
+
+        FileDigest(Path file, Path relativePath) throws IOException {
+            this.relativePath = relativePath;
+            size = Files.size(file);
+            long offset = 0;
+            do {
+                long start = offset;
+                long length = Math.min(CHUNK_SIZE, size - start);
+                chunks.add(POOL.submit(() -> digestChunk(file, start, length)));
+                offset += length;
+            } while (offset < size);
+        }
+
+        byte[] getDigest() throws IOException {
+            List<byte[]> digests = new ArrayList<>(chunks.size());
+            for (Future<byte[]> chunk : chunks) {
+                try {
+                    digests.add(chunk.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while computing artifact digest", e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException ioe) {
+                        throw ioe;
+                    }
+                    throw new IOException(e.getCause());
+                }
+            }
+            return combine(digests);
+        }
+    }
+
+    private static byte[] combine(List<byte[]> chunkDigests) {
+        if (chunkDigests.size() == 1) {
+            return chunkDigests.get(0);
+        }
+        MessageDigest md = newDigest();
+        for (byte[] digest : chunkDigests) {
+            md.update(digest);
+        }
+        return md.digest();
+    }
+
+    // Digests content read from a stream, split into chunks in the same way as files
+    private static byte[] digestStream(InputStream is) throws IOException {
+        List<byte[]> chunkDigests = new ArrayList<>();
+        MessageDigest md = newDigest();
+        byte[] buffer = new byte[65536];
+        long chunkLength = 0;
+        for (; ; ) {
+            int length = (int) Math.min(buffer.length, CHUNK_SIZE - chunkLength);
+            int n = is.readNBytes(buffer, 0, length);
+            if (n == 0) {
+                break;
+            }
+            md.update(buffer, 0, n);
+            chunkLength += n;
+            if (chunkLength == CHUNK_SIZE) {
+                chunkDigests.add(md.digest());
+                chunkLength = 0;
+            }
+        }
+        if (chunkLength > 0 || chunkDigests.isEmpty()) {
+            chunkDigests.add(md.digest());
+        }
+        return combine(chunkDigests);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] digestChunk(Path file, long offset, long length) throws IOException {
+        MessageDigest md = newDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            md.update(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+        }
+        return md.digest();
+    }
+
+    private static String toHex(byte[] digest) {
+        return new BigInteger(1, digest)
+                .setBit(digest.length << 3)
+                .toString(16)
+                .substring(1)
+                .toUpperCase();
+    }
+
+    private static List<Path> listFiles(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        // Symbolic links under directories are not followed, so that their targets are not
+        // counted as artifact content, which is how they are stored in result packs
+        try (Stream<Path> stream = Files.walk(path)) {
+            return stream.filter(file -> Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Computes sizes and digests of artifacts. Chunks of all artifact files are hashed in
+     * parallel. Artifacts which files do not exist are returned unchanged.
+     *
+     * @param artifacts the artifacts to digest
+     * @param resultDir result directory containing artifact files
+     * @return artifacts with their size and digest set
+     * @throws IOException in case I/O error occurs when reading artifact files
+     */
+    static List<Artifact> digestArtifacts(List<Artifact> artifacts, Path resultDir)
+            throws IOException {
+        // All chunks are submitted to the pool before waiting for any of them
+        List<List<FileDigest>> fileDigests = new ArrayList<>(artifacts.size());
+        for (Artifact artifact : artifacts) {
+            Path path = resultDir.resolve(artifact.getName());
+            List<FileDigest> files = null;
+            if (Files.exists(path)) {
+                files = new ArrayList<>();
+                for (Path file : listFiles(path)) {
+                    files.add(new FileDigest(file, path.relativize(file)));
+                }
+            }
+            fileDigests.add(files);
+        }
+        List<Artifact> digested = new ArrayList<>(artifacts.size());
+        for (int i = 0; i < artifacts.size(); i++) {
+            Artifact artifact = artifacts.get(i);
+            List<FileDigest> files = fileDigests.get(i);
+            long size = 0;
+            byte[] digest;
+            if (files == null) {
+                // Artifacts which files were not created are left as they are
+                digested.add(artifact);
+                continue;
+            }
+            if (!Files.isDirectory(resultDir.resolve(artifact.getName()))) {
+                size = files.get(0).size;
+                digest = files.get(0).getDigest();
+            } else {
+                MessageDigest md = newDigest();
+                for (FileDigest file : files) {
+                    size += file.size;
+                    md.update(file.relativePath.toString().getBytes());
+                    md.update(Byte.MIN_VALUE);
+                    md.update(file.getDigest());
+                }
+                digest = md.digest();
+            }
+            digested.add(new Artifact(artifact.getType(), artifact.getName(), size, toHex(digest)));
+        }
+        return digested;
+    }
+
+    /**
+     * Verifies that artifact files are intact. Size of each artifact is compared with its
+     * recorded size. Modification times are deliberately not compared with completion time of the
+     * result, as artifacts may have been produced on hosts with different clocks. Artifacts
+     * without recorded size are not verified.
+     *
+     * @param artifacts the artifacts to verify
+     * @param resultDir result directory containing artifact files
+     * @param fullDigest whether digests of artifacts should be recomputed and compared too
+     * @return whether all artifacts are intact
+     * @throws IOException in case I/O error occurs when reading artifact files
+     */
+    static boolean verifyArtifacts(
+            List<Artifact> artifacts, Path resultDir, boolean fullDigest) throws IOException {
+        List<Artifact> recorded = new ArrayList<>();
+        try {
+            for (Artifact artifact : artifacts) {
+                if (artifact.getSize() == null) {
+                    continue;
+                }
+                if (artifact.getEncoding() != null) {
+                    // Decompressed size modulo 2^32 is recorded in GZIP trailer
+                    Path storedPath = ArtifactCompressor.getStoredPath(resultDir, artifact);
+                    if (ArtifactCompressor.readDecompressedSize(storedPath)
+                            != (artifact.getSize() & 0xFFFFFFFFL)) {
+                        return false;
+                    }
+                    recorded.add(artifact);
+                    continue;
+                }
+                long size = 0;
+                for (Path file : listFiles(resultDir.resolve(artifact.getName()))) {
+                    size += Files.size(file);
+                }
+                if (size != artifact.getSize()) {
+                    return false;
+                }
+                recorded.add(artifact);
+            }
+            if (fullDigest) {
+                for (Artifact artifact : recorded) {
+                    if (artifact.getDigest() == null) {
+                        continue;
+                    }
+                    String digest;
+                    if (artifact.getEncoding() != null) {
+                        try (InputStream is = ArtifactCompressor.open(resultDir, artifact)) {
+                            digest = toHex(digestStream(is));
+                        }
+                    } else {
+                        digest = digestArtifacts(List.of(artifact), resultDir).get(0).getDigest();
+                    }
+                    if (!artifact.getDigest().equals(digest)) {
+                        return false;
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Verifies that artifacts of a packed result are intact. Size of each artifact is compared
+     * with the size of its files recorded in central directory of the pack. Artifacts without
+     * recorded size are not verified.
+     *
+     * @param artifacts the artifacts to verify
+     * @param pack the pack containing artifact files
+     * @param fullDigest whether digests of artifacts should be recomputed and compared too
+     * @return whether all artifacts are intact
+     * @throws IOException in case I/O error occurs when reading the pack
+     */
+    static boolean verifyPackedArtifacts(
+            List<Artifact> artifacts, ResultPack pack, boolean fullDigest) throws IOException {
+        for (Artifact artifact : artifacts) {
+            if (artifact.getSize() == null) {
+                continue;
+            }
+            String storedName = ArtifactCompressor.getStoredName(artifact);
+            if (pack.getEntries(storedName).isEmpty()) {
+                return false;
+            }
+            List<String> names = pack.getFiles(storedName);
+            if (artifact.getEncoding() == null) {
+                long size = 0;
+                for (String name : names) {
+                    size += pack.getLength(name);
+                }
+                if (size != artifact.getSize()) {
+                    return false;
+                }
+            }
+            if (!fullDigest || artifact.getDigest() == null) {
+                continue;
+            }
+            byte[] digest;
+            if (names.size() == 1 && names.get(0).equals(storedName)) {
+                try (InputStream is = ArtifactCompressor.decode(pack.open(storedName), artifact)) {
+                    digest = digestStream(is);
+                }
+            } else {
+                MessageDigest md = newDigest();
+                for (String name : names) {
+                    md.update(name.substring(storedName.length() + 1).getBytes());
+                    md.update(Byte.MIN_VALUE);
+                    try (InputStream is = pack.open(name)) {
+                        md.update(digestStream(is));
+                    }
+                }
+                digest = md.digest();
+            }
+            if (!artifact.getDigest().equals(toHex(digest))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
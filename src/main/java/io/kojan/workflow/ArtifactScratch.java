@@ -0,0 +1,151 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Temporary space holding decoded copies of artifacts which are needed as files but are not
+ * stored in plain form in their result directories. Copies are kept outside of result
+ * directories, so that stored results are never modified by their readers.
+ *
+ * <p>The space is created on first use and deleted together with all copies when it is closed.
+ * Copies requested after the space has been closed are created in a space shared by the whole JVM,
+ * which is deleted when the JVM exits. Directories which may still be read until the space is
+ * closed can be handed over to the space, so that they are deleted together with the copies, and
+ * so can registrations of readers of result directories, so that they are released together.
+ *
+ * @author Mikolaj Izdebski
+ */
+final class ArtifactScratch implements AutoCloseable {
+    private static final ArtifactScratch SHARED = new ArtifactScratch();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(SHARED::close, "artifact-scratch"));
+    }
+
+    private Path dir;
+    private boolean closed;
+    private final List<Path> discardedDirs = new ArrayList<>();
+    private final List<Closeable> readers = new ArrayList<>();
+
+    /**
+     * Obtain the scratch space shared by the whole JVM.
+     *
+     * @return the shared scratch space
+     */
+    static ArtifactScratch shared() {
+        return SHARED;
+    }
+
+    /**
+     * Creates a new empty directory for decoded copies of artifacts of a single result.
+     *
+     * @return path to the created directory
+     * @throws IOException in case I/O error occurs when creating the directory
+     */
+    Path createDirectory() throws IOException {
+        synchronized (this) {
+            if (!closed) {
+                if (dir == null) {
+                    dir = Files.createTempDirectory("kojan-artifacts-");
+                }
+                return Files.createTempDirectory(dir, "result-");
+            }
+            if (this == SHARED) {
+                throw new IOException("Artifact scratch space has been closed");
+            }
+        }
+        return SHARED.createDirectory();
+    }
+
+    /**
+     * Hands over a directory which is to be deleted when this space is closed. The directory is
+     * deleted immediately if the space has already been closed.
+     *
+     * @param discardedDir path to the directory
+     */
+    void discardOnClose(Path discardedDir) {
+        synchronized (this) {
+            if (!closed) {
+                discardedDirs.add(discardedDir);
+                return;
+            }
+        }
+        delete(discardedDir);
+    }
+
+    /**
+     * Hands over a registration of a reader of a result directory, which is to be released when
+     * this space is closed. Registrations handed over after the space has been closed are released
+     * when the JVM exits.
+     *
+     * @param reader the reader registration
+     */
+    void releaseOnClose(Closeable reader) {
+        synchronized (this) {
+            if (!closed) {
+                readers.add(reader);
+                return;
+            }
+            if (this == SHARED) {
+                close(reader);
+                return;
+            }
+        }
+        SHARED.releaseOnClose(reader);
+    }
+
+    private static void close(Closeable reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            // Registration is released when the JVM exits anyway
+        }
+    }
+
+    private static void delete(Path dir) {
+        try {
+            TaskAttempt.deleteDirectoryIfExists(dir);
+        } catch (IOException e) {
+            // Nothing more can be done about leftovers in temporary directory
+        }
+    }
+
+    /**
+     * Deletes all copies created in this space, as well as directories handed over to it, and
+     * releases reader registrations handed over to it.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Closeable reader : readers) {
+            close(reader);
+        }
+        readers.clear();
+        delete(dir);
+        dir = null;
+        for (Path discardedDir : discardedDirs) {
+            delete(discardedDir);
+        }
+        discardedDirs.clear();
+    }
+}
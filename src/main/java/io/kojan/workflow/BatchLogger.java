@@ -17,6 +17,7 @@ package io.kojan.workflow;
 
 import io.kojan.workflow.model.Task;
 import io.kojan.workflow.model.Workflow;
+import java.time.Duration;
 
 /**
  * @author Mikolaj Izdebski
@@ -57,11 +58,41 @@ class BatchLogger implements WorkflowExecutionListener {
                 finishedTask.getResult().getOutcomeReason());
     }
 
+    @Override
+    public void taskRetrying(
+            Workflow workflow, FinishedTask finishedTask, int attempt, Duration delay) {
+        log(
+                finishedTask.getTask(),
+                " attempt ",
+                attempt,
+                " finished; outcome is ",
+                finishedTask.getResult().getOutcome(),
+                ", reason: ",
+                finishedTask.getResult().getOutcomeReason(),
+                "; retrying in ",
+                delay);
+    }
+
     @Override
     public void taskReused(Workflow workflow, FinishedTask finishedTask) {
         log(finishedTask.getTask(), " cached result was reused");
     }
 
+    @Override
+    public void taskFailureReused(Workflow workflow, FinishedTask finishedTask) {
+        log(
+                finishedTask.getTask(),
+                " cached failure was reused; outcome is ",
+                finishedTask.getResult().getOutcome(),
+                ", reason: ",
+                finishedTask.getResult().getOutcomeReason());
+    }
+
+    @Override
+    public void resultPackingFailed(Workflow workflow, FinishedTask finishedTask, String reason) {
+        log(finishedTask.getTask(), " result could not be packed: ", reason);
+    }
+
     @Override
     public void workflowRunning(Workflow workflow) {
         log("Workflow running");
@@ -0,0 +1,84 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Task;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * A {@link TaskHandler} capable of executing many tasks at once, which allows the overhead of
+ * handler invocation to be amortized for tasks that are cheap to execute. Only handler cost is
+ * amortized; each task of a batch still has its own attempt, with its directories set up and its
+ * result published separately.
+ *
+ * <p>Tasks with the same {@link Task#getHandler()} value that become ready to be executed close
+ * to each other in time are coalesced into batches, bounded by {@link #getMaxBatchSize()} and
+ * {@link #getMaxBatchDelay()}. Each task still has its own working and result directories and
+ * produces its own result. Tasks waiting for their batch to be executed do not hold throttle
+ * capacity, which is held only by the task whose thread executes the whole batch.
+ *
+ * @author Mikolaj Izdebski
+ */
+public interface BatchTaskHandler extends TaskHandler {
+    /**
+     * Executes tasks in the specified contexts at once.
+     *
+     * <p>This method never returns and always throws appropriate {@link TaskTermination}
+     * throwable to indicate the outcome of execution, which applies to all tasks in the batch. If
+     * the outcome is other than {@link io.kojan.workflow.model.TaskOutcome#SUCCESS}, the batch
+     * consists of more than one task and {@link #isFailedBatchSplit()} is {@code true}, then each
+     * task of the batch is executed again individually with {@link
+     * #handleTask(TaskExecutionContext)}, so that the outcome can be attributed to particular
+     * tasks.
+     *
+     * @param contexts list of task execution contexts, one for each task in the batch
+     * @throws TaskTermination always to indicate outcome of batch execution
+     */
+    void handleTasks(List<TaskExecutionContext> contexts) throws TaskTermination;
+
+    /**
+     * Determines maximal number of tasks in a single batch.
+     *
+     * @return maximal batch size
+     */
+    default int getMaxBatchSize() {
+        return 100;
+    }
+
+    /**
+     * Determines maximal time for which execution of a batch may be delayed, waiting for more
+     * tasks to join the batch. Execution of a batch is not delayed once no more tasks with the
+     * same handler are about to join it.
+     *
+     * @return maximal batch delay
+     */
+    default Duration getMaxBatchDelay() {
+        return Duration.ofMillis(50);
+    }
+
+    /**
+     * Determines whether tasks of an unsuccessful batch of more than one task are executed again
+     * individually. Otherwise the outcome of the batch applies to all of its tasks.
+     *
+     * <p>The default implementation returns {@code true}.
+     *
+     * @return whether unsuccessful batches are split into individual tasks
+     */
+    default boolean isFailedBatchSplit() {
+        return true;
+    }
+}
@@ -0,0 +1,117 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Task;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * A {@link TaskHandlerFactory} that reuses {@link TaskHandler} instances created by another
+ * factory, so that handlers which are expensive to construct are created once per handler name
+ * rather than once per task.
+ *
+ * <p>Handlers that are thread-safe can be shared, in which case a single instance is used to
+ * handle all tasks with the same {@link Task#getHandler()} value, even concurrently. Otherwise
+ * handlers are pooled: each instance handles at most one task at a time, and is returned to the
+ * pool once the task has been handled.
+ *
+ * <p>Each created handler is warmed up by calling {@link TaskHandler#prepare()} before it is first
+ * used, and is closed by calling {@link TaskHandler#close()} when workflow execution is finished.
+ *
+ * @author Mikolaj Izdebski
+ */
+public class CachingTaskHandlerFactory implements TaskHandlerFactory {
+    private final TaskHandlerFactory delegate;
+    private final boolean shared;
+    private final Map<String, Deque<TaskHandler>> idleHandlers = new HashMap<>();
+    private final List<TaskHandler> createdHandlers = new ArrayList<>();
+
+    /**
+     * Creates a caching task handler factory.
+     *
+     * @param delegate factory that creates new handler instances
+     * @param shared whether handlers are thread-safe and a single instance can be shared by all
+     *     tasks using the same handler
+     */
+    public CachingTaskHandlerFactory(TaskHandlerFactory delegate, boolean shared) {
+        this.delegate = delegate;
+        this.shared = shared;
+    }
+
+    private synchronized Deque<TaskHandler> getIdleHandlers(Task task) {
+        return idleHandlers.computeIfAbsent(
+                task.getHandler(), handler -> new ConcurrentLinkedDeque<>());
+    }
+
+    private TaskHandler newTaskHandler(Task task) {
+        TaskHandler handler = delegate.createTaskHandler(task);
+        handler.prepare();
+        synchronized (this) {
+            createdHandlers.add(handler);
+        }
+        return handler;
+    }
+
+    @Override
+    public void prepareHandler(Task task) {
+        delegate.prepareHandler(task);
+        Deque<TaskHandler> idle = getIdleHandlers(task);
+        if (idle.isEmpty()) {
+            idle.add(newTaskHandler(task));
+        }
+    }
+
+    @Override
+    public TaskHandler createTaskHandler(Task task) {
+        Deque<TaskHandler> idle = getIdleHandlers(task);
+        if (shared) {
+            synchronized (idle) {
+                if (idle.isEmpty()) {
+                    idle.add(newTaskHandler(task));
+                }
+                return idle.getFirst();
+            }
+        }
+        TaskHandler handler = idle.pollFirst();
+        return handler != null ? handler : newTaskHandler(task);
+    }
+
+    @Override
+    public void releaseTaskHandler(Task task, TaskHandler handler) {
+        if (!shared) {
+            getIdleHandlers(task).addFirst(handler);
+        }
+    }
+
+    @Override
+    public void closeHandlers() {
+        List<TaskHandler> handlers;
+        synchronized (this) {
+            handlers = new ArrayList<>(createdHandlers);
+            createdHandlers.clear();
+            idleHandlers.clear();
+        }
+        for (TaskHandler handler : handlers) {
+            handler.close();
+        }
+        delegate.closeHandlers();
+    }
+}
@@ -18,7 +18,14 @@ package io.kojan.workflow;
 import io.kojan.workflow.model.Artifact;
 import io.kojan.workflow.model.Result;
 import io.kojan.workflow.model.Task;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Task which execution has been finished. A pair of {@link Task} and associated {@link Result}.
@@ -29,6 +36,11 @@ public class FinishedTask {
     private final Task task;
     private final Result result;
     private final Path resultDir;
+    private volatile Map<String, List<Artifact>> artifactIndex;
+    private volatile ResultPack pack;
+    private final ArtifactScratch scratch;
+    private Path scratchDir;
+    private boolean readerRegistered;
 
     /**
      * Creates a finished task object.
@@ -38,9 +50,14 @@ public class FinishedTask {
      * @param resultDir path to directory containing task {@link Artifact}s
      */
     public FinishedTask(Task task, Result result, Path resultDir) {
+        this(task, result, resultDir, ArtifactScratch.shared());
+    }
+
+    FinishedTask(Task task, Result result, Path resultDir, ArtifactScratch scratch) {
         this.task = task;
         this.result = result;
         this.resultDir = resultDir;
+        this.scratch = scratch;
     }
 
     /**
@@ -61,13 +78,148 @@ public class FinishedTask {
         return result;
     }
 
+    Path getResultDir() {
+        return resultDir;
+    }
+
+    // Result directory is not packed and deleted while its artifacts may be read, until the
+    // workflow execution that produced this object finishes
+    private synchronized void registerReader() throws IOException {
+        if (readerRegistered || resultDir == null) {
+            return;
+        }
+        try {
+            scratch.releaseOnClose(ResultLock.acquireReader(resultDir));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while registering reader of " + resultDir, e);
+        }
+        readerRegistered = true;
+    }
+
+    // Pack is opened only once some artifact is actually missing from the result directory
+    private ResultPack getPack(Artifact artifact) throws IOException {
+        registerReader();
+        if (Files.exists(ArtifactCompressor.getStoredPath(resultDir, artifact))) {
+            return null;
+        }
+        ResultPack pack = this.pack;
+        if (pack == null) {
+            Path packPath = ResultPack.getPackPath(resultDir);
+            if (!Files.isRegularFile(packPath)) {
+                return null;
+            }
+            pack = ResultPack.open(packPath);
+            this.pack = pack;
+        }
+        return pack;
+    }
+
     /**
-     * Obtain path to the specified task artifact.
+     * Obtain path to the specified task artifact. Artifacts of packed results are extracted from
+     * the pack, and artifacts stored in compressed form are decompressed, to temporary copies
+     * when their path is first obtained. The copies are deleted once the workflow execution that
+     * produced this object finishes; {@link #openArtifact(Artifact)} should be preferred for
+     * reading such artifacts.
      *
      * @param artifact artifact of which path should be returned
      * @return path to the specified task artifact
      */
     public Path getArtifact(Artifact artifact) {
+        try {
+            if (artifact.getEncoding() != null) {
+                return decodeToScratch(artifact);
+            }
+            ResultPack pack = getPack(artifact);
+            if (pack != null) {
+                return extractToScratch(pack, artifact);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
         return resultDir.resolve(artifact.getName());
     }
+
+    private synchronized Path getScratchDir() throws IOException {
+        if (scratchDir == null || !Files.isDirectory(scratchDir)) {
+            scratchDir = scratch.createDirectory();
+        }
+        return scratchDir;
+    }
+
+    private synchronized Path extractToScratch(ResultPack pack, Artifact artifact)
+            throws IOException {
+        Path dir = getScratchDir();
+        String storedName = ArtifactCompressor.getStoredName(artifact);
+        pack.extract(storedName, dir);
+        return dir.resolve(storedName);
+    }
+
+    // Packed artifact is extracted before it is decoded, so that the copy gets its mode
+    private synchronized Path decodeToScratch(Artifact artifact) throws IOException {
+        Path copy = getScratchDir().resolve(artifact.getName());
+        if (!Files.exists(copy)) {
+            ResultPack pack = getPack(artifact);
+            Path storedPath =
+                    pack != null
+                            ? extractToScratch(pack, artifact)
+                            : ArtifactCompressor.getStoredPath(resultDir, artifact);
+            Files.createDirectories(copy.getParent());
+            try (InputStream is =
+                    ArtifactCompressor.decode(Files.newInputStream(storedPath), artifact)) {
+                Files.copy(is, copy);
+                ArtifactCompressor.copyMode(storedPath, copy);
+            } catch (IOException e) {
+                Files.deleteIfExists(copy);
+                throw e;
+            } finally {
+                if (pack != null) {
+                    Files.deleteIfExists(storedPath);
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Open the specified task artifact for reading. Artifacts stored in compressed form are
+     * decompressed as they are read, without decompressing them to a file, and artifacts of
+     * packed results are read directly from the pack.
+     *
+     * @param artifact artifact which should be opened
+     * @return input stream with content of the artifact
+     * @throws IOException in case I/O error occurs when opening the artifact
+     */
+    public InputStream openArtifact(Artifact artifact) throws IOException {
+        ResultPack pack = getPack(artifact);
+        if (pack != null) {
+            String storedName = ArtifactCompressor.getStoredName(artifact);
+            return ArtifactCompressor.decode(pack.open(storedName), artifact);
+        }
+        return ArtifactCompressor.open(resultDir, artifact);
+    }
+
+    /**
+     * Obtain paths to task artifacts of given type, in the order in which they are listed in the
+     * result. Artifacts are indexed by their type when this method is first called.
+     *
+     * @param type type of artifacts to obtain
+     * @return list of paths to matching artifacts
+     */
+    public List<Path> getArtifacts(String type) {
+        Map<String, List<Artifact>> index = artifactIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Artifact artifact : result.getArtifacts()) {
+                index.computeIfAbsent(artifact.getType(), t -> new ArrayList<>()).add(artifact);
+            }
+            artifactIndex = index;
+        }
+        List<Artifact> artifacts = index.getOrDefault(type, List.of());
+        List<Path> paths = new ArrayList<>(artifacts.size());
+        for (Artifact artifact : artifacts) {
+            paths.add(getArtifact(artifact));
+        }
+        return paths;
+    }
 }
@@ -17,8 +17,20 @@ package io.kojan.workflow;
 
 import io.kojan.workflow.model.Task;
 import io.kojan.workflow.model.Workflow;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Logger that displays task events together with a status line summarizing workflow progress.
+ * Listener methods only update counters and queue events; output is rendered by a background
+ * thread at a fixed rate, so that frequent events do not make the terminal a bottleneck. At most a
+ * fixed number of events is queued between frames; when more events arrive, they are counted and
+ * only their number is displayed.
+ *
  * @author Mikolaj Izdebski
  */
 class InteractiveLogger implements WorkflowExecutionListener {
@@ -41,69 +53,136 @@ class InteractiveLogger implements WorkflowExecutionListener {
         }
     }
 
-    private final int taskCount;
-    private int nRunning;
-    private int nSucceeded;
-    private int nFailed;
-    private int len;
+    private static final long REDRAW_INTERVAL_MILLIS = 100;
+    private static final int MAX_QUEUED_EVENTS = 1000;
+
+    private static class Event {
+        private final Color color;
+        private final Object[] args;
+
+        Event(Color color, Object[] args) {
+            this.color = color;
+            this.args = args;
+        }
+    }
+
+    private final PrintStream out;
+    private final AtomicInteger taskCount;
+    private final AtomicInteger nRunning = new AtomicInteger();
+    private final AtomicInteger nSucceeded = new AtomicInteger();
+    private final AtomicInteger nFailed = new AtomicInteger();
+    private final AtomicInteger nReused = new AtomicInteger();
+    private final Queue<Event> events = new ArrayBlockingQueue<>(MAX_QUEUED_EVENTS);
+    private final AtomicInteger droppedEvents = new AtomicInteger();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Thread renderThread;
+    private long startTime;
 
     public InteractiveLogger(int taskCount) {
-        this.taskCount = taskCount;
+        this(taskCount, System.err);
     }
 
+    InteractiveLogger(int taskCount, PrintStream out) {
+        this.out = out;
+        this.taskCount = new AtomicInteger(taskCount);
+        renderThread = new Thread(this::renderLoop, "interactive-logger");
+        renderThread.setDaemon(true);
+    }
+
+    // Events are only queued by producers, and rendered by background thread at fixed rate
     private void log(Color color, Object... args) {
-        StringBuilder sb = new StringBuilder();
+        if (!events.offer(new Event(color, args))) {
+            droppedEvents.incrementAndGet();
+        }
+        if (started.compareAndSet(false, true)) {
+            startTime = System.nanoTime();
+            renderThread.start();
+        }
+    }
 
-        sb.append('\r');
-        sb.append(new String(new byte[len]).replace('\0', ' '));
-        sb.append('\r');
+    private void renderLoop() {
+        try {
+            for (; ; ) {
+                Thread.sleep(REDRAW_INTERVAL_MILLIS);
+                render();
+            }
+        } catch (InterruptedException e) {
+            // Workflow finished, final state is rendered by the finishing thread
+        }
+    }
 
-        sb.append(color);
-        for (Object arg : args) {
-            sb.append(arg.toString());
+    private static void appendCount(StringBuilder sb, String label, Color color, int count) {
+        if (count != 0) {
+            sb.append(label).append(": ").append(color).append(count).append(Color.RESET);
+            sb.append(", ");
         }
-        sb.append(Color.RESET);
-        sb.append('\n');
-
-        len = sb.length();
-        sb.append("[ Tasks: ");
-        if (nRunning != 0) {
-            sb.append("running: ")
-                    .append(Color.RUNNING)
-                    .append(nRunning)
-                    .append(Color.RESET)
-                    .append(", ");
+    }
+
+    private synchronized void render() {
+        StringBuilder sb = new StringBuilder();
+        for (Event event; (event = events.poll()) != null; ) {
+            sb.append("\r\033[2K").append(event.color);
+            for (Object arg : event.args) {
+                sb.append(arg);
+            }
+            sb.append(Color.RESET).append('\n');
         }
-        if (nSucceeded != 0) {
-            sb.append("succeeded: ")
-                    .append(Color.SUCCEEDED)
-                    .append(nSucceeded)
-                    .append(Color.RESET)
-                    .append(", ");
+        int dropped = droppedEvents.getAndSet(0);
+        if (dropped != 0) {
+            sb.append("\r\033[2K... ").append(dropped).append(" more events\n");
         }
-        if (nFailed != 0) {
-            sb.append("failed: ")
-                    .append(Color.FAILED)
-                    .append(nFailed)
-                    .append(Color.RESET)
-                    .append(", ");
+
+        int succeeded = nSucceeded.get();
+        int failed = nFailed.get();
+        int reused = nReused.get();
+        sb.append("\r\033[2K[ Tasks: ");
+        appendCount(sb, "running", Color.RUNNING, nRunning.get());
+        appendCount(sb, "succeeded", Color.SUCCEEDED, succeeded);
+        appendCount(sb, "failed", Color.FAILED, failed);
+        appendCount(sb, "reused", Color.REUSED, reused);
+        sb.append("all: ").append(taskCount.get());
+
+        // Throughput and ETA are based on executed tasks only, reused tasks take no time
+        double elapsed = (System.nanoTime() - startTime) / 1e9;
+        int executed = succeeded + failed;
+        if (executed != 0 && elapsed > 0) {
+            double throughput = executed / elapsed;
+            long remaining = Math.max(0, taskCount.get() - executed - reused);
+            sb.append(String.format(", %.1f tasks/s", throughput));
+            if (remaining != 0) {
+                sb.append(", ETA: ")
+                        .append(Duration.ofSeconds((long) Math.ceil(remaining / throughput)));
+            }
         }
-        sb.append("all: ").append(taskCount).append(" ]");
-        len = sb.length() - len;
+        sb.append(" ]");
 
-        System.err.print(sb);
+        out.print(sb);
+        out.flush();
+    }
+
+    private void finish(Color color, String message) {
+        log(color, message);
+        renderThread.interrupt();
+        try {
+            renderThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        render();
+        out.println();
     }
 
     @Override
     public void taskRunning(Workflow workflow, Task task) {
-        nRunning++;
+        nRunning.incrementAndGet();
         log(Color.RUNNING, task, " running");
     }
 
     @Override
     public void taskSucceeded(Workflow workflow, FinishedTask finishedTask) {
-        nRunning--;
-        nSucceeded++;
+        nRunning.decrementAndGet();
+        nSucceeded.incrementAndGet();
+        taskCount.set(workflow.getTasks().size());
         log(
                 Color.SUCCEEDED,
                 finishedTask.getTask(),
@@ -115,8 +194,8 @@ class InteractiveLogger implements WorkflowExecutionListener {
 
     @Override
     public void taskFailed(Workflow workflow, FinishedTask finishedTask) {
-        nRunning--;
-        nFailed++;
+        nRunning.decrementAndGet();
+        nFailed.incrementAndGet();
         log(
                 Color.FAILED,
                 finishedTask.getTask(),
@@ -126,12 +205,54 @@ class InteractiveLogger implements WorkflowExecutionListener {
                 finishedTask.getResult().getOutcomeReason());
     }
 
+    @Override
+    public void taskRetrying(
+            Workflow workflow, FinishedTask finishedTask, int attempt, Duration delay) {
+        nRunning.decrementAndGet();
+        log(
+                Color.FAILED,
+                finishedTask.getTask(),
+                " attempt ",
+                attempt,
+                " finished; outcome is ",
+                finishedTask.getResult().getOutcome(),
+                ", reason: ",
+                finishedTask.getResult().getOutcomeReason(),
+                "; retrying in ",
+                delay);
+    }
+
     @Override
     public void taskReused(Workflow workflow, FinishedTask finishedTask) {
-        nSucceeded++;
+        nReused.incrementAndGet();
+        taskCount.set(workflow.getTasks().size());
         log(Color.REUSED, finishedTask.getTask(), " cached result was reused");
     }
 
+    @Override
+    public void taskFailureReused(Workflow workflow, FinishedTask finishedTask) {
+        nFailed.incrementAndGet();
+        log(
+                Color.FAILED,
+                finishedTask.getTask(),
+                " cached failure was reused; outcome is ",
+                finishedTask.getResult().getOutcome(),
+                ", reason: ",
+                finishedTask.getResult().getOutcomeReason());
+    }
+
+    // Results are packed after the workflow finished and the status line is no longer rendered
+    @Override
+    public synchronized void resultPackingFailed(
+            Workflow workflow, FinishedTask finishedTask, String reason) {
+        out.println(
+                Color.FAILED
+                        + finishedTask.getTask().toString()
+                        + " result could not be packed: "
+                        + reason
+                        + Color.RESET);
+    }
+
     @Override
     public void workflowRunning(Workflow workflow) {
         log(Color.RUNNING, "Workflow running");
@@ -139,13 +260,11 @@ class InteractiveLogger implements WorkflowExecutionListener {
 
     @Override
     public void workflowSucceeded(Workflow workflow) {
-        log(Color.SUCCEEDED, "Workflow complete");
-        System.err.println();
+        finish(Color.SUCCEEDED, "Workflow complete");
     }
 
     @Override
     public void workflowFailed(Workflow workflow) {
-        log(Color.FAILED, "Workflow INCOMPLETE");
-        System.err.println();
+        finish(Color.FAILED, "Workflow INCOMPLETE");
     }
 }
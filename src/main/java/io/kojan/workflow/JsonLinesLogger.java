@@ -0,0 +1,322 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Result;
+import io.kojan.workflow.model.Task;
+import io.kojan.workflow.model.Workflow;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An event listener that writes machine-readable log of workflow execution in JSON Lines format,
+ * one JSON object per event.
+ *
+ * <p>Each record contains event name and time, and depending on the event also task ID, result
+ * ID, outcome, outcome reason, start and finish timestamps and duration in milliseconds. Records
+ * are written to the log file asynchronously by a background thread, which flushes the file
+ * periodically and when workflow execution finishes, so that listener methods do not block on
+ * I/O. At most a fixed number of records is kept in memory; when the background thread falls that
+ * far behind, listener methods wait until it catches up, so that no records are lost.
+ *
+ * @author Mikolaj Izdebski
+ */
+public class JsonLinesLogger implements WorkflowExecutionListener, Closeable {
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int MAX_PENDING_RECORDS = 10000;
+
+    private final Writer writer;
+    private final Thread writerThread;
+    private List<String> pendingRecords = new ArrayList<>();
+    private long appendedCount;
+    private long writtenCount;
+    private boolean flushRequested;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Creates a JSON Lines logger writing to given file. The file is created, or truncated if it
+     * exists.
+     *
+     * @param path path to the log file
+     * @throws IOException in case I/O error occurs when opening the log file
+     */
+    public JsonLinesLogger(Path path) throws IOException {
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        writerThread = new Thread(this::writeLoop, "json-lines-logger");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private void writeLoop() {
+        try {
+            for (boolean done = false; !done; ) {
+                List<String> batch;
+                synchronized (this) {
+                    if (!closed && !flushRequested && pendingRecords.size() < MAX_PENDING_RECORDS) {
+                        wait(FLUSH_INTERVAL_MILLIS);
+                    }
+                    done = closed;
+                    flushRequested = false;
+                    batch = pendingRecords;
+                    pendingRecords = new ArrayList<>();
+                    notifyAll();
+                }
+                IOException error = null;
+                try {
+                    for (String record : batch) {
+                        writer.write(record);
+                        writer.write('\n');
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    error = e;
+                }
+                synchronized (this) {
+                    if (error != null && failure == null) {
+                        failure = error;
+                    }
+                    writtenCount += batch.size();
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static StringBuilder beginRecord(String event) {
+        StringBuilder sb = new StringBuilder("{\"event\":");
+        appendString(sb, event);
+        sb.append(",\"time\":");
+        appendString(sb, LocalDateTime.now().toString());
+        return sb;
+    }
+
+    private static void appendField(StringBuilder sb, String name, String value) {
+        sb.append(",\"").append(name).append("\":");
+        appendString(sb, value);
+    }
+
+    private static void appendField(StringBuilder sb, String name, long value) {
+        sb.append(",\"").append(name).append("\":").append(value);
+    }
+
+    private static void appendFinishedTask(StringBuilder sb, FinishedTask finishedTask) {
+        Result result = finishedTask.getResult();
+        appendField(sb, "task", finishedTask.getTask().getId());
+        appendField(sb, "result", result.getId());
+        appendField(sb, "outcome", String.valueOf(result.getOutcome()));
+        appendField(sb, "reason", result.getOutcomeReason());
+        if (result.getTimeStarted() != null) {
+            appendField(sb, "started", result.getTimeStarted().toString());
+        }
+        if (result.getTimeFinished() != null) {
+            appendField(sb, "finished", result.getTimeFinished().toString());
+        }
+        if (result.getTimeStarted() != null && result.getTimeFinished() != null) {
+            appendField(
+                    sb,
+                    "durationMillis",
+                    Duration.between(result.getTimeStarted(), result.getTimeFinished())
+                            .toMillis());
+        }
+    }
+
+    private static void appendWorkflow(StringBuilder sb, Workflow workflow) {
+        appendField(sb, "tasks", workflow.getTasks().size());
+        appendField(sb, "results", workflow.getResults().size());
+    }
+
+    private synchronized void log(StringBuilder record) {
+        boolean interrupted = false;
+        while (!closed && pendingRecords.size() >= MAX_PENDING_RECORDS && writerThread.isAlive()) {
+            notifyAll();
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (!closed) {
+            pendingRecords.add(record.append('}').toString());
+            appendedCount++;
+        }
+    }
+
+    private synchronized void requestFlush() {
+        flushRequested = true;
+        notifyAll();
+    }
+
+    /**
+     * Waits until all records logged so far are written to the log file and flushed.
+     *
+     * @throws IOException in case I/O error occurred when writing the log file
+     */
+    public synchronized void flush() throws IOException {
+        long target = appendedCount;
+        requestFlush();
+        while (writtenCount < target && writerThread.isAlive()) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while flushing JSON Lines log", e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes all pending records and closes the log file.
+     *
+     * @throws IOException in case I/O error occurred when writing or closing the log file
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+        synchronized (this) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    @Override
+    public void taskRunning(Workflow workflow, Task task) {
+        StringBuilder sb = beginRecord("taskRunning");
+        appendField(sb, "task", task.getId());
+        log(sb);
+    }
+
+    @Override
+    public void taskSucceeded(Workflow workflow, FinishedTask finishedTask) {
+        StringBuilder sb = beginRecord("taskSucceeded");
+        appendFinishedTask(sb, finishedTask);
+        log(sb);
+    }
+
+    @Override
+    public void taskFailed(Workflow workflow, FinishedTask finishedTask) {
+        StringBuilder sb = beginRecord("taskFailed");
+        appendFinishedTask(sb, finishedTask);
+        log(sb);
+    }
+
+    @Override
+    public void taskRetrying(
+            Workflow workflow, FinishedTask finishedTask, int attempt, Duration delay) {
+        StringBuilder sb = beginRecord("taskRetrying");
+        appendFinishedTask(sb, finishedTask);
+        appendField(sb, "attempt", attempt);
+        appendField(sb, "delayMillis", delay.toMillis());
+        log(sb);
+    }
+
+    @Override
+    public void taskReused(Workflow workflow, FinishedTask finishedTask) {
+        StringBuilder sb = beginRecord("taskReused");
+        appendFinishedTask(sb, finishedTask);
+        log(sb);
+    }
+
+    @Override
+    public void taskFailureReused(Workflow workflow, FinishedTask finishedTask) {
+        StringBuilder sb = beginRecord("taskFailureReused");
+        appendFinishedTask(sb, finishedTask);
+        log(sb);
+    }
+
+    @Override
+    public void resultPackingFailed(Workflow workflow, FinishedTask finishedTask, String reason) {
+        StringBuilder sb = beginRecord("resultPackingFailed");
+        appendFinishedTask(sb, finishedTask);
+        appendField(sb, "packingFailure", reason);
+        log(sb);
+    }
+
+    @Override
+    public void workflowRunning(Workflow workflow) {
+        StringBuilder sb = beginRecord("workflowRunning");
+        appendWorkflow(sb, workflow);
+        log(sb);
+    }
+
+    @Override
+    public void workflowSucceeded(Workflow workflow) {
+        StringBuilder sb = beginRecord("workflowSucceeded");
+        appendWorkflow(sb, workflow);
+        log(sb);
+        requestFlush();
+    }
+
+    @Override
+    public void workflowFailed(Workflow workflow) {
+        StringBuilder sb = beginRecord("workflowFailed");
+        appendWorkflow(sb, workflow);
+        log(sb);
+        requestFlush();
+    }
+}
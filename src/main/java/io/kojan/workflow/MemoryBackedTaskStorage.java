@@ -0,0 +1,116 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Task;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * A {@link TaskStorage} that places task working directories on a memory-backed file system, such
+ * as tmpfs, so that handlers producing lots of intermediate files do not compete with results for
+ * disk bandwidth.
+ *
+ * <p>Memory used by working directories is limited by a budget. Each task is expected to use a
+ * certain amount of memory for its working directory, which is reserved for as long as the task
+ * is being handled. Tasks which reservation does not fit in the remaining budget, or in free
+ * space of the memory-backed file system, get working directories from the delegate storage
+ * instead. Result directories are always obtained from the delegate storage.
+ *
+ * @author Mikolaj Izdebski
+ */
+public class MemoryBackedTaskStorage implements TaskStorage {
+    private final TaskStorage delegate;
+    private final Path memoryDir;
+    private final long memoryBudget;
+    private final ToLongFunction<Task> workDirSize;
+    private final Map<Path, Long> reservations = new HashMap<>();
+    private long reservedMemory;
+
+    /**
+     * Creates a memory-backed task storage.
+     *
+     * @param delegate storage providing result directories, and working directories that do not
+     *     fit in memory budget
+     * @param memoryDir directory on a memory-backed file system under which working directories
+     *     are placed
+     * @param memoryBudget maximal total size of working directories placed in memory, in bytes
+     * @param workDirSize function determining expected size of working directory of given task, in
+     *     bytes
+     */
+    public MemoryBackedTaskStorage(
+            TaskStorage delegate,
+            Path memoryDir,
+            long memoryBudget,
+            ToLongFunction<Task> workDirSize) {
+        this.delegate = delegate;
+        this.memoryDir = memoryDir;
+        this.memoryBudget = memoryBudget;
+        this.workDirSize = workDirSize;
+    }
+
+    @Override
+    public Path getResultDir(Task task, String resultId) {
+        return delegate.getResultDir(task, resultId);
+    }
+
+    private boolean hasFreeSpace(long size) {
+        try {
+            Files.createDirectories(memoryDir);
+            return Files.getFileStore(memoryDir).getUsableSpace() >= size;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public synchronized Path getWorkDir(Task task, String resultId) {
+        long size = workDirSize.applyAsLong(task);
+        Path workDir = memoryDir.resolve(resultId);
+        if (reservedMemory + size <= memoryBudget
+                && !reservations.containsKey(workDir)
+                && hasFreeSpace(size)) {
+            reservations.put(workDir, size);
+            reservedMemory += size;
+            return workDir;
+        }
+        return delegate.getWorkDir(task, resultId);
+    }
+
+    @Override
+    public synchronized void releaseWorkDir(Task task, String resultId, Path workDir) {
+        Long size = reservations.remove(workDir);
+        if (size != null) {
+            reservedMemory -= size;
+        } else {
+            delegate.releaseWorkDir(task, resultId, workDir);
+        }
+    }
+
+    /**
+     * Determines amount of memory currently reserved for working directories of tasks being
+     * handled.
+     *
+     * @return reserved memory, in bytes
+     */
+    public synchronized long getReservedMemory() {
+        return reservedMemory;
+    }
+}
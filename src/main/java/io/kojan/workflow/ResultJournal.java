@@ -0,0 +1,422 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Result;
+import io.kojan.workflow.model.TaskOutcome;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of task {@link Result}s, which allows execution of a workflow to be resumed
+ * quickly after the executing process has died.
+ *
+ * <p>Results appended to the journal are written to the journal file by a background thread in
+ * batches (group commit), so that threads finishing tasks are never blocked by file I/O. Each
+ * record is protected by a checksum; when the journal is opened, all valid records are replayed,
+ * records which cannot be decoded are skipped and any torn record left by an interrupted write is
+ * discarded.
+ *
+ * <p>When a batch of results cannot be written, the journal file is truncated back to the end of
+ * the last committed record and the error is reported by {@link #flush()}. The journal remains
+ * usable, so that results appended later are still committed.
+ *
+ * <p>The journal file is locked while the journal is open, so that it cannot be used by more than
+ * one journal at a time. When the journal file contains obsolete records, it is compacted when
+ * opened, so that it contains only the most recent result of each task, together with the most
+ * recent successful result of that task, if different.
+ *
+ * @author Mikolaj Izdebski
+ */
+public class ResultJournal implements Closeable {
+    /** Determines when journal data is forced to the storage device. */
+    public enum SyncPolicy {
+        /** Journal data is never forced explicitly, it is left to the operating system. */
+        NEVER,
+        /** Journal data is forced when the journal is flushed or closed. */
+        ON_FLUSH,
+        /** Journal data is forced after every group commit. */
+        ON_COMMIT
+    }
+
+    private final Path path;
+    private final SyncPolicy syncPolicy;
+    private FileChannel channel;
+    private long committedSize;
+    private final List<Result> replayedResults;
+    private final Thread writerThread;
+    private List<Result> pendingResults = new ArrayList<>();
+    private long appendedCount;
+    private long committedCount;
+    private final List<FailedBatch> failedBatches = new ArrayList<>();
+    private long reportedCount;
+    private int activeFlushes;
+    private boolean closed;
+
+    /**
+     * Opens a result journal, creating the journal file if it does not exist yet. Results recorded
+     * in an existing journal file are replayed and made available through {@link
+     * #getReplayedResults()}.
+     *
+     * @param path path to the journal file
+     * @param syncPolicy policy determining when journal data is forced to the storage device
+     * @throws IOException in case I/O error occurs when opening or reading the journal file, or
+     *     the journal file is locked by another journal
+     */
+    public ResultJournal(Path path, SyncPolicy syncPolicy) throws IOException {
+        this.path = path;
+        this.syncPolicy = syncPolicy;
+        channel = openLocked(path, StandardOpenOption.CREATE);
+        try {
+            replayedResults = Collections.unmodifiableList(replay());
+        } catch (IOException | RuntimeException e) {
+            try {
+                channel.close();
+            } catch (IOException ce) {
+                e.addSuppressed(ce);
+            }
+            throw e;
+        }
+        writerThread = new Thread(this::writeLoop, "result-journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private static FileChannel openLocked(Path path, StandardOpenOption mode) throws IOException {
+        FileChannel channel =
+                FileChannel.open(path, mode, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                throw new IOException("Result journal " + path + " is locked by another process");
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            try {
+                channel.close();
+            } catch (IOException ce) {
+                e.addSuppressed(ce);
+            }
+            if (e instanceof OverlappingFileLockException) {
+                throw new IOException("Result journal " + path + " is already open", e);
+            }
+            throw e;
+        }
+        return channel;
+    }
+
+    // Range of sequence numbers of appended results which could not be committed
+    private record FailedBatch(long start, long end, IOException error) {}
+
+    private List<Result> replay() throws IOException {
+        List<Result> results = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(8);
+        long position = 0;
+        int skipped = 0;
+        long size = channel.size();
+        while (position + 8 <= size) {
+            header.clear();
+            readFully(header, position);
+            int length = header.getInt(0);
+            int checksum = header.getInt(4);
+            if (length <= 0 || position + 8 + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(payload, position + 8);
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            position += 8 + length;
+            try {
+                results.add(Result.readFromBinary(new ByteArrayInputStream(payload.array())));
+            } catch (IOException | RuntimeException e) {
+                // Record is intact, but its content is not a valid result; it is dropped when
+                // the journal is compacted
+                skipped++;
+            }
+        }
+        // Discard torn or corrupted tail, so that new records are appended after the last valid one
+        channel.truncate(position);
+        channel.position(position);
+        committedSize = position;
+        List<Result> compacted = compact(results);
+        if (skipped > 0 || compacted.size() < results.size()) {
+            rewrite(compacted);
+        }
+        return compacted;
+    }
+
+    private static List<Result> compact(List<Result> results) {
+        Map<String, Integer> last = new HashMap<>();
+        Map<String, Integer> lastSuccessful = new HashMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            last.put(result.getTaskId(), i);
+            if (result.getOutcome() == TaskOutcome.SUCCESS) {
+                lastSuccessful.put(result.getTaskId(), i);
+            }
+        }
+        List<Result> compacted = new ArrayList<>(last.size());
+        for (int i = 0; i < results.size(); i++) {
+            String taskId = results.get(i).getTaskId();
+            Integer index = i;
+            if (index.equals(last.get(taskId)) || index.equals(lastSuccessful.get(taskId))) {
+                compacted.add(results.get(i));
+            }
+        }
+        return compacted;
+    }
+
+    // Compacted records are written to a new file, which atomically replaces the journal file only
+    // once complete, so that no records are lost if the process dies while compacting
+    private void rewrite(List<Result> results) throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".compact");
+        Files.deleteIfExists(tempPath);
+        FileChannel newChannel = openLocked(tempPath, StandardOpenOption.CREATE_NEW);
+        try {
+            write(newChannel, encode(results));
+            newChannel.force(false);
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            try {
+                newChannel.close();
+                Files.deleteIfExists(tempPath);
+            } catch (IOException ce) {
+                e.addSuppressed(ce);
+            }
+            throw e;
+        }
+        channel.close();
+        channel = newChannel;
+        committedSize = channel.size();
+        channel.position(committedSize);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal file");
+            }
+        }
+    }
+
+    /**
+     * Obtain results that were recorded in the journal file at the time the journal was opened,
+     * in the order in which they were appended.
+     *
+     * @return list of replayed results
+     */
+    public List<Result> getReplayedResults() {
+        return replayedResults;
+    }
+
+    /**
+     * Appends a result to the journal. The result is written to the journal file asynchronously;
+     * use {@link #flush()} to wait until it is committed.
+     *
+     * @param result the result to append
+     */
+    public synchronized void append(Result result) {
+        if (closed) {
+            throw new IllegalStateException("Result journal is closed");
+        }
+        pendingResults.add(result);
+        appendedCount++;
+        notifyAll();
+    }
+
+    private void writeLoop() {
+        try {
+            for (; ; ) {
+                List<Result> batch;
+                synchronized (this) {
+                    while (pendingResults.isEmpty() && !closed) {
+                        wait();
+                    }
+                    if (pendingResults.isEmpty()) {
+                        return;
+                    }
+                    batch = pendingResults;
+                    pendingResults = new ArrayList<>();
+                }
+                IOException error = null;
+                try {
+                    commit(batch);
+                } catch (IOException e) {
+                    error = e;
+                } catch (RuntimeException e) {
+                    // Writer thread must survive results that cannot be encoded
+                    error = new IOException("Unable to encode results", e);
+                }
+                synchronized (this) {
+                    if (error != null) {
+                        failedBatches.add(
+                                new FailedBatch(
+                                        committedCount, committedCount + batch.size(), error));
+                    }
+                    committedCount += batch.size();
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void commit(List<Result> batch) throws IOException {
+        byte[] bytes = encode(batch);
+        try {
+            // Records are written at the end of the last committed record, even if truncation of
+            // a previously failed batch has failed too
+            channel.position(committedSize);
+            write(channel, bytes);
+            if (channel.size() > channel.position()) {
+                channel.truncate(channel.position());
+            }
+            if (syncPolicy == SyncPolicy.ON_COMMIT) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            // Remove partially written records, so that records appended later are not hidden
+            // behind them when the journal is replayed
+            try {
+                channel.truncate(committedSize);
+                channel.position(committedSize);
+            } catch (IOException te) {
+                e.addSuppressed(te);
+            }
+            throw e;
+        }
+        committedSize = channel.position();
+    }
+
+    private static byte[] encode(List<Result> batch) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        for (Result result : batch) {
+            record.reset();
+            result.writeToBinary(record);
+            CRC32 crc = new CRC32();
+            crc.update(record.toByteArray());
+            ByteBuffer header = ByteBuffer.allocate(8);
+            header.putInt(record.size()).putInt((int) crc.getValue());
+            bos.write(header.array());
+            record.writeTo(bos);
+        }
+        return bos.toByteArray();
+    }
+
+    private static void write(FileChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Waits until all results appended so far are committed to the journal file, and forces them
+     * to the storage device if required by sync policy.
+     *
+     * <p>Failure to commit a batch of results is reported by every flush waiting for any of these
+     * results, which was started before the failure was reported by some other flush. Failures of
+     * earlier batches do not affect flushes started later.
+     *
+     * @throws IOException in case I/O error occurred when writing the journal file
+     */
+    public void flush() throws IOException {
+        synchronized (this) {
+            long start = reportedCount;
+            long target = appendedCount;
+            IOException failure = null;
+            activeFlushes++;
+            try {
+                while (committedCount < target && writerThread.isAlive()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while flushing result journal", e);
+                    }
+                }
+                for (FailedBatch batch : failedBatches) {
+                    if (batch.end() > start && batch.start() < target) {
+                        if (failure == null) {
+                            failure =
+                                    new IOException(
+                                            "Failed to commit results to journal " + path,
+                                            batch.error());
+                        } else {
+                            failure.addSuppressed(batch.error());
+                        }
+                    }
+                }
+            } finally {
+                activeFlushes--;
+                reportedCount = Math.max(reportedCount, target);
+                if (activeFlushes == 0) {
+                    failedBatches.removeIf(batch -> batch.end() <= reportedCount);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+        if (syncPolicy != SyncPolicy.NEVER) {
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Commits all pending results and closes the journal.
+     *
+     * @throws IOException in case I/O error occurred when writing or closing the journal file
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            channel.close();
+        }
+    }
+}
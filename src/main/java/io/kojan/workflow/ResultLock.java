@@ -0,0 +1,327 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock of a task result directory, held while the directory is probed for a cached
+ * result or replaced by a newly produced result, so that no task observes a result being
+ * published, even across JVMs sharing the same task storage.
+ *
+ * <p>Production of a result can also be claimed, see {@link #claim(Path)}. The claim is held from
+ * the time the cache is found not to contain a reusable result until a new result is published,
+ * so that tasks producing the same result, in this or other JVMs, wait for the first one and then
+ * reuse its result rather than executing the same task concurrently.
+ *
+ * <p>Threads of the same JVM are serialized by an in-memory lock registry, and different JVMs by
+ * advisory file locks. Rather than leaving a lock file behind for every result directory, all
+ * result directories under the same parent share a single lock file, in which each directory
+ * locks a single byte selected by hash of its name. Directories which hash to the same byte are
+ * serialized too, which is harmless as locks are held only briefly, and claims of such
+ * directories are rare. The lock file is kept open for as long as any lock in it is used.
+ *
+ * <p>Result directories can also be registered as being read, which prevents the directory from
+ * being packed, deleted or replaced for as long as any reader is registered, see {@link
+ * #excludeReaders()}. Each directory has a second byte in the lock file, on which all processes
+ * with registered readers hold a shared lock, and a third byte locked by the claim. Readers of
+ * directories which hash to the same bytes prevent each other from being packed or replaced,
+ * which only leaves some directories unpacked or some results unpublished.
+ *
+ * <p>Locks held by other processes are polled for, as blocking on them would close the shared
+ * lock file when the waiting thread is interrupted, releasing locks held by other threads.
+ *
+ * @author Mikolaj Izdebski
+ */
+final class ResultLock implements Closeable {
+    static final String LOCK_FILE_NAME = ".result-locks";
+    private static final int SLOT_COUNT = 1 << 20;
+    private static final long MAX_POLL_MILLIS = 100;
+    private static final Map<String, Entry> LOCKS = new HashMap<>();
+    private static final Map<Path, LockFile> LOCK_FILES = new HashMap<>();
+
+    private static class LockFile {
+        private final Path path;
+        private final FileChannel channel;
+        private int users;
+
+        LockFile(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+    }
+
+    private static class Entry {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final String key;
+        private final LockFile lockFile;
+        private final long position;
+        private int users;
+        // Guarded by the entry
+        private int readers;
+        private FileLock readerLock;
+        private boolean readersExcluded;
+        private boolean claimed;
+
+        Entry(String key, LockFile lockFile, long position) {
+            this.key = key;
+            this.lockFile = lockFile;
+            this.position = position;
+        }
+    }
+
+    private final Entry entry;
+    private final FileLock fileLock;
+    private final boolean claim;
+    private FileLock readerExclusion;
+
+    private ResultLock(Entry entry, FileLock fileLock, boolean claim) {
+        this.entry = entry;
+        this.fileLock = fileLock;
+        this.claim = claim;
+    }
+
+    // Registers a user of the entry of given result directory, opening the lock file if needed
+    private static Entry reference(Path resultDir) throws IOException {
+        Path dir = resultDir.toAbsolutePath().normalize();
+        Path lockFilePath = dir.resolveSibling(LOCK_FILE_NAME);
+        int slot = Math.floorMod(dir.getFileName().toString().hashCode(), SLOT_COUNT);
+        String key = lockFilePath + ":" + slot;
+        synchronized (LOCKS) {
+            Entry entry = LOCKS.get(key);
+            if (entry == null) {
+                LockFile lockFile = LOCK_FILES.get(lockFilePath);
+                if (lockFile == null) {
+                    Files.createDirectories(dir.getParent());
+                    FileChannel channel =
+                            FileChannel.open(
+                                    lockFilePath,
+                                    StandardOpenOption.CREATE,
+                                    StandardOpenOption.READ,
+                                    StandardOpenOption.WRITE);
+                    lockFile = new LockFile(lockFilePath, channel);
+                    LOCK_FILES.put(lockFilePath, lockFile);
+                }
+                lockFile.users++;
+                entry = new Entry(key, lockFile, 3L * slot);
+                LOCKS.put(key, entry);
+            }
+            entry.users++;
+            return entry;
+        }
+    }
+
+    private static void release(Entry entry) {
+        synchronized (LOCKS) {
+            if (--entry.users == 0) {
+                LOCKS.remove(entry.key);
+                LockFile lockFile = entry.lockFile;
+                if (--lockFile.users == 0) {
+                    LOCK_FILES.remove(lockFile.path);
+                    try {
+                        lockFile.channel.close();
+                    } catch (IOException e) {
+                        // Locks are released when the channel is closed, even if it fails
+                    }
+                }
+            }
+        }
+    }
+
+    // Non-blocking attempts to lock do not close the channel when the thread is interrupted
+    private static FileLock lockRegion(FileChannel channel, long position, boolean shared)
+            throws IOException, InterruptedException {
+        for (long delay = 1; ; delay = Math.min(delay * 2, MAX_POLL_MILLIS)) {
+            FileLock fileLock = channel.tryLock(position, 1, shared);
+            if (fileLock != null) {
+                return fileLock;
+            }
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * Acquires lock of given result directory, waiting until it is released by other threads or
+     * processes. The lock must be released by the same thread. Waiting for the lock can be
+     * interrupted.
+     *
+     * @param resultDir the result directory to lock
+     * @return acquired lock
+     * @throws IOException in case I/O error occurs when opening or locking the lock file
+     * @throws InterruptedException if the thread is interrupted while waiting for the lock
+     */
+    public static ResultLock acquire(Path resultDir) throws IOException, InterruptedException {
+        Entry entry = reference(resultDir);
+        try {
+            entry.lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            release(entry);
+            throw e;
+        }
+        try {
+            return new ResultLock(
+                    entry, lockRegion(entry.lockFile.channel, entry.position, false), false);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            entry.lock.unlock();
+            release(entry);
+            throw e;
+        }
+    }
+
+    /**
+     * Claims production of the result stored in given result directory, waiting until the claim
+     * is released by other threads or processes. Unlike the lock of the result directory, the
+     * claim does not exclude probing the directory or registering its readers, and it can be
+     * released by any thread. Waiting for the claim can be interrupted.
+     *
+     * @param resultDir the result directory to claim
+     * @return acquired claim
+     * @throws IOException in case I/O error occurs when opening or locking the lock file
+     * @throws InterruptedException if the thread is interrupted while waiting for the claim
+     */
+    public static ResultLock claim(Path resultDir) throws IOException, InterruptedException {
+        Entry entry = reference(resultDir);
+        try {
+            synchronized (entry) {
+                while (entry.claimed) {
+                    entry.wait();
+                }
+                entry.claimed = true;
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            release(entry);
+            throw e;
+        }
+        try {
+            return new ResultLock(
+                    entry, lockRegion(entry.lockFile.channel, entry.position + 2, false), true);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            unclaim(entry);
+            release(entry);
+            throw e;
+        }
+    }
+
+    private static void unclaim(Entry entry) {
+        synchronized (entry) {
+            entry.claimed = false;
+            entry.notifyAll();
+        }
+    }
+
+    /**
+     * Registers a reader of given result directory, waiting while the directory is being packed
+     * by another thread or process. The returned lock only registers the reader, it does not
+     * exclude other threads or processes, and it can be released by any thread.
+     *
+     * @param resultDir the result directory to be read
+     * @return lock which unregisters the reader when it is closed
+     * @throws IOException in case I/O error occurs when opening or locking the lock file
+     * @throws InterruptedException if the thread is interrupted while waiting for the lock
+     */
+    public static ResultLock acquireReader(Path resultDir)
+            throws IOException, InterruptedException {
+        Entry entry = reference(resultDir);
+        try {
+            synchronized (entry) {
+                while (entry.readersExcluded) {
+                    entry.wait();
+                }
+                if (entry.readers == 0) {
+                    entry.readerLock =
+                            lockRegion(entry.lockFile.channel, entry.position + 1, true);
+                }
+                entry.readers++;
+            }
+            return new ResultLock(entry, null, false);
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            release(entry);
+            throw e;
+        }
+    }
+
+    /**
+     * Prevents readers from being registered until this lock is released, provided that no
+     * readers of the locked result directory are registered in any process, so that the
+     * directory can be packed and deleted.
+     *
+     * @return {@code true} if readers are excluded, {@code false} if some readers are registered
+     * @throws IOException in case I/O error occurs when locking the lock file
+     */
+    public boolean excludeReaders() throws IOException {
+        synchronized (entry) {
+            if (entry.readers != 0) {
+                return false;
+            }
+            readerExclusion = entry.lockFile.channel.tryLock(entry.position + 1, 1, false);
+            entry.readersExcluded = readerExclusion != null;
+            return entry.readersExcluded;
+        }
+    }
+
+    /**
+     * Releases the lock.
+     *
+     * @throws IOException in case I/O error occurs when unlocking the lock file
+     */
+    @Override
+    public void close() throws IOException {
+        if (claim) {
+            try {
+                fileLock.release();
+            } finally {
+                unclaim(entry);
+                release(entry);
+            }
+            return;
+        }
+        if (fileLock == null) {
+            try {
+                synchronized (entry) {
+                    if (--entry.readers == 0) {
+                        entry.readerLock.release();
+                        entry.readerLock = null;
+                    }
+                }
+            } finally {
+                release(entry);
+            }
+            return;
+        }
+        try {
+            if (readerExclusion != null) {
+                synchronized (entry) {
+                    entry.readersExcluded = false;
+                    entry.notifyAll();
+                    readerExclusion.release();
+                }
+            }
+            fileLock.release();
+        } finally {
+            entry.lock.unlock();
+            release(entry);
+        }
+    }
+}
@@ -0,0 +1,506 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Artifact;
+import io.kojan.workflow.model.Result;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Archive of a finished task result packed in a single file, which replaces the result
+ * directory, so that millions of results do not need millions of directories and files.
+ *
+ * <p>A pack file starts with magic bytes and format version, followed by content of all stored
+ * artifact files, followed by a central directory listing relative path, type, POSIX mode,
+ * offset and length of each entry, together with the {@link Result} in binary form. Entries are
+ * regular files, directories, including empty ones, and symbolic links, which content is their
+ * target. The file ends with the offset of the central directory and magic bytes again. Packs are
+ * read with random access through memory mapping: only the central directory is read when a pack
+ * is opened, and artifact files are read or extracted on demand. Extracted entries get their
+ * types and modes back, so that packing does not change artifacts.
+ *
+ * @author Mikolaj Izdebski
+ */
+final class ResultPack {
+    private static final byte[] MAGIC = {'K', 'W', 'F', 'P'};
+    private static final int VERSION = 2;
+    private static final byte FILE = 0;
+    private static final byte DIRECTORY = 1;
+    private static final byte SYMLINK = 2;
+    private static final PosixFilePermission[] MODE_BITS = {
+        PosixFilePermission.OTHERS_EXECUTE,
+        PosixFilePermission.OTHERS_WRITE,
+        PosixFilePermission.OTHERS_READ,
+        PosixFilePermission.GROUP_EXECUTE,
+        PosixFilePermission.GROUP_WRITE,
+        PosixFilePermission.GROUP_READ,
+        PosixFilePermission.OWNER_EXECUTE,
+        PosixFilePermission.OWNER_WRITE,
+        PosixFilePermission.OWNER_READ,
+    };
+    private static final int TRAILER_SIZE = 8 + MAGIC.length;
+    private static final long WINDOW_SIZE = 64 << 20;
+
+    private final Path packPath;
+    private final Result result;
+    private final Map<String, Entry> entries;
+
+    private record Entry(byte type, int mode, long offset, long length) {}
+
+    private ResultPack(Path packPath, Result result, Map<String, Entry> entries) {
+        this.packPath = packPath;
+        this.result = result;
+        this.entries = entries;
+    }
+
+    /**
+     * Determines path to the pack file of given result directory.
+     *
+     * @param resultDir the result directory
+     * @return path to the pack file
+     */
+    static Path getPackPath(Path resultDir) {
+        return resultDir.resolveSibling(resultDir.getFileName() + ".pack");
+    }
+
+    private static List<Path> listEntries(Path path) throws IOException {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            return List.of();
+        }
+        try (Stream<Path> stream = Files.walk(path)) {
+            return stream.sorted().toList();
+        }
+    }
+
+    private static byte getType(Path path) {
+        if (Files.isSymbolicLink(path)) {
+            return SYMLINK;
+        }
+        if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            return DIRECTORY;
+        }
+        return Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS) ? FILE : -1;
+    }
+
+    // Mode is -1 where POSIX permissions are not supported, and for symbolic links
+    private static int getMode(Path path, byte type) throws IOException {
+        PosixFileAttributeView view =
+                Files.getFileAttributeView(
+                        path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (view == null || type == SYMLINK) {
+            return -1;
+        }
+        Set<PosixFilePermission> permissions = view.readAttributes().permissions();
+        int mode = 0;
+        for (int i = 0; i < MODE_BITS.length; i++) {
+            if (permissions.contains(MODE_BITS[i])) {
+                mode |= 1 << i;
+            }
+        }
+        return mode;
+    }
+
+    private static void setMode(Path path, int mode) throws IOException {
+        PosixFileAttributeView view =
+                Files.getFileAttributeView(
+                        path, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS);
+        if (view == null || mode < 0) {
+            return;
+        }
+        Set<PosixFilePermission> permissions = EnumSet.noneOf(PosixFilePermission.class);
+        for (int i = 0; i < MODE_BITS.length; i++) {
+            if ((mode & 1 << i) != 0) {
+                permissions.add(MODE_BITS[i]);
+            }
+        }
+        view.setPermissions(permissions);
+    }
+
+    private static String entryName(Path resultDir, Path file) {
+        String separator = file.getFileSystem().getSeparator();
+        return resultDir.relativize(file).toString().replace(separator, "/");
+    }
+
+    /**
+     * Packs stored artifact files of a successful result into a pack file, and deletes the result
+     * directory. The pack file appears atomically. Results with artifacts stored as symbolic links
+     * or special files, or containing special files, are left unpacked, as their packs would not
+     * be faithful copies of them.
+     *
+     * @param resultDir the result directory to pack
+     * @param result the result
+     * @return {@code true} if the result was packed, {@code false} if it was left unpacked
+     * @throws IOException in case I/O error occurs when packing the result
+     */
+    static boolean pack(Path resultDir, Result result) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        for (Artifact artifact : result.getArtifacts()) {
+            Path storedPath = ArtifactCompressor.getStoredPath(resultDir, artifact);
+            List<Path> artifactPaths = listEntries(storedPath);
+            if (!artifactPaths.isEmpty() && getType(storedPath) == SYMLINK) {
+                return false;
+            }
+            for (Path path : artifactPaths) {
+                if (getType(path) < 0) {
+                    return false;
+                }
+            }
+            paths.addAll(artifactPaths);
+        }
+        Path packPath = getPackPath(resultDir);
+        Path temp =
+                Files.createTempFile(packPath.getParent(), packPath.getFileName() + ".", ".tmp");
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream directory = new DataOutputStream(bos);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 4);
+                write(channel, header.put(MAGIC).putInt(VERSION).flip());
+                directory.writeInt(paths.size());
+                for (Path path : paths) {
+                    byte type = getType(path);
+                    long offset = channel.position();
+                    if (type == FILE) {
+                        try (FileChannel source = FileChannel.open(path, StandardOpenOption.READ)) {
+                            long length = source.size();
+                            for (long n = 0; n < length; ) {
+                                n += source.transferTo(n, length - n, channel);
+                            }
+                            channel.position(offset + length);
+                        }
+                    } else if (type == SYMLINK) {
+                        String target = Files.readSymbolicLink(path).toString();
+                        write(channel, ByteBuffer.wrap(target.getBytes(StandardCharsets.UTF_8)));
+                    }
+                    byte[] name = entryName(resultDir, path).getBytes(StandardCharsets.UTF_8);
+                    directory.writeInt(name.length);
+                    directory.write(name);
+                    directory.writeByte(type);
+                    directory.writeInt(getMode(path, type));
+                    directory.writeLong(offset);
+                    directory.writeLong(channel.position() - offset);
+                }
+                ByteArrayOutputStream resultBytes = new ByteArrayOutputStream();
+                result.writeToBinary(resultBytes);
+                directory.writeInt(resultBytes.size());
+                resultBytes.writeTo(directory);
+                directory.flush();
+                long directoryOffset = channel.position();
+                write(channel, ByteBuffer.wrap(bos.toByteArray()));
+                ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+                write(channel, trailer.putLong(directoryOffset).put(MAGIC).flip());
+            }
+            Files.move(
+                    temp,
+                    packPath,
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        TaskAttempt.deleteDirectoryIfExists(resultDir);
+        return true;
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Opens a pack file, reading its central directory.
+     *
+     * @param packPath path to the pack file
+     * @return the opened pack
+     * @throws IOException in case I/O error occurs when reading the pack file or it is not a valid
+     *     pack file
+     */
+    static ResultPack open(Path packPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(packPath, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < MAGIC.length + 4 + TRAILER_SIZE) {
+                throw new IOException("Truncated result pack " + packPath);
+            }
+            MappedByteBuffer header =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, MAGIC.length + 4);
+            MappedByteBuffer trailer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, size - TRAILER_SIZE, TRAILER_SIZE);
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            int version = header.getInt();
+            long directoryOffset = trailer.getLong();
+            byte[] trailerMagic = new byte[MAGIC.length];
+            trailer.get(trailerMagic);
+            if (!Arrays.equals(magic, MAGIC) || !Arrays.equals(trailerMagic, MAGIC)) {
+                throw new IOException("Not a result pack " + packPath);
+            }
+            if (version != VERSION) {
+                throw new IOException("Unsupported result pack version " + version);
+            }
+            if (directoryOffset < MAGIC.length + 4 || directoryOffset > size - TRAILER_SIZE) {
+                throw new IOException("Invalid central directory offset in " + packPath);
+            }
+            MappedByteBuffer directory =
+                    channel.map(
+                            FileChannel.MapMode.READ_ONLY,
+                            directoryOffset,
+                            size - TRAILER_SIZE - directoryOffset);
+            int count = directory.getInt();
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[directory.getInt()];
+                directory.get(name);
+                byte type = directory.get();
+                int mode = directory.getInt();
+                long offset = directory.getLong();
+                long length = directory.getLong();
+                if (type < FILE
+                        || type > SYMLINK
+                        || offset < 0
+                        || length < 0
+                        || offset + length > directoryOffset) {
+                    throw new IOException("Invalid entry in central directory of " + packPath);
+                }
+                entries.put(
+                        new String(name, StandardCharsets.UTF_8),
+                        new Entry(type, mode, offset, length));
+            }
+            byte[] resultBytes = new byte[directory.getInt()];
+            directory.get(resultBytes);
+            Result result = Result.readFromBinary(new ByteArrayInputStream(resultBytes));
+            return new ResultPack(packPath, result, Collections.unmodifiableMap(entries));
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted result pack " + packPath, e);
+        }
+    }
+
+    /**
+     * Obtain the packed result.
+     *
+     * @return the result
+     */
+    Result getResult() {
+        return result;
+    }
+
+    private List<String> getEntries(String storedName, boolean filesOnly) {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            String name = entry.getKey();
+            if ((name.equals(storedName) || name.startsWith(storedName + "/"))
+                    && (!filesOnly || entry.getValue().type() == FILE)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Determines names of packed entries belonging to an artifact stored under given name, which
+     * is either the file itself, or the directory and all entries under it.
+     *
+     * @param storedName name under which the artifact is stored
+     * @return names of packed entries, in the order in which they were packed
+     */
+    List<String> getEntries(String storedName) {
+        return getEntries(storedName, false);
+    }
+
+    /**
+     * Determines names of packed regular files belonging to an artifact stored under given name,
+     * which is either the file itself, or regular files under it if it is a directory.
+     *
+     * @param storedName name under which the artifact is stored
+     * @return names of packed files, in the order in which they were packed
+     */
+    List<String> getFiles(String storedName) {
+        return getEntries(storedName, true);
+    }
+
+    /**
+     * Determines length of a packed file.
+     *
+     * @param name name of the packed file
+     * @return length of the file in bytes
+     */
+    long getLength(String name) {
+        return entries.get(name).length();
+    }
+
+    /**
+     * Opens a packed file for reading. The file is read through a memory-mapped window which is
+     * moved as the file is read.
+     *
+     * @param name name of the packed file
+     * @return input stream with content of the packed file
+     * @throws IOException in case I/O error occurs when opening the pack file
+     */
+    InputStream open(String name) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null || entry.type() != FILE) {
+            throw new IOException("No file " + name + " in result pack " + packPath);
+        }
+        return new EntryInputStream(FileChannel.open(packPath, StandardOpenOption.READ), entry);
+    }
+
+    /**
+     * Extracts packed entries of an artifact stored under given name into given directory, unless
+     * it exists there already, restoring their types and modes. The artifact appears in the
+     * directory atomically, so that concurrent readers never observe partially extracted
+     * artifacts.
+     *
+     * @param storedName name under which the artifact is stored
+     * @param dir the directory to extract to
+     * @throws IOException in case I/O error occurs when extracting the artifact
+     */
+    void extract(String storedName, Path dir) throws IOException {
+        Path target = dir.resolve(storedName);
+        List<String> names = getEntries(storedName);
+        if (Files.exists(target) || names.isEmpty()) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempDirectory(target.getParent(), target.getFileName() + ".");
+        try {
+            Path extracted = temp.resolve(target.getFileName());
+            int prefix = storedName.lastIndexOf('/') + 1;
+            List<String> dirNames = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(packPath, StandardOpenOption.READ)) {
+                for (String name : names) {
+                    Path path = temp.resolve(name.substring(prefix));
+                    Entry entry = entries.get(name);
+                    if (entry.type() == DIRECTORY) {
+                        Files.createDirectories(path);
+                        dirNames.add(name);
+                        continue;
+                    }
+                    Files.createDirectories(path.getParent());
+                    if (entry.type() == SYMLINK) {
+                        ByteBuffer link = ByteBuffer.allocate((int) entry.length());
+                        while (link.hasRemaining()) {
+                            if (channel.read(link, entry.offset() + link.position()) < 0) {
+                                throw new IOException("Truncated result pack " + packPath);
+                            }
+                        }
+                        Files.createSymbolicLink(
+                                path, Path.of(new String(link.array(), StandardCharsets.UTF_8)));
+                        continue;
+                    }
+                    try (FileChannel out =
+                            FileChannel.open(
+                                    path,
+                                    StandardOpenOption.CREATE_NEW,
+                                    StandardOpenOption.WRITE)) {
+                        for (long n = 0; n < entry.length(); ) {
+                            n +=
+                                    channel.transferTo(
+                                            entry.offset() + n, entry.length() - n, out);
+                        }
+                    }
+                    setMode(path, entry.mode());
+                }
+            }
+            // Modes of directories are restored last, as they may not be writable
+            for (int i = dirNames.size() - 1; i >= 0; i--) {
+                String name = dirNames.get(i);
+                setMode(temp.resolve(name.substring(prefix)), entries.get(name).mode());
+            }
+            try {
+                Files.move(extracted, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+                // Extracted concurrently by another reader
+            }
+        } finally {
+            TaskAttempt.deleteDirectoryIfExists(temp);
+        }
+    }
+
+    private static class EntryInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+        private MappedByteBuffer window;
+
+        EntryInputStream(FileChannel channel, Entry entry) {
+            this.channel = channel;
+            this.position = entry.offset();
+            this.end = entry.offset() + entry.length();
+        }
+
+        private boolean fill() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+            if (position >= end) {
+                return false;
+            }
+            long length = Math.min(WINDOW_SIZE, end - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            position += length;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? window.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, window.remaining());
+            window.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.TaskOutcome;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A policy for automatically retrying task execution when the task finishes with certain
+ * outcomes, such as {@link TaskOutcome#ERROR} caused by transient infrastructure problems.
+ *
+ * <p>Delay before each retry grows exponentially with the number of failed attempts, up to a
+ * maximum, and is randomized (jittered) to between half and full of the computed value, so that
+ * many tasks failing at the same time are not retried all at once.
+ *
+ * @author Mikolaj Izdebski
+ */
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Set<TaskOutcome> retryableOutcomes;
+
+    /**
+     * Creates a retry policy.
+     *
+     * @param maxAttempts maximal number of task execution attempts, including the first one
+     * @param initialBackoff delay before the first retry
+     * @param maxBackoff maximal delay before any retry
+     * @param retryableOutcomes task outcomes that cause task execution to be retried
+     */
+    public RetryPolicy(
+            int maxAttempts,
+            Duration initialBackoff,
+            Duration maxBackoff,
+            Set<TaskOutcome> retryableOutcomes) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Maximal number of attempts must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.retryableOutcomes = Collections.unmodifiableSet(EnumSet.copyOf(retryableOutcomes));
+    }
+
+    /**
+     * Creates a retry policy that retries tasks finished with {@link TaskOutcome#ERROR} outcome.
+     *
+     * @param maxAttempts maximal number of task execution attempts, including the first one
+     * @param initialBackoff delay before the first retry
+     * @param maxBackoff maximal delay before any retry
+     * @return retry policy
+     */
+    public static RetryPolicy ofErrors(
+            int maxAttempts, Duration initialBackoff, Duration maxBackoff) {
+        return new RetryPolicy(
+                maxAttempts, initialBackoff, maxBackoff, EnumSet.of(TaskOutcome.ERROR));
+    }
+
+    /**
+     * Determines maximal number of task execution attempts, including the first one.
+     *
+     * @return maximal number of attempts
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Determines whether task execution that finished with given outcome should be retried.
+     *
+     * @param outcome task outcome
+     * @return {@code true} iff execution should be retried
+     */
+    public boolean isRetryable(TaskOutcome outcome) {
+        return retryableOutcomes.contains(outcome);
+    }
+
+    /**
+     * Computes delay before next attempt, after given number of failed attempts.
+     *
+     * @param failedAttempts number of failed attempts so far, starting from 1
+     * @return randomized delay before next attempt
+     */
+    public Duration getBackoff(int failedAttempts) {
+        long backoff = initialBackoff.toMillis();
+        for (int i = 1; i < failedAttempts && backoff < maxBackoff.toMillis(); i++) {
+            backoff *= 2;
+        }
+        backoff = Math.min(backoff, maxBackoff.toMillis());
+        long jitter = ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        return Duration.ofMillis(backoff - jitter);
+    }
+}
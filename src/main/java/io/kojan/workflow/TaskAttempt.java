@@ -0,0 +1,290 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Artifact;
+import io.kojan.workflow.model.Task;
+import io.kojan.workflow.model.TaskOutcome;
+import io.kojan.workflow.model.Workflow;
+import io.kojan.xml.XMLException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single attempt to execute a task by running its handler, with its own result and working
+ * directories. Working directory is obtained from task storage only for the time the handler is
+ * running. Directories of an abandoned attempt are released only once its handler exits, so that
+ * they are never reused while the handler may still write to them.
+ *
+ * @author Mikolaj Izdebski
+ */
+class TaskAttempt implements TaskExecutionContext, Runnable {
+    private final TaskExecutor executor;
+    private final Path resultDir;
+    private final String workDirKey;
+    private volatile Path workDir;
+    private final List<Artifact> artifacts = new ArrayList<>();
+    private final List<Task> submittedTasks = new ArrayList<>();
+    private volatile TaskTermination termination;
+    private Thread thread;
+    private boolean exited;
+    private boolean abandoned;
+
+    /**
+     * Creates a task attempt.
+     *
+     * @param executor executor of the task
+     * @param resultDir result directory of the attempt
+     * @param workDirKey key under which working directory is obtained from task storage
+     */
+    public TaskAttempt(TaskExecutor executor, Path resultDir, String workDirKey) {
+        this.executor = executor;
+        this.resultDir = resultDir;
+        this.workDirKey = workDirKey;
+    }
+
+    @Override
+    public Task getTask() {
+        return executor.getTask();
+    }
+
+    @Override
+    public List<FinishedTask> getDependencies() {
+        return executor.getDependencies();
+    }
+
+    @Override
+    public Path getWorkDir() {
+        return workDir;
+    }
+
+    @Override
+    public Path getResultDir() {
+        return resultDir;
+    }
+
+    @Override
+    public List<Path> getDependencyArtifacts(String type) throws TaskTermination {
+        return executor.getDependencyArtifacts(type);
+    }
+
+    @Override
+    public List<Path> getTransitiveDependencyArtifacts(String type) throws TaskTermination {
+        return executor.getTransitiveDependencyArtifacts(type);
+    }
+
+    @Override
+    public Path getDependencyArtifact(String type) throws TaskTermination {
+        return executor.getDependencyArtifact(type);
+    }
+
+    @Override
+    public synchronized Path addArtifact(String type, String name) {
+        Artifact artifact = new Artifact(type, name);
+        artifacts.add(artifact);
+        return resultDir.resolve(artifact.getName());
+    }
+
+    @Override
+    public void submitTask(Task task) throws TaskTermination {
+        executor.submitTask(task);
+        synchronized (this) {
+            submittedTasks.add(task);
+        }
+    }
+
+    @Override
+    public void publishArtifact(String type, String name) {
+        Path path = addArtifact(type, name);
+        executor.publishArtifact(new Artifact(type, name), path);
+    }
+
+    @Override
+    public void streamDependencyArtifacts(String type, ArtifactConsumer consumer)
+            throws TaskTermination {
+        executor.streamDependencyArtifacts(type, consumer);
+    }
+
+    public synchronized List<Artifact> getArtifacts() {
+        return new ArrayList<>(artifacts);
+    }
+
+    public TaskTermination getTermination() {
+        return termination;
+    }
+
+    public boolean isFinished() {
+        return termination != null;
+    }
+
+    /**
+     * Finishes the attempt with {@link io.kojan.workflow.model.TaskOutcome#ERROR} outcome without
+     * running task handler.
+     *
+     * @param reason the reason for which task errored out
+     */
+    public void setError(String reason) {
+        try {
+            TaskTermination.error(reason);
+        } catch (TaskTermination termination) {
+            this.termination = termination;
+        }
+    }
+
+    static void deleteDirectoryIfExists(Path dir) throws IOException {
+        if (dir != null && Files.isDirectory(dir)) {
+            Files.walk(dir)
+                    .map(Path::toFile)
+                    .sorted((o1, o2) -> -o1.compareTo(o2))
+                    .forEach(File::delete);
+        }
+    }
+
+    private void initializeTaskDirectories() throws TaskTermination {
+        try {
+            Files.createDirectories(resultDir.getParent());
+            deleteDirectoryIfExists(resultDir);
+            Files.deleteIfExists(ResultPack.getPackPath(resultDir));
+            Files.createDirectory(resultDir);
+            Files.createDirectories(workDir.getParent());
+            deleteDirectoryIfExists(workDir);
+            Files.createDirectory(workDir);
+        } catch (IOException e) {
+            throw TaskTermination.error(
+                    "I/O error when creating task directories: " + e.getMessage());
+        }
+    }
+
+    private void cleanupTaskDirectories() throws TaskTermination {
+        try {
+            deleteDirectoryIfExists(workDir);
+        } catch (IOException e) {
+            throw TaskTermination.error(
+                    "I/O error when deleting task work directory: " + e.getMessage());
+        }
+    }
+
+    private void recordSubmittedTasks() throws TaskTermination {
+        List<Task> tasks;
+        synchronized (this) {
+            tasks = new ArrayList<>(submittedTasks);
+        }
+        if (!tasks.isEmpty()) {
+            try {
+                Path path = addArtifact(SUBMITTED_TASKS_ARTIFACT_TYPE, "submitted-tasks.xml");
+                new Workflow(tasks, List.of()).writeToXML(path);
+            } catch (IOException | XMLException e) {
+                throw TaskTermination.error(
+                        "Unable to record submitted tasks: " + e.getMessage());
+            }
+        }
+    }
+
+    private TaskTermination handleTask() {
+        TaskHandlerFactory handlerFactory = executor.getHandlerFactory();
+        try {
+            workDir = executor.getWorkDir(workDirKey);
+            initializeTaskDirectories();
+
+            try {
+                // Handlers of tasks submitted during execution are prepared on first use
+                executor.prepareHandler(getTask());
+                TaskHandler handler = handlerFactory.createTaskHandler(getTask());
+                try {
+                    if (handler instanceof BatchTaskHandler batchHandler) {
+                        executor.getTaskBatcher().handleTask(batchHandler, this);
+                    } else {
+                        handler.handleTask(this);
+                    }
+                    throw TaskTermination.error("Task did not set explicit outcome");
+                } finally {
+                    handlerFactory.releaseTaskHandler(getTask(), handler);
+                }
+            } finally {
+                cleanupTaskDirectories();
+            }
+        } catch (TaskTermination termination) {
+            if (termination.getOutcome() == TaskOutcome.SUCCESS) {
+                try {
+                    recordSubmittedTasks();
+                } catch (TaskTermination error) {
+                    return error;
+                }
+            }
+            return termination;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            termination = handleTask();
+        } catch (RuntimeException e) {
+            setError("Task handler threw exception: " + e);
+        } finally {
+            if (workDir != null) {
+                executor.releaseWorkDir(workDirKey, workDir);
+            }
+            boolean discard;
+            synchronized (this) {
+                exited = true;
+                discard = abandoned;
+                notifyAll();
+            }
+            if (discard) {
+                executor.discardAttempt(this);
+            }
+            executor.attemptFinished();
+        }
+    }
+
+    /**
+     * Abandons the attempt, interrupting its handler. Result directory of the attempt is
+     * discarded once the handler exits, or right away if it has already exited.
+     */
+    public void abandon() {
+        interrupt();
+        boolean discard;
+        synchronized (this) {
+            abandoned = true;
+            discard = exited;
+        }
+        if (discard) {
+            executor.discardAttempt(this);
+        }
+    }
+
+    /**
+     * Runs the attempt in a separate daemon thread.
+     *
+     * @param name name of the thread
+     */
+    public void start(String name) {
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void interrupt() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Task;
+import io.kojan.workflow.model.TaskOutcome;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Coalesces tasks handled by {@link BatchTaskHandler}s into batches. The first task to join a
+ * batch becomes its leader and executes the whole batch once it is full, once no more tasks with
+ * the same handler are on their way to join it, or once its maximal delay has elapsed; the
+ * remaining tasks wait for the batch to complete.
+ *
+ * <p>Only the cost of handler invocation is shared by tasks of a batch. Each task still runs its
+ * own attempt, which sets up its directories before joining the batch and publishes its result
+ * after the batch completes. Unsuccessful batches of more than one task are executed again task by
+ * task, unless disabled by {@link BatchTaskHandler#isFailedBatchSplit()}.
+ *
+ * <p>Tasks are announced to the batcher when they are dispatched, and again when each of their
+ * attempts is started, before their directories and handlers are set up. The leader waits only
+ * for announced tasks, so that batches are not delayed by tasks that are not going to join them.
+ * While tasks wait for their batch, other tasks can be run in their place by the dispatcher.
+ *
+ * @author Mikolaj Izdebski
+ */
+class TaskBatcher {
+    private final WorkflowExecutor wfe;
+    private final Map<String, Batch> openBatches = new HashMap<>();
+    private final Set<Task> announcedTasks = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<String, Integer> announcedCounts = new HashMap<>();
+
+    private static class Batch {
+        private final List<TaskExecutionContext> contexts = new ArrayList<>();
+        // Guarded by the batcher
+        private boolean started;
+        private boolean complete;
+        private TaskTermination termination;
+
+        synchronized void complete(TaskTermination termination) {
+            this.termination = termination;
+            complete = true;
+            notifyAll();
+        }
+
+        synchronized TaskTermination await() throws InterruptedException {
+            while (!complete) {
+                wait();
+            }
+            return termination;
+        }
+
+        synchronized TaskTermination awaitUninterruptibly() {
+            boolean interrupted = false;
+            while (!complete) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return termination;
+        }
+    }
+
+    public TaskBatcher(WorkflowExecutor wfe) {
+        this.wfe = wfe;
+    }
+
+    /**
+     * Announces that given task is about to be executed, and may join a batch soon.
+     *
+     * @param task the task
+     */
+    public synchronized void announce(Task task) {
+        if (announcedTasks.add(task)) {
+            announcedCounts.merge(task.getHandler(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Withdraws announcement of given task, if it has not joined a batch.
+     *
+     * @param task the task
+     */
+    public synchronized void withdraw(Task task) {
+        if (announcedTasks.remove(task)) {
+            announcedCounts.computeIfPresent(task.getHandler(), (key, n) -> n > 1 ? n - 1 : null);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Handles task in given context as part of a batch.
+     *
+     * @param handler the batch handler
+     * @param context context of the task to handle
+     * @throws TaskTermination always to indicate outcome of task execution
+     */
+    public void handleTask(BatchTaskHandler handler, TaskExecutionContext context)
+            throws TaskTermination {
+        String key = context.getTask().getHandler();
+        Batch batch;
+        boolean leader;
+        synchronized (this) {
+            withdraw(context.getTask());
+            batch = openBatches.get(key);
+            leader = batch == null;
+            if (leader) {
+                batch = new Batch();
+                openBatches.put(key, batch);
+            }
+            batch.contexts.add(context);
+            if (batch.contexts.size() >= handler.getMaxBatchSize()) {
+                openBatches.remove(key);
+                notifyAll();
+            }
+        }
+
+        TaskTermination termination;
+        if (leader) {
+            termination = leadBatch(handler, key, batch);
+        } else {
+            TaskThrottle throttle = wfe.getThrottle();
+            throttle.releaseCapacity(context.getTask());
+            wfe.waitStarted();
+            try {
+                termination = awaitBatch(batch, context);
+            } finally {
+                try {
+                    throttle.acquireCapacity(context.getTask());
+                } finally {
+                    wfe.waitFinished();
+                }
+            }
+        }
+
+        if (termination != null) {
+            throw termination;
+        }
+        handler.handleTask(context);
+    }
+
+    private TaskTermination awaitBatch(Batch batch, TaskExecutionContext context)
+            throws TaskTermination {
+        try {
+            return batch.await();
+        } catch (InterruptedException e) {
+            synchronized (this) {
+                if (!batch.started) {
+                    batch.contexts.remove(context);
+                    Thread.currentThread().interrupt();
+                    throw TaskTermination.error("Interrupted while waiting for batch");
+                }
+            }
+            // Batch is already being executed in directories of the task, which must not be
+            // released before the batch completes
+            TaskTermination termination = batch.awaitUninterruptibly();
+            Thread.currentThread().interrupt();
+            return termination;
+        }
+    }
+
+    private TaskTermination leadBatch(BatchTaskHandler handler, String key, Batch batch) {
+        long deadline = System.nanoTime() + handler.getMaxBatchDelay().toNanos();
+        List<TaskExecutionContext> contexts;
+        wfe.waitStarted();
+        try {
+            synchronized (this) {
+                long remaining;
+                while (openBatches.get(key) == batch
+                        && announcedCounts.containsKey(key)
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        wait(Math.max(1, remaining / 1_000_000));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                openBatches.remove(key, batch);
+                batch.started = true;
+                contexts = new ArrayList<>(batch.contexts);
+            }
+        } finally {
+            wfe.waitFinished();
+        }
+
+        TaskTermination termination = null;
+        try {
+            handler.handleTasks(contexts);
+            termination = TaskTermination.error("Batch did not set explicit outcome");
+        } catch (TaskTermination t) {
+            termination = t;
+        } finally {
+            // Unsuccessful batches of more than one task are handled again task by task
+            if (termination != null
+                    && termination.getOutcome() != TaskOutcome.SUCCESS
+                    && contexts.size() > 1
+                    && handler.isFailedBatchSplit()) {
+                termination = null;
+            }
+            batch.complete(termination);
+        }
+        return termination;
+    }
+}
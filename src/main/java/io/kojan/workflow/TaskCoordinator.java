@@ -0,0 +1,353 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.WorkerProtocol.Response;
+import io.kojan.workflow.model.Artifact;
+import io.kojan.workflow.model.Task;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A {@link TaskHandlerFactory} that distributes execution of tasks to remote workers, which makes
+ * the workflow executor act as a coordinator.
+ *
+ * <p>Coordinator listens on a TCP port, to which workers connect by running {@link TaskWorker}
+ * with {@code host:port} argument. Each task is leased to an idle worker, which executes its
+ * handler and sends back task outcome and artifacts. While connected, workers send heartbeats
+ * periodically, as long as the task handler makes progress. If no heartbeat is received from a
+ * worker within lease timeout, or connection to the worker is lost, the worker is disconnected and
+ * its task is reassigned to another worker. Each lease is identified by a unique token, and
+ * responses carrying token of other than the current lease are rejected. Tasks for which no
+ * worker becomes available within worker wait timeout, or which are still waiting for a worker
+ * when the coordinator is closed, finish with {@link io.kojan.workflow.model.TaskOutcome#ERROR}
+ * outcome.
+ *
+ * <p>Task artifacts are exchanged through the {@link TaskStorage} of the executor, which therefore
+ * must be located on a file system shared by the coordinator and all workers, under the same
+ * paths. For testing, workers can also be started as local processes by the coordinator itself.
+ *
+ * @author Mikolaj Izdebski
+ */
+public class TaskCoordinator implements TaskHandlerFactory, Closeable {
+    private static final int MAX_LEASES = 3;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+    private static final Duration DEFAULT_WORKER_WAIT_TIMEOUT = Duration.ofMinutes(10);
+
+    private final ServerSocket serverSocket;
+    private final Function<Task, String> handlerClassResolver;
+    private final Duration leaseTimeout;
+    private final Deque<RemoteWorker> idleWorkers = new ArrayDeque<>();
+    private final List<RemoteWorker> workers = new ArrayList<>();
+    private final List<Process> localWorkers = new ArrayList<>();
+    private Duration workerWaitTimeout = DEFAULT_WORKER_WAIT_TIMEOUT;
+    private long nextToken;
+    private boolean closed;
+
+    private static class RemoteWorker {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        RemoteWorker(Socket socket) throws IOException {
+            this.socket = socket;
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        Response execute(String handlerClass, TaskExecutionContext context, long token)
+                throws IOException {
+            WorkerProtocol.writeRequest(out, token, handlerClass, context);
+            return WorkerProtocol.readResponse(in, out, context, token);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignore, worker is being disconnected anyway
+            }
+        }
+    }
+
+    private class RemoteTaskHandler implements TaskHandler {
+        private final String handlerClass;
+
+        RemoteTaskHandler(String handlerClass) {
+            this.handlerClass = handlerClass;
+        }
+
+        @Override
+        public void handleTask(TaskExecutionContext context) throws TaskTermination {
+            String failure = null;
+            for (int lease = 0; lease < MAX_LEASES; lease++) {
+                RemoteWorker worker;
+                long token;
+                try {
+                    worker = acquireWorker();
+                    token = nextToken();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw TaskTermination.error("Interrupted while waiting for remote worker");
+                }
+                // Socket reads cannot be interrupted, so the exchange is done in a separate
+                // thread, while this thread waits for it interruptibly and disconnects the worker
+                // when interrupted
+                FutureTask<Response> exchange =
+                        new FutureTask<>(() -> worker.execute(handlerClass, context, token));
+                Thread exchangeThread = new Thread(exchange, "task-coordinator-exchange");
+                exchangeThread.setDaemon(true);
+                exchangeThread.start();
+                Response response;
+                try {
+                    response = exchange.get();
+                } catch (InterruptedException e) {
+                    disconnectWorker(worker);
+                    Thread.currentThread().interrupt();
+                    throw TaskTermination.error("Interrupted while waiting for remote worker");
+                } catch (ExecutionException e) {
+                    failure =
+                            e.getCause() instanceof SocketTimeoutException
+                                    ? "lease expired"
+                                    : e.getCause().getMessage();
+                    disconnectWorker(worker);
+                    continue;
+                }
+                releaseWorker(worker);
+                for (Artifact artifact : response.artifacts) {
+                    context.addArtifact(artifact.getType(), artifact.getName());
+                }
+                response.terminate();
+            }
+            throw TaskTermination.error(
+                    "Task could not be executed by " + MAX_LEASES + " workers, last: " + failure);
+        }
+    }
+
+    /**
+     * Creates a task coordinator listening on given port, which uses values of {@link
+     * Task#getHandler()} as names of handler classes.
+     *
+     * @param port TCP port to listen on, or {@code 0} to use any free port
+     * @param leaseTimeout time after which a worker that was not heard from is considered dead
+     * @throws IOException in case I/O error occurs when opening server socket
+     */
+    public TaskCoordinator(int port, Duration leaseTimeout) throws IOException {
+        this(port, Task::getHandler, leaseTimeout);
+    }
+
+    /**
+     * Creates a task coordinator listening on given port.
+     *
+     * @param port TCP port to listen on, or {@code 0} to use any free port
+     * @param handlerClassResolver function determining name of handler class for given task
+     * @param leaseTimeout time after which a worker that was not heard from is considered dead
+     * @throws IOException in case I/O error occurs when opening server socket
+     */
+    public TaskCoordinator(
+            int port, Function<Task, String> handlerClassResolver, Duration leaseTimeout)
+            throws IOException {
+        this.handlerClassResolver = handlerClassResolver;
+        this.leaseTimeout = leaseTimeout;
+        serverSocket = new ServerSocket(port);
+        Thread acceptThread = new Thread(this::acceptLoop, "task-coordinator");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    /**
+     * Determines port on which the coordinator listens for workers.
+     *
+     * @return port number
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Starts worker processes on the local machine, which connect to this coordinator. The
+     * processes are stopped when the coordinator is closed.
+     *
+     * @param count number of worker processes to start
+     * @param jvmOptions additional options passed to JVMs of worker processes
+     * @throws IOException in case I/O error occurs when starting processes
+     */
+    public void startLocalWorkers(int count, List<String> jvmOptions) throws IOException {
+        List<String> command =
+                WorkerProtocol.workerCommand(jvmOptions, List.of("localhost:" + getPort()));
+        for (int i = 0; i < count; i++) {
+            Process process =
+                    new ProcessBuilder(command)
+                            .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                            .redirectError(ProcessBuilder.Redirect.INHERIT)
+                            .start();
+            synchronized (this) {
+                localWorkers.add(process);
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                // Reads time out when worker does not send anything, not even heartbeat
+                socket.setSoTimeout((int) leaseTimeout.toMillis());
+                RemoteWorker worker = new RemoteWorker(socket);
+                WorkerProtocol.writeHello(worker.out, leaseTimeout.dividedBy(3));
+                synchronized (this) {
+                    if (closed) {
+                        worker.close();
+                        return;
+                    }
+                    workers.add(worker);
+                    idleWorkers.add(worker);
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                // Either server socket was closed, or worker failed to connect
+            }
+        }
+    }
+
+    /**
+     * Sets maximal time for which tasks wait for a worker to become available. Defaults to 10
+     * minutes.
+     *
+     * @param timeout the worker wait timeout
+     */
+    public synchronized void setWorkerWaitTimeout(Duration timeout) {
+        workerWaitTimeout = timeout;
+    }
+
+    private synchronized RemoteWorker acquireWorker()
+            throws InterruptedException, TaskTermination {
+        long deadline = System.nanoTime() + workerWaitTimeout.toNanos();
+        while (idleWorkers.isEmpty()) {
+            if (closed) {
+                throw TaskTermination.error("Task coordinator was closed");
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw TaskTermination.error(
+                        "No remote worker became available within " + workerWaitTimeout);
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return idleWorkers.pollFirst();
+    }
+
+    private synchronized long nextToken() {
+        return nextToken++;
+    }
+
+    private synchronized void releaseWorker(RemoteWorker worker) {
+        if (!closed) {
+            idleWorkers.addFirst(worker);
+            notifyAll();
+        }
+    }
+
+    private void disconnectWorker(RemoteWorker worker) {
+        worker.close();
+        synchronized (this) {
+            workers.remove(worker);
+        }
+    }
+
+    @Override
+    public TaskHandler createTaskHandler(Task task) {
+        return new RemoteTaskHandler(handlerClassResolver.apply(task));
+    }
+
+    /**
+     * Asks all idle workers to close task handlers they have cached. Workers stay connected, so
+     * that they can execute tasks of subsequent workflows, until the coordinator is closed.
+     */
+    @Override
+    public void closeHandlers() {
+        List<RemoteWorker> idle;
+        synchronized (this) {
+            idle = new ArrayList<>(idleWorkers);
+        }
+        for (RemoteWorker worker : idle) {
+            // Worker cannot be leased while the message is being sent
+            synchronized (this) {
+                if (!idleWorkers.remove(worker)) {
+                    continue;
+                }
+            }
+            try {
+                WorkerProtocol.writeCloseHandlers(worker.out);
+                releaseWorker(worker);
+            } catch (IOException e) {
+                disconnectWorker(worker);
+            }
+        }
+    }
+
+    /**
+     * Stops accepting workers, disconnects all connected workers and stops local worker
+     * processes.
+     *
+     * @throws IOException in case I/O error occurs when closing server socket
+     */
+    @Override
+    public void close() throws IOException {
+        List<RemoteWorker> disconnectedWorkers;
+        List<Process> processes;
+        synchronized (this) {
+            closed = true;
+            disconnectedWorkers = new ArrayList<>(workers);
+            workers.clear();
+            idleWorkers.clear();
+            processes = new ArrayList<>(localWorkers);
+            localWorkers.clear();
+            notifyAll();
+        }
+        serverSocket.close();
+        for (RemoteWorker worker : disconnectedWorkers) {
+            worker.close();
+        }
+        for (Process process : processes) {
+            try {
+                if (!process.waitFor(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+            }
+        }
+    }
+}
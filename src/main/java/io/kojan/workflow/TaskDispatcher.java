@@ -0,0 +1,36 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Dispatcher running tasks on a bounded pool of threads, which is told when a task starts and
+ * finishes waiting, so that the pool slot of the waiting task can be handed over to another task
+ * in the meantime.
+ *
+ * @author Mikolaj Izdebski
+ */
+interface TaskDispatcher extends Executor {
+    /** Called by a task before it starts waiting. Other tasks may be run in its place. */
+    void waitStarted();
+
+    /**
+     * Called by a task after it finished waiting. Blocks until the task can continue running
+     * within the limits of the pool.
+     */
+    void waitFinished();
+}
@@ -25,6 +25,12 @@ import java.util.List;
  * @author Mikolaj Izdebski
  */
 public interface TaskExecutionContext {
+    /**
+     * Type of artifact in which tasks submitted with {@link #submitTask(Task)} are recorded, so
+     * that they are submitted again when the result of the submitting task is reused.
+     */
+    String SUBMITTED_TASKS_ARTIFACT_TYPE = "submitted-tasks";
+
     /**
      * Obtain the task that is being executed.
      *
@@ -65,6 +71,22 @@ public interface TaskExecutionContext {
      */
     List<Path> getDependencyArtifacts(String type) throws TaskTermination;
 
+    /**
+     * Obtain artifacts of given type of all tasks that this task depends on, directly or
+     * transitively. Artifacts are ordered by position of their tasks in the workflow.
+     *
+     * <p>The default implementation does not support transitive artifact queries.
+     *
+     * @param type type of artifacts to obtain
+     * @return list of matching artifact paths
+     * @throws TaskTermination if some dependency did not finish successfully, or if transitive
+     *     artifact queries are not supported in this context
+     */
+    default List<Path> getTransitiveDependencyArtifacts(String type) throws TaskTermination {
+        throw TaskTermination.error(
+                "Transitive artifact queries are not supported in this context");
+    }
+
     /**
      * Obtain exactly one artifact of direct dependency tasks of given type.
      *
@@ -85,4 +107,60 @@ public interface TaskExecutionContext {
      * @return path to the added artifact
      */
     Path addArtifact(String type, String name);
+
+    /**
+     * Add artifact file for the current task, which has already been fully written under task
+     * result directory, and make it available to streaming dependent tasks immediately, while the
+     * current task is still running.
+     *
+     * <p>The default implementation just adds the artifact with {@link #addArtifact(String,
+     * String)}.
+     *
+     * @param type type of the artifact to publish
+     * @param name unique name of the artifact to publish
+     */
+    default void publishArtifact(String type, String name) {
+        addArtifact(type, name);
+    }
+
+    /**
+     * Pass artifacts of direct dependency tasks of given type to a consumer, as soon as they
+     * become available. For streaming tasks, which may be started while their dependencies are
+     * still running, this includes artifacts published by dependencies with {@link
+     * #publishArtifact(String, String)}. This method returns after artifacts of all dependencies
+     * have been consumed.
+     *
+     * <p>The default implementation passes artifacts obtained with {@link
+     * #getDependencyArtifacts(String)}.
+     *
+     * @param type type of artifacts to stream
+     * @param consumer consumer of artifact paths
+     * @throws TaskTermination if some dependency did not finish successfully, or if thrown by the
+     *     consumer
+     */
+    default void streamDependencyArtifacts(String type, ArtifactConsumer consumer)
+            throws TaskTermination {
+        for (Path artifact : getDependencyArtifacts(type)) {
+            consumer.accept(artifact);
+        }
+    }
+
+    /**
+     * Submit a new task into the workflow being executed. The new task may depend on any task of
+     * the workflow, including the task being executed, in which case it is executed only after
+     * the current task finishes successfully. Otherwise it can be executed while the current task
+     * is still running.
+     *
+     * <p>Tasks submitted by a task that finishes successfully are recorded in an artifact of type
+     * {@link #SUBMITTED_TASKS_ARTIFACT_TYPE}. Submitting the same task again has no effect.
+     *
+     * <p>The default implementation does not support task submission.
+     *
+     * @param task the task to submit
+     * @throws TaskTermination if a different task with the same ID exists, some dependency refers
+     *     to a non-existent task or task submission is not supported
+     */
+    default void submitTask(Task task) throws TaskTermination {
+        TaskTermination.error("Task submission is not supported in this context");
+    }
 }
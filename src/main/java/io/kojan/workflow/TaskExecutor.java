@@ -21,68 +21,166 @@ import io.kojan.workflow.model.Result;
 import io.kojan.workflow.model.Task;
 import io.kojan.workflow.model.TaskOutcome;
 import io.kojan.xml.XMLException;
-import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * @author Mikolaj Izdebski
  */
-class TaskExecutor extends Thread implements TaskExecutionContext {
+class TaskExecutor implements Runnable {
     private final WorkflowExecutor wfe;
     private final TaskHandlerFactory handlerFactory;
     private final Task task;
-    private final List<FinishedTask> dependencies;
-    private final String resultId;
-    private final Path resultDir;
-    private final Path workDir;
-    private final List<Artifact> artifacts = new ArrayList<>();
+    private List<FinishedTask> dependencies;
+    private final List<ArtifactChannel> dependencyChannels;
+    private final ArtifactChannel channel;
+    private String resultId;
+    private Path resultDir;
+    private final Object attemptLock = new Object();
+    private volatile Thread runner;
+    private volatile boolean interrupted;
+    private final Map<String, List<Path>> artifactIndex = new HashMap<>();
+    private List<FinishedTask> transitiveDependencies;
+    private final Map<String, List<Path>> transitiveArtifacts = new HashMap<>();
 
+    /**
+     * Creates executor of a task which dependencies have all finished successfully.
+     *
+     * @param wfe the workflow executor
+     * @param handlerFactory factory creating task handlers
+     * @param task the task to execute
+     * @param dependencies finished dependencies of the task
+     * @param channel channel to which task artifacts are published, or {@code null}
+     */
     public TaskExecutor(
             WorkflowExecutor wfe,
             TaskHandlerFactory handlerFactory,
             Task task,
-            List<FinishedTask> dependencies) {
+            List<FinishedTask> dependencies,
+            ArtifactChannel channel) {
         this.wfe = wfe;
         this.handlerFactory = handlerFactory;
         this.task = task;
         this.dependencies = Collections.unmodifiableList(dependencies);
+        this.dependencyChannels = null;
+        this.channel = channel;
+        this.resultId = computeResultId();
+        this.resultDir = wfe.getStorage().getResultDir(task, resultId);
+    }
 
+    /**
+     * Creates executor of a streaming task, which is started while some of its dependencies are
+     * still running. The task is executed in an attempt directory, which is published as its
+     * result directory once all its dependencies finish and its result ID can be determined.
+     *
+     * @param wfe the workflow executor
+     * @param handlerFactory factory creating task handlers
+     * @param task the task to execute
+     * @param dependencyChannels artifact channels of dependencies of the task
+     * @param channel channel to which task artifacts are published, or {@code null}
+     */
+    public TaskExecutor(
+            WorkflowExecutor wfe,
+            TaskHandlerFactory handlerFactory,
+            Task task,
+            ArtifactChannel channel,
+            List<ArtifactChannel> dependencyChannels) {
+        this.wfe = wfe;
+        this.handlerFactory = handlerFactory;
+        this.task = task;
+        this.dependencyChannels = List.copyOf(dependencyChannels);
+        this.channel = channel;
+        this.resultId = "streaming-" + UUID.randomUUID();
+    }
+
+    private static MessageDigest newDigest() {
         try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(getTask().getHandler().getBytes());
-            md.update(Byte.MIN_VALUE);
-            for (Parameter param : getTask().getParameters()) {
-                md.update(param.getName().getBytes());
-                md.update(Byte.MIN_VALUE);
-                md.update(param.getValue().getBytes());
-                md.update(Byte.MIN_VALUE);
-            }
-            for (FinishedTask dependency : getDependencies()) {
-                md.update(dependency.getResult().getId().getBytes());
-                md.update(Byte.MIN_VALUE);
-            }
-            byte[] digest = md.digest();
-            this.resultId =
-                    new BigInteger(1, digest)
-                            .setBit(digest.length << 3)
-                            .toString(16)
-                            .substring(1)
-                            .toUpperCase();
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalStateException(e);
         }
+    }
 
-        this.resultDir = wfe.getStorage().getResultDir(task, resultId);
-        this.workDir = wfe.getStorage().getWorkDir(task, resultId);
+    private static String toHex(byte[] digest) {
+        return new BigInteger(1, digest)
+                .setBit(digest.length << 3)
+                .toString(16)
+                .substring(1)
+                .toUpperCase();
+    }
+
+    private String computeResultId() {
+        MessageDigest md = newDigest();
+        md.update(getTask().getHandler().getBytes());
+        md.update(Byte.MIN_VALUE);
+        for (Parameter param : getTask().getParameters()) {
+            md.update(param.getName().getBytes());
+            md.update(Byte.MIN_VALUE);
+            md.update(param.getValue().getBytes());
+            md.update(Byte.MIN_VALUE);
+        }
+        // Dependencies are a set, their order does not affect result ID
+        List<String> dependencyIds = new ArrayList<>(dependencies.size());
+        for (FinishedTask dependency : dependencies) {
+            // With early cutoff dependencies are identified by their content where possible
+            String contentDigest = wfe.isEarlyCutoff() ? computeContentDigest(dependency) : null;
+            dependencyIds.add(
+                    contentDigest != null ? contentDigest : dependency.getResult().getId());
+        }
+        Collections.sort(dependencyIds);
+        for (String dependencyId : dependencyIds) {
+            md.update(dependencyId.getBytes());
+            md.update(Byte.MIN_VALUE);
+        }
+        return toHex(md.digest());
+    }
+
+    // Digest of artifacts of a finished task, or null if some artifact has no digest
+    private static String computeContentDigest(FinishedTask finishedTask) {
+        MessageDigest md = newDigest();
+        for (Artifact artifact : finishedTask.getResult().getArtifacts()) {
+            if (artifact.getDigest() == null) {
+                return null;
+            }
+            md.update(artifact.getType().getBytes());
+            md.update(Byte.MIN_VALUE);
+            md.update(artifact.getName().getBytes());
+            md.update(Byte.MIN_VALUE);
+            md.update(artifact.getDigest().getBytes());
+            md.update(Byte.MIN_VALUE);
+        }
+        return toHex(md.digest());
+    }
+
+    // Digest of artifacts of all dependencies, or null if some artifact has no digest
+    private String computeInputDigest() {
+        MessageDigest md = newDigest();
+        for (FinishedTask dependency : dependencies) {
+            String contentDigest = computeContentDigest(dependency);
+            if (contentDigest == null) {
+                return null;
+            }
+            md.update(contentDigest.getBytes());
+            md.update(Byte.MIN_VALUE);
+        }
+        return toHex(md.digest());
     }
 
     public Task getTask() {
@@ -90,29 +188,177 @@ class TaskExecutor extends Thread implements TaskExecutionContext {
     }
 
     public List<FinishedTask> getDependencies() {
-        return dependencies;
+        return dependencyChannels != null ? awaitDependencies() : dependencies;
     }
 
-    public Path getWorkDir() {
-        return workDir;
+    // Returns dependencies which have finished successfully, after all of them have finished.
+    // Dispatcher is told about the wait only once it is started, but finishing the wait may
+    // block, which must not happen while holding the lock shared by all channels.
+    private List<FinishedTask> awaitDependencies() {
+        Object lock = dependencyChannels.get(0).getLock();
+        List<FinishedTask> finishedTasks = new ArrayList<>(dependencyChannels.size());
+        boolean waiting = false;
+        try {
+            synchronized (lock) {
+                for (ArtifactChannel dependencyChannel : dependencyChannels) {
+                    while (!dependencyChannel.isFinished()) {
+                        if (!waiting) {
+                            waiting = true;
+                            wfe.waitStarted();
+                        }
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return finishedTasks;
+                        }
+                    }
+                    if (dependencyChannel.getFinishedTask() != null) {
+                        finishedTasks.add(dependencyChannel.getFinishedTask());
+                    }
+                }
+            }
+        } finally {
+            if (waiting) {
+                wfe.waitFinished();
+            }
+        }
+        return Collections.unmodifiableList(finishedTasks);
     }
 
-    public Path getResultDir() {
-        return resultDir;
+    private List<FinishedTask> getSuccessfulDependencies() throws TaskTermination {
+        List<FinishedTask> finishedTasks = getDependencies();
+        if (dependencyChannels != null && finishedTasks.size() != dependencyChannels.size()) {
+            TaskTermination.error("Dependency of streaming " + task + " did not succeed");
+        }
+        return finishedTasks;
     }
 
-    public List<Path> getDependencyArtifacts(String type) throws TaskTermination {
-        List<Path> artifacts = new ArrayList<>();
+    void publishArtifact(Artifact artifact, Path path) {
+        // Result ID of streaming tasks is not known until they finish, so their artifacts are
+        // made available only with the final result
+        if (channel != null && dependencyChannels == null) {
+            channel.publish(artifact, path);
+        }
+    }
 
-        for (FinishedTask dependency : getDependencies()) {
-            for (Artifact dependencyArtifact : dependency.getResult().getArtifacts()) {
-                if (dependencyArtifact.getType().equals(type)) {
-                    artifacts.add(dependency.getArtifact(dependencyArtifact));
+    public void streamDependencyArtifacts(String type, ArtifactConsumer consumer)
+            throws TaskTermination {
+        if (dependencyChannels == null) {
+            for (Path artifact : getDependencyArtifacts(type)) {
+                consumer.accept(artifact);
+            }
+            return;
+        }
+        Object lock = dependencyChannels.get(0).getLock();
+        int[] cursors = new int[dependencyChannels.size()];
+        for (; ; ) {
+            List<Artifact> availableArtifacts = new ArrayList<>();
+            List<Path> availablePaths = new ArrayList<>();
+            List<FinishedTask> availableSources = new ArrayList<>();
+            boolean finished = true;
+            boolean waiting = false;
+            try {
+                synchronized (lock) {
+                    for (int i = 0; i < cursors.length; i++) {
+                        ArtifactChannel dependencyChannel = dependencyChannels.get(i);
+                        for (; cursors[i] < dependencyChannel.size(); cursors[i]++) {
+                            Artifact artifact = dependencyChannel.getArtifact(cursors[i]);
+                            if (artifact.getType().equals(type)) {
+                                availableArtifacts.add(artifact);
+                                availablePaths.add(dependencyChannel.getPath(cursors[i]));
+                                availableSources.add(dependencyChannel.getFinishedTask());
+                            }
+                        }
+                        if (dependencyChannel.getFailure() != null) {
+                            TaskTermination.error(
+                                    "Streamed dependency failed: "
+                                            + dependencyChannel.getFailure());
+                        }
+                        finished &= dependencyChannel.isFinished();
+                    }
+                    if (availableArtifacts.isEmpty() && !finished) {
+                        waiting = true;
+                        wfe.waitStarted();
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            TaskTermination.error(
+                                    "Interrupted while streaming dependency artifacts");
+                        }
+                    }
+                }
+            } finally {
+                // Finishing the wait may block, so it is not done with the channel lock held
+                if (waiting) {
+                    wfe.waitFinished();
                 }
             }
+            // Paths of artifacts of finished dependencies are resolved without the lock held
+            for (int i = 0; i < availableArtifacts.size(); i++) {
+                Path path = availablePaths.get(i);
+                consumer.accept(
+                        path != null
+                                ? path
+                                : availableSources.get(i).getArtifact(availableArtifacts.get(i)));
+            }
+            if (availableArtifacts.isEmpty() && finished) {
+                return;
+            }
         }
+    }
 
-        return artifacts;
+    TaskHandlerFactory getHandlerFactory() {
+        return handlerFactory;
+    }
+
+    void prepareHandler(Task task) {
+        wfe.prepareHandler(task);
+    }
+
+    void submitTask(Task task) throws TaskTermination {
+        wfe.submitTask(task);
+    }
+
+    TaskBatcher getTaskBatcher() {
+        return wfe.getTaskBatcher();
+    }
+
+    public List<Path> getDependencyArtifacts(String type) throws TaskTermination {
+        List<FinishedTask> finishedTasks = getSuccessfulDependencies();
+        synchronized (this) {
+            // Artifacts of direct dependencies of each type are looked up once per task, only
+            // when they are requested, so that compressed artifacts of other types are not
+            // decompressed
+            List<Path> artifacts = artifactIndex.get(type);
+            if (artifacts == null) {
+                artifacts = new ArrayList<>();
+                for (FinishedTask dependency : finishedTasks) {
+                    artifacts.addAll(dependency.getArtifacts(type));
+                }
+                artifactIndex.put(type, artifacts);
+            }
+            return new ArrayList<>(artifacts);
+        }
+    }
+
+    public List<Path> getTransitiveDependencyArtifacts(String type) throws TaskTermination {
+        getSuccessfulDependencies();
+        synchronized (this) {
+            if (transitiveDependencies == null) {
+                transitiveDependencies = wfe.getTransitiveDependencies(task);
+            }
+            List<Path> artifacts = transitiveArtifacts.get(type);
+            if (artifacts == null) {
+                artifacts = new ArrayList<>();
+                for (FinishedTask dependency : transitiveDependencies) {
+                    artifacts.addAll(dependency.getArtifacts(type));
+                }
+                transitiveArtifacts.put(type, artifacts);
+            }
+            return new ArrayList<>(artifacts);
+        }
     }
 
     public Path getDependencyArtifact(String type) throws TaskTermination {
@@ -130,114 +376,626 @@ class TaskExecutor extends Thread implements TaskExecutionContext {
         return artifacts.iterator().next();
     }
 
-    public Path addArtifact(String type, String name) {
-        Artifact artifact = new Artifact(type, name);
-        artifacts.add(artifact);
-        return resultDir.resolve(artifact.getName());
+    void attemptFinished() {
+        synchronized (attemptLock) {
+            attemptLock.notifyAll();
+        }
     }
 
-    private void deleteDirectoryIfExists(Path dir) throws IOException {
-        if (dir != null && Files.isDirectory(dir)) {
-            Files.walk(dir)
-                    .map(Path::toFile)
-                    .sorted((o1, o2) -> -o1.compareTo(o2))
-                    .forEach(File::delete);
+    Path getWorkDir(String workDirKey) {
+        return wfe.getStorage().getWorkDir(task, workDirKey);
+    }
+
+    void releaseWorkDir(String workDirKey, Path workDir) {
+        wfe.getStorage().releaseWorkDir(task, workDirKey, workDir);
+    }
+
+    void discardAttempt(TaskAttempt attempt) {
+        discardAttemptDir(attempt.getResultDir(), false);
+    }
+
+    private static long toNanos(Duration duration) {
+        if (duration == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            return duration.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
         }
     }
 
-    private void initializeTaskDirectories() throws TaskTermination {
+    // Returns the attempt which result should be recorded, which has its own result directory,
+    // unless it failed without running task handler
+    private TaskAttempt handleTask(String attemptId, Path attemptDir) {
+        TaskAttempt primary = new TaskAttempt(this, attemptDir, attemptId);
+        Duration timeout;
         try {
-            Files.createDirectories(resultDir.getParent());
-            deleteDirectoryIfExists(resultDir);
-            Files.createDirectory(resultDir);
-            Files.createDirectories(workDir.getParent());
-            deleteDirectoryIfExists(workDir);
-            Files.createDirectory(workDir);
-        } catch (IOException e) {
-            throw TaskTermination.error(
-                    "I/O error when creating task directories: " + e.getMessage());
+            timeout = wfe.getTaskTimeout(task);
+        } catch (RuntimeException e) {
+            primary.setError("Unable to determine task timeout: " + e.getMessage());
+            return primary;
+        }
+        // Artifacts streamed to dependents by a speculative attempt would be mixed with those
+        // streamed by the primary attempt
+        Duration speculationDelay = channel == null ? wfe.getSpeculationDelay(task) : null;
+        if (timeout == null && speculationDelay == null) {
+            primary.run();
+            return primary;
+        }
+
+        long startTime = System.nanoTime();
+        long timeoutNanos = toNanos(timeout);
+        long speculationNanos = toNanos(speculationDelay);
+        TaskAttempt speculative = null;
+        TaskAttempt winner = null;
+        primary.start(task.getId());
+        synchronized (attemptLock) {
+            while (winner == null) {
+                if (primary.isFinished()) {
+                    winner = primary;
+                } else if (speculative != null && speculative.isFinished()) {
+                    winner = speculative;
+                } else {
+                    long elapsed = System.nanoTime() - startTime;
+                    if (elapsed >= timeoutNanos) {
+                        break;
+                    }
+                    if (speculative == null && elapsed >= speculationNanos) {
+                        speculative =
+                                new TaskAttempt(
+                                        this,
+                                        attemptDir.resolveSibling(
+                                                attemptDir.getFileName() + ".speculative"),
+                                        attemptId + "-speculative");
+                        speculative.start(task.getId() + "-speculative");
+                        continue;
+                    }
+                    long deadline = speculative == null ? speculationNanos : Long.MAX_VALUE;
+                    long waitNanos = Math.min(timeoutNanos, deadline) - elapsed;
+                    try {
+                        attemptLock.wait(Math.max(1, Math.min(waitNanos / 1_000_000, 60_000)));
+                    } catch (InterruptedException e) {
+                        primary.interrupt();
+                        if (speculative != null) {
+                            speculative.interrupt();
+                        }
+                    }
+                }
+            }
+        }
+
+        // Abandoned attempt is not waited for, its handler may never exit
+        if (winner != primary) {
+            primary.abandon();
+        }
+        if (speculative != null && winner != speculative) {
+            speculative.abandon();
+        }
+        if (winner == null) {
+            winner = new TaskAttempt(this, null, null);
+            winner.setError("Task timed out after " + timeout);
+        }
+        return winner;
+    }
+
+    private boolean isReusable(Result cachedResult) {
+        // With early cutoff, result produced from identical dependency artifacts is valid
+        // regardless of when the dependencies were executed
+        if (wfe.isEarlyCutoff()
+                && cachedResult.getInputDigest() != null
+                && cachedResult.getInputDigest().equals(computeInputDigest())) {
+            return true;
         }
+        // All dependency tasks completed before cached result was even
+        // started?
+        return getDependencies().stream()
+                .allMatch(
+                        dep ->
+                                dep.getResult()
+                                                .getTimeFinished()
+                                                .compareTo(cachedResult.getTimeStarted())
+                                        <= 0);
     }
 
-    private void cleanupTaskDirectories() throws TaskTermination {
+    // Size of artifacts is verified every time a result is reused, their digests only for a
+    // random sample of reused results. Artifacts of packed result are verified against given pack.
+    private boolean isIntact(Result cachedResult, ResultPack pack) {
+        double verificationRate = wfe.getDigestVerificationRate();
+        boolean fullDigest =
+                verificationRate > 0 && ThreadLocalRandom.current().nextDouble() < verificationRate;
         try {
-            deleteDirectoryIfExists(workDir);
+            if (pack != null) {
+                return ArtifactDigester.verifyPackedArtifacts(
+                        cachedResult.getArtifacts(), pack, fullDigest);
+            }
+            return ArtifactDigester.verifyArtifacts(
+                    cachedResult.getArtifacts(), resultDir, fullDigest);
         } catch (IOException e) {
-            throw TaskTermination.error(
-                    "I/O error when deleting task work directory: " + e.getMessage());
+            return false;
         }
     }
 
-    private TaskTermination handleTask() {
+    // Damaged pack is treated as if there was no cached result, so that the task is executed
+    // again and the pack replaced
+    private ResultPack openPack() {
+        Path packPath = ResultPack.getPackPath(resultDir);
+        if (!Files.isRegularFile(packPath)) {
+            return null;
+        }
         try {
-            initializeTaskDirectories();
+            return ResultPack.open(packPath);
+        } catch (IOException e) {
+            return null;
+        }
+    }
 
-            try {
-                TaskHandler handler = handlerFactory.createTaskHandler(task);
-                handler.handleTask(this);
-                throw TaskTermination.error("Task did not set explicit outcome");
-            } finally {
-                cleanupTaskDirectories();
+    // Finds cached result which can be reused instead of executing the task, the result
+    // directory must be locked by the caller
+    private FinishedTask findCachedResult() {
+        Result journaledResult = wfe.getJournaledResult(task);
+        if (journaledResult != null
+                && journaledResult.getId().equals(resultId)
+                && isReusable(journaledResult)
+                && isIntact(
+                        journaledResult,
+                        Files.exists(resultDir.resolve("stamp")) ? null : openPack())) {
+            return newFinishedTask(journaledResult);
+        }
+
+        if (Files.isRegularFile(resultDir.resolve("stamp"))) {
+            Result cachedResult = readCachedResult();
+            if (cachedResult != null
+                    && isReusable(cachedResult)
+                    && isIntact(cachedResult, null)) {
+                return newFinishedTask(cachedResult);
+            }
+        }
+
+        // Packed result is reused without extracting any of its artifacts
+        ResultPack pack = openPack();
+        if (pack != null) {
+            Result cachedResult = relabelCachedResult(pack.getResult());
+            if (isReusable(cachedResult) && isIntact(cachedResult, pack)) {
+                return newFinishedTask(cachedResult);
+            }
+        }
+
+        // Failed result is reported again as long as it has not expired
+        Duration failureCacheTtl = wfe.getFailureCacheTtl();
+        if (failureCacheTtl != null
+                && !wfe.isForceRetry()
+                && Files.isRegularFile(resultDir.resolve("failure-stamp"))) {
+            Result cachedResult = readCachedResult();
+            if (cachedResult != null
+                    && cachedResult.getOutcome() == TaskOutcome.FAILURE
+                    && cachedResult.getTimeFinished()
+                            .plus(failureCacheTtl)
+                            .isAfter(LocalDateTime.now())
+                    && isReusable(cachedResult)) {
+                return newFinishedTask(cachedResult);
             }
-        } catch (TaskTermination termination) {
-            return termination;
+        }
+        return null;
+    }
+
+    private boolean reuseCachedResult() throws TaskTermination {
+        FinishedTask finishedTask;
+        ResultLock lock = lockResult(resultDir);
+        try {
+            finishedTask = findCachedResult();
+        } finally {
+            unlockResult(lock);
+        }
+        if (finishedTask == null) {
+            return false;
+        }
+        if (finishedTask.getResult().getOutcome() == TaskOutcome.SUCCESS) {
+            wfe.stateChangeFromPendingToFinished(finishedTask);
+        } else {
+            wfe.stateChangeFromPendingToFailed(finishedTask);
+        }
+        return true;
+    }
+
+    private Result relabelCachedResult(Result cachedResult) {
+        if (!cachedResult.getTaskId().equals(task.getId())) {
+            // Result produced by a different task with identical definition
+            cachedResult =
+                    new Result(
+                            cachedResult.getId(),
+                            task.getId(),
+                            cachedResult.getArtifacts(),
+                            cachedResult.getOutcome(),
+                            cachedResult.getOutcomeReason(),
+                            cachedResult.getTimeStarted(),
+                            cachedResult.getTimeFinished(),
+                            cachedResult.getInputDigest());
+        }
+        return cachedResult;
+    }
+
+    // Unreadable result is treated as if there was no cached result, so that the task is
+    // executed again and the result replaced
+    private Result readCachedResult() {
+        try {
+            return relabelCachedResult(Result.readFromXML(resultDir.resolve("result.xml")));
+        } catch (IOException | XMLException e) {
+            return null;
+        }
+    }
+
+    /** Interrupts execution of the task, or prevents it from starting if it has not started yet. */
+    public void interrupt() {
+        interrupted = true;
+        Thread thread = runner;
+        if (thread != null) {
+            thread.interrupt();
         }
     }
 
     @Override
     public void run() {
-        if (Files.isRegularFile(resultDir.resolve("stamp"))) {
+        runner = Thread.currentThread();
+        try {
+            if (interrupted) {
+                runner.interrupt();
+            }
+            runTask();
+        } catch (TaskTermination termination) {
+            finishWithError(termination.getMessage());
+        } catch (RuntimeException e) {
+            finishWithError("Unexpected error when executing task: " + e);
+        } finally {
+            runner = null;
+            wfe.getTaskBatcher().withdraw(task);
+            // Do not leave interrupt status behind on threads reused by dispatcher
+            Thread.interrupted();
+            wfe.taskExecutorFinished();
+        }
+    }
+
+    // Task that is left unfinished would make the workflow wait for it forever
+    private void finishWithError(String reason) {
+        LocalDateTime now = LocalDateTime.now();
+        Result result =
+                new Result(
+                        resultId, task.getId(), List.of(), TaskOutcome.ERROR, reason, now, now);
+        wfe.stateChangeToFinishedWithError(newFinishedTask(result));
+    }
+
+    private ResultLock lockResult(Path dir) throws TaskTermination {
+        wfe.waitStarted();
+        try {
+            return ResultLock.acquire(dir);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw TaskTermination.error("Interrupted while waiting for result lock");
+        } catch (IOException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw TaskTermination.error("Interrupted while waiting for result lock");
+            }
+            throw TaskTermination.error("I/O error when locking result: " + e.getMessage());
+        } finally {
+            wfe.waitFinished();
+        }
+    }
+
+    private static void unlockResult(ResultLock lock) {
+        try {
+            lock.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private ResultLock claimResult() throws TaskTermination {
+        wfe.waitStarted();
+        try {
+            return ResultLock.claim(resultDir);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw TaskTermination.error("Interrupted while waiting for result claim");
+        } catch (IOException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw TaskTermination.error("Interrupted while waiting for result claim");
+            }
+            throw TaskTermination.error("I/O error when claiming result: " + e.getMessage());
+        } finally {
+            wfe.waitFinished();
+        }
+    }
+
+    // The result directory is locked only while cache is probed and while results are
+    // published. Production of the result is claimed from the time the cache is missed until
+    // the result is published, so that tasks producing the same result wait for the first one
+    // and then probe the cache again.
+    private void runTask() throws TaskTermination {
+        // Result ID of streaming tasks is not known until their dependencies finish
+        if (dependencyChannels != null) {
+            executeAttempts();
+            return;
+        }
+        if (reuseCachedResult()) {
+            return;
+        }
+        ResultLock claim = claimResult();
+        try {
+            if (!reuseCachedResult()) {
+                executeAttempts();
+            }
+        } finally {
+            unlockResult(claim);
+        }
+    }
+
+    private void executeAttempts() {
+        RetryPolicy retryPolicy = wfe.getRetryPolicy();
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            FinishedTask finishedTask;
+            TaskBatcher batcher = wfe.getTaskBatcher();
             try {
-                Result cachedResult = Result.readFromXML(resultDir.resolve("result.xml"));
-
-                // All dependency tasks completed before cached result was even
-                // started?
-                if (getDependencies().stream()
-                        .allMatch(
-                                dep ->
-                                        dep.getResult()
-                                                        .getTimeFinished()
-                                                        .compareTo(cachedResult.getTimeStarted())
-                                                <= 0)) {
-                    FinishedTask finishedTask =
-                            new FinishedTask(getTask(), cachedResult, resultDir);
-                    wfe.stateChangeFromPendingToFinished(finishedTask);
-                    return;
+                acquireCapacity();
+                batcher.announce(task);
+                wfe.stateChangeFromPendingToRunning(task);
+                finishedTask = executeAttempt();
+            } finally {
+                batcher.withdraw(task);
+                wfe.getThrottle().releaseCapacity(task);
+            }
+
+            // Capacity is not held while backing off before the next attempt
+            if (retryPolicy != null
+                    && retryPolicy.isRetryable(finishedTask.getResult().getOutcome())
+                    && attemptNumber < retryPolicy.getMaxAttempts()) {
+                Duration delay = retryPolicy.getBackoff(attemptNumber);
+                wfe.stateChangeFromRunningToRetrying(finishedTask, attemptNumber, delay);
+                if (backOff(delay)) {
+                    continue;
                 }
-            } catch (IOException | XMLException e) {
-                throw new RuntimeException(e);
             }
+            wfe.stateChangeFromRunningToFinished(finishedTask);
+            return;
         }
+    }
 
+    private void acquireCapacity() {
+        wfe.waitStarted();
         try {
             wfe.getThrottle().acquireCapacity(task);
-            wfe.stateChangeFromPendingToRunning(task);
+        } finally {
+            wfe.waitFinished();
+        }
+    }
 
-            LocalDateTime timeStarted = LocalDateTime.now();
-            TaskTermination termination = handleTask();
-            LocalDateTime timeFinished = LocalDateTime.now();
+    private boolean backOff(Duration delay) {
+        wfe.waitStarted();
+        try {
+            Thread.sleep(delay.toMillis());
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        } finally {
+            wfe.waitFinished();
+        }
+    }
 
-            Result result =
-                    new Result(
-                            resultId,
-                            task.getId(),
-                            artifacts,
-                            termination.getOutcome(),
-                            termination.getMessage(),
-                            timeStarted,
-                            timeFinished);
-            if (result.getOutcome() == TaskOutcome.SUCCESS) {
+    // Determines result ID of a streaming task, once all dependencies have finished
+    private void resolveStreamingResult() throws TaskTermination {
+        dependencies = getSuccessfulDependencies();
+        resultId = computeResultId();
+        resultDir = wfe.getStorage().getResultDir(task, resultId);
+    }
+
+    // Replaces result directory with the directory of a finished attempt. Streaming tasks do not
+    // claim their result, as its ID is not known until they finish, so the cache is probed again
+    // before publishing. If a successful result with the same ID is found, it is returned
+    // instead and the attempt directory is not published. Existing successful result is not
+    // replaced by an unsuccessful one, nor while it may be read, in which case the result of the
+    // attempt is returned with artifacts in the attempt directory.
+    private FinishedTask publishResult(Path attemptDir, Result result) throws TaskTermination {
+        ResultLock lock = lockResult(resultDir);
+        try {
+            FinishedTask cachedTask = findCachedResult();
+            if (cachedTask != null && cachedTask.getResult().getOutcome() == TaskOutcome.SUCCESS) {
+                return cachedTask;
+            }
+            if ((Files.exists(resultDir.resolve("stamp"))
+                            || Files.exists(ResultPack.getPackPath(resultDir)))
+                    && (result.getOutcome() != TaskOutcome.SUCCESS || !lock.excludeReaders())) {
+                return new FinishedTask(getTask(), result, attemptDir, wfe.getArtifactScratch());
+            }
+            Files.createDirectories(resultDir.getParent());
+            TaskAttempt.deleteDirectoryIfExists(resultDir);
+            Files.deleteIfExists(ResultPack.getPackPath(resultDir));
+            if (channel != null) {
+                // Artifacts streamed to dependents from the attempt directory may still be read
+                Path linkedDir = attemptDir.resolveSibling(attemptDir.getFileName() + ".linked");
+                linkDirectory(attemptDir, linkedDir);
+                Files.move(linkedDir, resultDir);
+            } else {
+                Files.move(attemptDir, resultDir);
+            }
+            return newFinishedTask(result);
+        } catch (IOException e) {
+            throw TaskTermination.error(
+                    "I/O error when publishing task result: " + e.getMessage());
+        } finally {
+            unlockResult(lock);
+        }
+    }
+
+    // Copies directory tree using hard links where possible, so that files are not duplicated
+    private static void linkDirectory(Path source, Path target) throws IOException {
+        TaskAttempt.deleteDirectoryIfExists(target);
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Path copy = target.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.createDirectory(copy);
+                    continue;
+                }
                 try {
-                    result.writeToXML(resultDir.resolve("result.xml"));
-                    Files.createFile(resultDir.resolve("stamp"));
-                } catch (IOException | XMLException e) {
-                    throw new RuntimeException(e);
+                    Files.createLink(copy, path);
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(
+                            path,
+                            copy,
+                            StandardCopyOption.COPY_ATTRIBUTES,
+                            LinkOption.NOFOLLOW_LINKS);
                 }
             }
-            FinishedTask finishedTask = new FinishedTask(getTask(), result, resultDir);
-            wfe.stateChangeFromRunningToFinished(finishedTask);
+        }
+    }
+
+    // Artifacts published to streaming dependents, or of results which were not published, may
+    // still be read from attempt directory, so it is deleted only once the workflow execution
+    // finishes
+    private void discardAttemptDir(Path attemptDir, boolean read) {
+        if (channel != null || read) {
+            wfe.getArtifactScratch().discardOnClose(attemptDir);
+            return;
+        }
+        try {
+            TaskAttempt.deleteDirectoryIfExists(attemptDir);
+        } catch (IOException e) {
+            // Leftover attempt directory does not affect results
+        }
+    }
+
+    // Result which was not published has no artifacts, as its attempt directory is discarded
+    private FinishedTask newUnpublishedTask(Result result) {
+        return new FinishedTask(
+                getTask(),
+                new Result(
+                        result.getId(),
+                        task.getId(),
+                        List.of(),
+                        result.getOutcome(),
+                        result.getOutcomeReason(),
+                        result.getTimeStarted(),
+                        result.getTimeFinished()),
+                null,
+                wfe.getArtifactScratch());
+    }
+
+    // Each attempt has its own result directory, which is published only once the attempt
+    // finishes, so that no attempt has to be waited for after it has been abandoned
+    private FinishedTask executeAttempt() {
+        LocalDateTime timeStarted = LocalDateTime.now();
+        String attemptId = "attempt-" + UUID.randomUUID();
+        TaskAttempt attempt =
+                handleTask(attemptId, wfe.getStorage().getResultDir(task, attemptId));
+        // Speculative attempt may have won, which has its own result directory
+        Path attemptDir = attempt.getResultDir();
+        // Attempt directory does not exist if the attempt failed before its handler was run
+        if (attemptDir == null || !Files.isDirectory(attemptDir)) {
+            return completeAttempt(timeStarted, attempt, attemptDir);
+        }
+        FinishedTask finishedTask = null;
+        try {
+            finishedTask = completeAttempt(timeStarted, attempt, attemptDir);
+            return finishedTask;
         } finally {
-            wfe.getThrottle().releaseCapacity(task);
+            // Published attempt directory has been moved to the result directory
+            if (Files.exists(attemptDir)) {
+                discardAttemptDir(
+                        attemptDir,
+                        finishedTask != null && attemptDir.equals(finishedTask.getResultDir()));
+            }
         }
     }
+
+    // Stores result of finished attempt in its directory and publishes it
+    private FinishedTask completeAttempt(
+            LocalDateTime timeStarted, TaskAttempt attempt, Path attemptDir) {
+        TaskTermination termination = attempt.getTermination();
+        boolean publishable = dependencyChannels == null;
+        if (!publishable && termination.getOutcome() == TaskOutcome.SUCCESS) {
+            try {
+                resolveStreamingResult();
+                publishable = true;
+                // Result is recorded as started after its dependencies finished, which is what
+                // determines whether the cached result can be reused later
+                for (FinishedTask dependency : dependencies) {
+                    LocalDateTime dependencyFinished = dependency.getResult().getTimeFinished();
+                    if (dependencyFinished.isAfter(timeStarted)) {
+                        timeStarted = dependencyFinished;
+                    }
+                }
+            } catch (TaskTermination failure) {
+                termination = failure;
+            }
+        }
+        List<Artifact> artifacts = attempt.getArtifacts();
+        String inputDigest = null;
+        if (termination.getOutcome() == TaskOutcome.SUCCESS) {
+            try {
+                artifacts = ArtifactDigester.digestArtifacts(artifacts, attemptDir);
+                inputDigest = computeInputDigest();
+                // Published artifacts may still be read by streaming dependents, so they are
+                // left as they are
+                Predicate<String> compressedTypes = wfe.getCompressedArtifactTypes();
+                if (compressedTypes != null && channel == null) {
+                    artifacts =
+                            ArtifactCompressor.compressArtifacts(
+                                    artifacts, attemptDir, compressedTypes);
+                }
+            } catch (IOException e) {
+                attempt.setError("I/O error when storing artifacts: " + e.getMessage());
+                termination = attempt.getTermination();
+            }
+        }
+        LocalDateTime timeFinished = LocalDateTime.now();
+
+        Result result =
+                new Result(
+                        resultId,
+                        task.getId(),
+                        artifacts,
+                        termination.getOutcome(),
+                        termination.getMessage(),
+                        timeStarted,
+                        timeFinished,
+                        inputDigest);
+        try {
+            if (result.getOutcome() == TaskOutcome.SUCCESS) {
+                result.writeToXML(attemptDir.resolve("result.xml"));
+                Files.createFile(attemptDir.resolve("stamp"));
+            } else if (result.getOutcome() == TaskOutcome.FAILURE
+                    && wfe.getFailureCacheTtl() != null
+                    && dependencyChannels == null) {
+                // Result directory is replaced by the next attempt, if there is any, so only the
+                // failure of the final attempt remains recorded
+                result.writeToXML(attemptDir.resolve("result.xml"));
+                Files.createFile(attemptDir.resolve("failure-stamp"));
+            }
+        } catch (IOException | XMLException e) {
+            throw new RuntimeException(e);
+        }
+        if (!publishable) {
+            // Result ID of failed streaming task is unknown, so its result cannot be stored
+            return newUnpublishedTask(result);
+        }
+        if (attemptDir != null && Files.isDirectory(attemptDir)) {
+            try {
+                return publishResult(attemptDir, result);
+            } catch (TaskTermination failure) {
+                return newUnpublishedTask(
+                        new Result(
+                                resultId,
+                                task.getId(),
+                                List.of(),
+                                failure.getOutcome(),
+                                failure.getMessage(),
+                                timeStarted,
+                                LocalDateTime.now()));
+            }
+        }
+        return newFinishedTask(result);
+    }
+
+    private FinishedTask newFinishedTask(Result result) {
+        return new FinishedTask(getTask(), result, resultDir, wfe.getArtifactScratch());
+    }
 }
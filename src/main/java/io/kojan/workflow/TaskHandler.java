@@ -33,4 +33,21 @@ public interface TaskHandler {
      * @throws TaskTermination always to indicate outcome of task execution
      */
     void handleTask(TaskExecutionContext context) throws TaskTermination;
+
+    /**
+     * Warms up the handler before it is used for handling tasks, for example by loading tools or
+     * parsing configuration. Called by {@link CachingTaskHandlerFactory} once for every handler
+     * instance it creates.
+     *
+     * <p>The default implementation does nothing.
+     */
+    default void prepare() {}
+
+    /**
+     * Releases resources held by the handler. Called by {@link CachingTaskHandlerFactory} once the
+     * handler is no longer going to be used.
+     *
+     * <p>The default implementation does nothing.
+     */
+    default void close() {}
 }
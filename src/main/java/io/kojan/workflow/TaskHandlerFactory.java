@@ -20,6 +20,11 @@ import io.kojan.workflow.model.Task;
 /**
  * A factory for {@link TaskHandler}s.
  *
+ * <p>During workflow execution, {@link #prepareHandler(Task)} is called for every distinct task
+ * handler before any task is executed. Then {@link #createTaskHandler(Task)} is called for every
+ * executed task, and {@link #releaseTaskHandler(Task, TaskHandler)} once the task has been handled.
+ * Finally {@link #closeHandlers()} is called after workflow execution is finished.
+ *
  * @author Mikolaj Izdebski
  */
 public interface TaskHandlerFactory {
@@ -30,4 +35,36 @@ public interface TaskHandlerFactory {
      * @return task handler capable of executing the specified task
      */
     TaskHandler createTaskHandler(Task task);
+
+    /**
+     * Prepares execution of tasks that use the same handler as the specified {@link Task}. Called
+     * once for every distinct {@link Task#getHandler()} value before workflow execution starts,
+     * with the first task using that handler, or before the first task submitted during workflow
+     * execution with a new handler is handled. Workflow executor does not hold any locks while
+     * calling this method, but concurrent calls are made for distinct handlers only.
+     *
+     * <p>The default implementation does nothing.
+     *
+     * @param task the first task using the handler to prepare
+     */
+    default void prepareHandler(Task task) {}
+
+    /**
+     * Releases a {@link TaskHandler} previously created by {@link #createTaskHandler(Task)}, after
+     * it has finished handling the specified {@link Task}.
+     *
+     * <p>The default implementation does nothing.
+     *
+     * @param task task that was handled
+     * @param handler the handler to release
+     */
+    default void releaseTaskHandler(Task task, TaskHandler handler) {}
+
+    /**
+     * Closes handlers prepared or created by this factory. Called once after workflow execution
+     * is finished.
+     *
+     * <p>The default implementation does nothing.
+     */
+    default void closeHandlers() {}
 }
@@ -52,4 +52,17 @@ public interface TaskStorage {
      * @return path to the task working directory
      */
     Path getWorkDir(Task task, String resultId);
+
+    /**
+     * Release task working directory obtained with {@link #getWorkDir(Task, String)}, once the
+     * task has stopped using it and the directory has been deleted. Storage implementations that
+     * track resources used by working directories can reclaim them.
+     *
+     * <p>The default implementation does nothing.
+     *
+     * @param task the task which working directory is released
+     * @param resultId ID of task result
+     * @param workDir path to the released working directory
+     */
+    default void releaseWorkDir(Task task, String resultId, Path workDir) {}
 }
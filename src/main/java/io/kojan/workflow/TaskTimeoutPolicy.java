@@ -0,0 +1,76 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Parameter;
+import io.kojan.workflow.model.Task;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A policy determining how long a {@link Task} may execute before it is interrupted and its
+ * execution is finished with {@link io.kojan.workflow.model.TaskOutcome#ERROR} outcome.
+ *
+ * @author Mikolaj Izdebski
+ */
+@FunctionalInterface
+public interface TaskTimeoutPolicy {
+    /**
+     * Determines execution timeout of given task.
+     *
+     * @param task the task of which timeout should be determined
+     * @return maximal duration of task execution, or {@code null} if the task has no timeout
+     * @throws IllegalArgumentException if the task specifies invalid timeout; execution of such
+     *     task is finished with {@link io.kojan.workflow.model.TaskOutcome#ERROR} outcome
+     */
+    Duration getTimeout(Task task);
+
+    /**
+     * Creates a timeout policy that takes task timeout from value of task {@link Parameter} with
+     * given name. The value is either a number of seconds or a duration in ISO-8601 format, such
+     * as {@code PT15M}. The timeout must be positive.
+     *
+     * @param parameterName name of task parameter specifying timeout
+     * @param defaultTimeout timeout of tasks that do not have the parameter, or {@code null} if
+     *     such tasks should have no timeout
+     * @return timeout policy
+     */
+    static TaskTimeoutPolicy fromParameter(String parameterName, Duration defaultTimeout) {
+        return task -> {
+            String value = task.getParameter(parameterName);
+            if (value == null) {
+                return defaultTimeout;
+            }
+            value = value.trim();
+            Duration timeout;
+            try {
+                if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+                    timeout = Duration.ofSeconds(Long.parseLong(value));
+                } else {
+                    timeout = Duration.parse(value);
+                }
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException(
+                        "Invalid value of parameter " + parameterName + ": \"" + value + "\"", e);
+            }
+            if (timeout.isNegative() || timeout.isZero()) {
+                throw new IllegalArgumentException(
+                        "Timeout specified by parameter " + parameterName + " is not positive");
+            }
+            return timeout;
+        };
+    }
+}
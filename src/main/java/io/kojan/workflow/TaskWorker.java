@@ -0,0 +1,296 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.WorkerProtocol.Request;
+import io.kojan.workflow.model.Artifact;
+import io.kojan.workflow.model.Task;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Worker executing tasks on behalf of a workflow executor, typically in a separate process.
+ *
+ * <p>Worker reads task execution requests from an input stream, runs the requested {@link
+ * TaskHandler} and writes task outcome and artifacts to an output stream. Handlers are
+ * instantiated by class name using their public no-argument constructor, warmed up with {@link
+ * TaskHandler#prepare()} and reused for subsequent tasks. Worker exits when its input stream
+ * ends. Alternatively worker can connect to a {@link TaskCoordinator} over network.
+ *
+ * @author Mikolaj Izdebski
+ */
+public final class TaskWorker {
+    private final Map<String, TaskHandler> handlers = new HashMap<>();
+    private volatile boolean busy;
+
+    private TaskWorker() {}
+
+    private static class Context implements TaskExecutionContext {
+        private final Request request;
+        private final List<Artifact> artifacts = new ArrayList<>();
+
+        Context(Request request) {
+            this.request = request;
+        }
+
+        @Override
+        public Task getTask() {
+            return request.task;
+        }
+
+        @Override
+        public List<FinishedTask> getDependencies() {
+            return request.dependencies;
+        }
+
+        @Override
+        public Path getWorkDir() {
+            return request.workDir;
+        }
+
+        @Override
+        public Path getResultDir() {
+            return request.resultDir;
+        }
+
+        @Override
+        public List<Path> getDependencyArtifacts(String type) throws TaskTermination {
+            List<Path> paths = new ArrayList<>();
+            for (FinishedTask dependency : request.dependencies) {
+                paths.addAll(dependency.getArtifacts(type));
+            }
+            return paths;
+        }
+
+        @Override
+        public Path getDependencyArtifact(String type) throws TaskTermination {
+            List<Path> paths = getDependencyArtifacts(type);
+            if (paths.size() != 1) {
+                TaskTermination.error(
+                        request.task
+                                + " was expected to have exactly one dependency artifact of type "
+                                + type
+                                + ", but found "
+                                + paths.size());
+            }
+            return paths.iterator().next();
+        }
+
+        @Override
+        public synchronized Path addArtifact(String type, String name) {
+            Artifact artifact = new Artifact(type, name);
+            artifacts.add(artifact);
+            return request.resultDir.resolve(artifact.getName());
+        }
+    }
+
+    private TaskHandler getHandler(String className) throws ReflectiveOperationException {
+        TaskHandler handler = handlers.get(className);
+        if (handler == null) {
+            handler =
+                    Class.forName(className)
+                            .asSubclass(TaskHandler.class)
+                            .getConstructor()
+                            .newInstance();
+            handler.prepare();
+            handlers.put(className, handler);
+        }
+        return handler;
+    }
+
+    private TaskTermination handleTask(Request request, Context context) {
+        try {
+            TaskHandler handler;
+            try {
+                handler = getHandler(request.handlerClass);
+            } catch (ReflectiveOperationException | ClassCastException e) {
+                throw TaskTermination.error(
+                        "Unable to instantiate task handler " + request.handlerClass + ": " + e);
+            }
+            handler.handleTask(context);
+            throw TaskTermination.error("Task did not set explicit outcome");
+        } catch (TaskTermination termination) {
+            return termination;
+        } catch (RuntimeException e) {
+            try {
+                throw TaskTermination.error("Task handler threw exception: " + e);
+            } catch (TaskTermination termination) {
+                return termination;
+            }
+        }
+    }
+
+    private void closeHandlers() {
+        for (TaskHandler handler : handlers.values()) {
+            handler.close();
+        }
+        handlers.clear();
+    }
+
+    private void serve(DataInputStream in, DataOutputStream out) throws IOException {
+        try {
+            for (int type; (type = WorkerProtocol.readMessageType(in)) >= 0; ) {
+                if (type == WorkerProtocol.MSG_CLOSE_HANDLERS) {
+                    closeHandlers();
+                    continue;
+                }
+                if (type != WorkerProtocol.MSG_REQUEST) {
+                    throw new IOException("Unexpected worker message type " + type);
+                }
+                Request request = WorkerProtocol.readRequest(in, out);
+                Context context = new Context(request);
+                TaskTermination termination;
+                busy = true;
+                try {
+                    termination = handleTask(request, context);
+                } finally {
+                    busy = false;
+                }
+                List<Artifact> artifacts;
+                synchronized (context) {
+                    artifacts = new ArrayList<>(context.artifacts);
+                }
+                synchronized (out) {
+                    WorkerProtocol.writeResponse(out, request.token, termination, artifacts);
+                }
+            }
+        } finally {
+            closeHandlers();
+        }
+    }
+
+    // CPU time consumed by the handler thread and by child processes it started
+    private static long getCpuTime(Thread thread) {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        long cpuTime =
+                threadBean.isThreadCpuTimeSupported()
+                        ? threadBean.getThreadCpuTime(thread.getId())
+                        : -1;
+        if (cpuTime < 0) {
+            return -1;
+        }
+        return ProcessHandle.current()
+                .descendants()
+                .map(p -> p.info().totalCpuDuration().orElse(Duration.ZERO).toNanos())
+                .reduce(cpuTime, Long::sum);
+    }
+
+    /**
+     * Serves task execution requests until the input stream ends.
+     *
+     * @param is stream from which requests are read
+     * @param os stream to which responses are written
+     * @throws IOException in case I/O error occurs when communicating with the executor
+     */
+    public static void serve(InputStream is, OutputStream os) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        new TaskWorker().serve(in, out);
+    }
+
+    /**
+     * Connects to a {@link TaskCoordinator} and serves task execution requests it sends until the
+     * coordinator closes the connection. Heartbeats are sent to the coordinator periodically while
+     * the worker is idle, and while a task is being executed as long as its handler makes
+     * progress, that is consumes CPU time, either itself or through child processes. A hung
+     * handler therefore loses its lease. When connection to the coordinator is lost, the handler
+     * is interrupted.
+     *
+     * @param host coordinator host name
+     * @param port coordinator port number
+     * @throws IOException in case I/O error occurs when communicating with the coordinator
+     */
+    public static void connect(String host, int port) throws IOException {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in =
+                    new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            long heartbeatMillis = WorkerProtocol.readHello(in).toMillis();
+            TaskWorker worker = new TaskWorker();
+            Thread serveThread = Thread.currentThread();
+            Thread heartbeatThread =
+                    new Thread(
+                            () -> {
+                                long lastCpuTime = -1;
+                                try {
+                                    for (; ; ) {
+                                        Thread.sleep(heartbeatMillis);
+                                        long cpuTime = getCpuTime(serveThread);
+                                        boolean progress = cpuTime < 0 || cpuTime != lastCpuTime;
+                                        lastCpuTime = cpuTime;
+                                        if (worker.busy && !progress) {
+                                            continue;
+                                        }
+                                        synchronized (out) {
+                                            WorkerProtocol.writeHeartbeat(out);
+                                        }
+                                    }
+                                } catch (IOException e) {
+                                    serveThread.interrupt();
+                                } catch (InterruptedException e) {
+                                    // Worker exiting
+                                }
+                            },
+                            "task-worker-heartbeat");
+            heartbeatThread.setDaemon(true);
+            heartbeatThread.start();
+            try {
+                worker.serve(in, out);
+            } finally {
+                heartbeatThread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs worker. Without arguments, worker serves requests on standard input and writes
+     * responses to standard output. With a single {@code host:port} argument, worker connects to
+     * a {@link TaskCoordinator} listening at given address. In either case anything that task
+     * handlers print to standard output is redirected to standard error.
+     *
+     * @param args optional coordinator address
+     * @throws IOException in case I/O error occurs when communicating with the executor
+     */
+    public static void main(String[] args) throws IOException {
+        OutputStream stdout = new FileOutputStream(FileDescriptor.out);
+        System.setOut(new PrintStream(new FileOutputStream(FileDescriptor.err), true));
+        if (args.length == 1) {
+            int colon = args[0].lastIndexOf(':');
+            connect(args[0].substring(0, colon), Integer.parseInt(args[0].substring(colon + 1)));
+        } else {
+            serve(System.in, stdout);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.WorkerProtocol.Response;
+import io.kojan.workflow.model.Artifact;
+import io.kojan.workflow.model.Task;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A {@link TaskHandlerFactory} that executes tasks in a pool of long-lived worker processes,
+ * rather than in the JVM running the workflow executor. This isolates heap usage and crashes of
+ * task handlers from the executor and from each other.
+ *
+ * <p>Worker processes are JVMs running {@link TaskWorker} with the same class path as the current
+ * JVM. They are started on demand, up to given maximal number, and reused for subsequent tasks.
+ * Handlers are instantiated in workers by class name, so they must have a public no-argument
+ * constructor. If a worker process dies while executing a task, the task finishes with {@link
+ * io.kojan.workflow.model.TaskOutcome#ERROR} outcome and the worker is replaced by a new one when
+ * needed. Worker processes executing tasks that are interrupted, for example because they timed
+ * out, are killed.
+ *
+ * @author Mikolaj Izdebski
+ */
+public class WorkerPoolTaskHandlerFactory implements TaskHandlerFactory {
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final int maxWorkers;
+    private final Function<Task, String> handlerClassResolver;
+    private final List<String> jvmOptions;
+    private final Deque<Worker> idleWorkers = new ArrayDeque<>();
+    private final List<Worker> workers = new ArrayList<>();
+    private int workerCount;
+    private long nextToken;
+
+    private static class Worker {
+        private final Process process;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final BlockingQueue<FutureTask<Response>> exchanges = new LinkedBlockingQueue<>();
+        private final Thread exchangeThread;
+
+        // Blocking pipe I/O cannot be interrupted, so it is done by a thread dedicated to the
+        // worker connection, while threads handling tasks wait for it interruptibly
+        Worker(Process process) {
+            this.process = process;
+            in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+            exchangeThread = new Thread(this::exchangeLoop, "worker-exchange-" + process.pid());
+            exchangeThread.setDaemon(true);
+            exchangeThread.start();
+        }
+
+        private void exchangeLoop() {
+            try {
+                for (; ; ) {
+                    exchanges.take().run();
+                }
+            } catch (InterruptedException e) {
+                // Worker was discarded or stopped
+            }
+        }
+
+        Response exchange(Callable<Response> exchange)
+                throws InterruptedException, ExecutionException {
+            FutureTask<Response> future = new FutureTask<>(exchange);
+            exchanges.add(future);
+            return future.get();
+        }
+
+        // Exchange in progress, if any, fails once the process is killed or its pipes are closed
+        void stop() {
+            exchangeThread.interrupt();
+        }
+    }
+
+    private class WorkerTaskHandler implements TaskHandler {
+        private final String handlerClass;
+
+        WorkerTaskHandler(String handlerClass) {
+            this.handlerClass = handlerClass;
+        }
+
+        @Override
+        public void handleTask(TaskExecutionContext context) throws TaskTermination {
+            Worker worker;
+            try {
+                worker = acquireWorker();
+            } catch (IOException e) {
+                throw TaskTermination.error("Unable to start worker process: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw TaskTermination.error("Interrupted while waiting for worker process");
+            }
+            // Worker is killed when this thread is interrupted while waiting for the exchange
+            long token = nextToken();
+            Response response;
+            try {
+                response =
+                        worker.exchange(
+                                () -> {
+                                    WorkerProtocol.writeRequest(
+                                            worker.out, token, handlerClass, context);
+                                    return WorkerProtocol.readResponse(
+                                            worker.in, worker.out, context, token);
+                                });
+            } catch (InterruptedException e) {
+                discardWorker(worker);
+                Thread.currentThread().interrupt();
+                throw TaskTermination.error("Interrupted while waiting for worker process");
+            } catch (ExecutionException e) {
+                discardWorker(worker);
+                throw TaskTermination.error(
+                        "Communication with worker process failed: " + e.getCause().getMessage());
+            }
+            releaseWorker(worker);
+            for (Artifact artifact : response.artifacts) {
+                context.addArtifact(artifact.getType(), artifact.getName());
+            }
+            response.terminate();
+        }
+    }
+
+    /**
+     * Creates a worker pool task handler factory, which uses values of {@link Task#getHandler()}
+     * as names of handler classes.
+     *
+     * @param maxWorkers maximal number of worker processes running at the same time
+     */
+    public WorkerPoolTaskHandlerFactory(int maxWorkers) {
+        this(maxWorkers, Task::getHandler, List.of());
+    }
+
+    /**
+     * Creates a worker pool task handler factory.
+     *
+     * @param maxWorkers maximal number of worker processes running at the same time
+     * @param handlerClassResolver function determining name of handler class for given task
+     * @param jvmOptions additional options passed to JVMs of worker processes, such as heap size
+     */
+    public WorkerPoolTaskHandlerFactory(
+            int maxWorkers, Function<Task, String> handlerClassResolver, List<String> jvmOptions) {
+        if (maxWorkers < 1) {
+            throw new IllegalArgumentException("At least one worker process is required");
+        }
+        this.maxWorkers = maxWorkers;
+        this.handlerClassResolver = handlerClassResolver;
+        this.jvmOptions = List.copyOf(jvmOptions);
+    }
+
+    private Worker startWorker() throws IOException {
+        List<String> command = WorkerProtocol.workerCommand(jvmOptions, List.of());
+        Process process =
+                new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        return new Worker(process);
+    }
+
+    private Worker acquireWorker() throws IOException, InterruptedException {
+        synchronized (this) {
+            while (idleWorkers.isEmpty() && workerCount >= maxWorkers) {
+                wait();
+            }
+            if (!idleWorkers.isEmpty()) {
+                return idleWorkers.pollFirst();
+            }
+            workerCount++;
+        }
+        // Start the process outside of the lock, so that other tasks can use idle workers
+        Worker worker = null;
+        try {
+            worker = startWorker();
+            return worker;
+        } finally {
+            synchronized (this) {
+                if (worker != null) {
+                    workers.add(worker);
+                } else {
+                    workerCount--;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    private synchronized long nextToken() {
+        return nextToken++;
+    }
+
+    private synchronized void releaseWorker(Worker worker) {
+        idleWorkers.addFirst(worker);
+        notifyAll();
+    }
+
+    private void discardWorker(Worker worker) {
+        worker.process.destroyForcibly();
+        worker.stop();
+        synchronized (this) {
+            if (workers.remove(worker)) {
+                workerCount--;
+                notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public TaskHandler createTaskHandler(Task task) {
+        return new WorkerTaskHandler(handlerClassResolver.apply(task));
+    }
+
+    /**
+     * Stops all worker processes. Workers are asked to exit by closing their standard input, and
+     * are killed if they do not exit in time.
+     */
+    @Override
+    public void closeHandlers() {
+        List<Worker> stoppedWorkers;
+        synchronized (this) {
+            stoppedWorkers = new ArrayList<>(workers);
+            workers.clear();
+            idleWorkers.clear();
+            workerCount = 0;
+            notifyAll();
+        }
+        for (Worker worker : stoppedWorkers) {
+            worker.stop();
+            try {
+                worker.out.close();
+            } catch (IOException e) {
+                worker.process.destroyForcibly();
+            }
+        }
+        for (Worker worker : stoppedWorkers) {
+            try {
+                if (!worker.process.waitFor(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    worker.process.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                worker.process.destroyForcibly();
+            }
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Artifact;
+import io.kojan.workflow.model.Result;
+import io.kojan.workflow.model.Task;
+import io.kojan.workflow.model.TaskOutcome;
+import io.kojan.workflow.model.Workflow;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Messages exchanged between workflow executor and worker processes executing tasks on its behalf.
+ *
+ * <p>A request carries lease token, name of the handler class, task directories and the task
+ * together with its dependencies. A response carries the lease token of its request, task outcome,
+ * outcome reason and artifacts added by the task. Responses with unexpected lease token are
+ * rejected, so that a late response to an expired lease is never accepted.
+ * While handling a task, worker may ask for path to a dependency artifact, which the executor
+ * answers with the path, so that only artifacts actually used by the task need to be
+ * decompressed or extracted. Each message is prefixed with its type, so that other kinds of
+ * messages can be exchanged over the same connection. Workers connected to a {@link
+ * TaskCoordinator} over network are greeted with a hello message specifying heartbeat interval, and
+ * then send heartbeat messages periodically to prove they are alive and making progress. At the
+ * end of each workflow workers are asked to close their cached task handlers.
+ *
+ * @author Mikolaj Izdebski
+ */
+final class WorkerProtocol {
+    static final int MSG_REQUEST = 'Q';
+    static final int MSG_RESPONSE = 'A';
+    static final int MSG_HELLO = 'C';
+    static final int MSG_HEARTBEAT = 'H';
+    static final int MSG_ARTIFACT = 'P';
+    static final int MSG_CLOSE_HANDLERS = 'X';
+
+    private WorkerProtocol() {}
+
+    /** Task execution request, as decoded by worker. */
+    static class Request {
+        final long token;
+        final String handlerClass;
+        final Task task;
+        final List<FinishedTask> dependencies;
+        final Path resultDir;
+        final Path workDir;
+
+        Request(
+                long token,
+                String handlerClass,
+                Task task,
+                List<FinishedTask> dependencies,
+                Path resultDir,
+                Path workDir) {
+            this.token = token;
+            this.handlerClass = handlerClass;
+            this.task = task;
+            this.dependencies = dependencies;
+            this.resultDir = resultDir;
+            this.workDir = workDir;
+        }
+    }
+
+    /** Task execution response, as decoded by executor. */
+    static class Response {
+        final TaskOutcome outcome;
+        final String outcomeReason;
+        final List<Artifact> artifacts;
+
+        Response(TaskOutcome outcome, String outcomeReason, List<Artifact> artifacts) {
+            this.outcome = outcome;
+            this.outcomeReason = outcomeReason;
+            this.artifacts = artifacts;
+        }
+
+        /**
+         * Throws task termination corresponding to the response.
+         *
+         * @throws TaskTermination always
+         */
+        void terminate() throws TaskTermination {
+            switch (outcome) {
+                case SUCCESS -> TaskTermination.success(outcomeReason);
+                case FAILURE -> TaskTermination.fail(outcomeReason);
+                default -> TaskTermination.error(outcomeReason);
+            }
+        }
+    }
+
+    /** Obtains paths to dependency artifacts from the executor when they are first needed. */
+    static class ArtifactFetcher {
+        private final DataInputStream in;
+        private final DataOutputStream out;
+
+        ArtifactFetcher(DataInputStream in, DataOutputStream out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        synchronized Path fetch(int dependency, int artifact) throws IOException {
+            synchronized (out) {
+                out.writeByte(MSG_ARTIFACT);
+                out.writeInt(dependency);
+                out.writeInt(artifact);
+                out.flush();
+            }
+            if (readMessageType(in) != MSG_ARTIFACT) {
+                throw new IOException("Expected artifact message from executor");
+            }
+            String path = readString(in);
+            if (path == null) {
+                throw new IOException("Dependency artifact is not available");
+            }
+            return Paths.get(path);
+        }
+    }
+
+    // Artifacts of a dependency are located by their paths as seen by the executor, which is
+    // correct as long as workers see the same file system
+    private static class RemoteFinishedTask extends FinishedTask {
+        private final ArtifactFetcher fetcher;
+        private final int index;
+        private final Map<Artifact, Path> artifactPaths = new HashMap<>();
+
+        RemoteFinishedTask(Task task, Result result, ArtifactFetcher fetcher, int index) {
+            super(task, result, null);
+            this.fetcher = fetcher;
+            this.index = index;
+        }
+
+        @Override
+        public synchronized Path getArtifact(Artifact artifact) {
+            Path path = artifactPaths.get(artifact);
+            if (path == null) {
+                int artifactIndex = getResult().getArtifacts().indexOf(artifact);
+                if (artifactIndex < 0) {
+                    throw new IllegalArgumentException(artifact + " is not an artifact of " + this);
+                }
+                try {
+                    path = fetcher.fetch(index, artifactIndex);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                artifactPaths.put(artifact, path);
+            }
+            return path;
+        }
+
+        // Coordinator passes paths to already decompressed artifacts
+        @Override
+        public InputStream openArtifact(Artifact artifact) throws IOException {
+            return Files.newInputStream(getArtifact(artifact));
+        }
+    }
+
+    /**
+     * Builds command line that starts a worker process running {@link TaskWorker} with the same
+     * class path as the current JVM.
+     *
+     * @param jvmOptions additional JVM options
+     * @param args worker arguments
+     * @return command line
+     */
+    static List<String> workerCommand(List<String> jvmOptions, List<String> args) {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(TaskWorker.class.getName());
+        command.addAll(args);
+        return command;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads type of the next message.
+     *
+     * @param in stream to read from
+     * @return message type, or {@code -1} if the stream has ended
+     * @throws IOException in case I/O error occurs
+     */
+    static int readMessageType(DataInputStream in) throws IOException {
+        try {
+            return in.readUnsignedByte();
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    static void writeHello(DataOutputStream out, Duration heartbeatInterval) throws IOException {
+        out.writeByte(MSG_HELLO);
+        out.writeLong(heartbeatInterval.toMillis());
+        out.flush();
+    }
+
+    static Duration readHello(DataInputStream in) throws IOException {
+        if (readMessageType(in) != MSG_HELLO) {
+            throw new IOException("Expected hello message from task coordinator");
+        }
+        return Duration.ofMillis(in.readLong());
+    }
+
+    static void writeHeartbeat(DataOutputStream out) throws IOException {
+        out.writeByte(MSG_HEARTBEAT);
+        out.flush();
+    }
+
+    static void writeCloseHandlers(DataOutputStream out) throws IOException {
+        out.writeByte(MSG_CLOSE_HANDLERS);
+        out.flush();
+    }
+
+    static void writeRequest(
+            DataOutputStream out, long token, String handlerClass, TaskExecutionContext context)
+            throws IOException {
+        List<Task> tasks = new ArrayList<>();
+        List<Result> results = new ArrayList<>();
+        tasks.add(context.getTask());
+        for (FinishedTask dependency : context.getDependencies()) {
+            tasks.add(dependency.getTask());
+            results.add(dependency.getResult());
+        }
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new Workflow(tasks, results).writeToBinary(bos);
+
+        out.writeByte(MSG_REQUEST);
+        out.writeLong(token);
+        writeString(out, handlerClass);
+        writeString(out, context.getResultDir().toString());
+        writeString(out, context.getWorkDir().toString());
+        out.writeInt(bos.size());
+        bos.writeTo(out);
+        out.flush();
+    }
+
+    static Request readRequest(DataInputStream in, DataOutputStream out) throws IOException {
+        long token = in.readLong();
+        String handlerClass = readString(in);
+        Path resultDir = Paths.get(readString(in));
+        Path workDir = Paths.get(readString(in));
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        Workflow wf = Workflow.readFromBinary(new ByteArrayInputStream(bytes));
+        ArtifactFetcher fetcher = new ArtifactFetcher(in, out);
+        List<FinishedTask> dependencies = new ArrayList<>();
+        for (int i = 0; i < wf.getResults().size(); i++) {
+            dependencies.add(
+                    new RemoteFinishedTask(
+                            wf.getTasks().get(i + 1), wf.getResults().get(i), fetcher, i));
+        }
+        return new Request(
+                token, handlerClass, wf.getTasks().get(0), dependencies, resultDir, workDir);
+    }
+
+    static void writeResponse(
+            DataOutputStream out, long token, TaskTermination termination, List<Artifact> artifacts)
+            throws IOException {
+        out.writeByte(MSG_RESPONSE);
+        out.writeLong(token);
+        writeString(out, termination.getOutcome().name());
+        writeString(out, termination.getMessage());
+        out.writeInt(artifacts.size());
+        for (Artifact artifact : artifacts) {
+            writeString(out, artifact.getType());
+            writeString(out, artifact.getName());
+        }
+        out.flush();
+    }
+
+    // Paths to artifacts that are not available are sent as null, which fails only the worker
+    // task that asked for them
+    private static void writeArtifactPath(
+            DataInputStream in, DataOutputStream out, TaskExecutionContext context)
+            throws IOException {
+        int dependencyIndex = in.readInt();
+        int artifactIndex = in.readInt();
+        String path = null;
+        List<FinishedTask> dependencies = context.getDependencies();
+        if (dependencyIndex >= 0 && dependencyIndex < dependencies.size()) {
+            FinishedTask dependency = dependencies.get(dependencyIndex);
+            List<Artifact> artifacts = dependency.getResult().getArtifacts();
+            if (artifactIndex >= 0 && artifactIndex < artifacts.size()) {
+                try {
+                    path = dependency.getArtifact(artifacts.get(artifactIndex)).toString();
+                } catch (RuntimeException e) {
+                    // Reported to the worker as unavailable artifact
+                }
+            }
+        }
+        out.writeByte(MSG_ARTIFACT);
+        writeString(out, path);
+        out.flush();
+    }
+
+    /**
+     * Reads messages sent by worker in reply to a request, until a response is received. Requests
+     * for dependency artifacts are answered and heartbeats are skipped.
+     *
+     * @param in stream to read from
+     * @param out stream to which replies are written
+     * @param context context of the task that was sent to the worker
+     * @param token lease token of the request
+     * @return the response
+     * @throws IOException in case I/O error occurs, connection is closed or the response does not
+     *     belong to the request
+     */
+    static Response readResponse(
+            DataInputStream in, DataOutputStream out, TaskExecutionContext context, long token)
+            throws IOException {
+        for (; ; ) {
+            int type = readMessageType(in);
+            if (type == MSG_RESPONSE) {
+                long responseToken = in.readLong();
+                if (responseToken != token) {
+                    throw new IOException("response to expired lease " + responseToken);
+                }
+                return readResponse(in);
+            }
+            if (type == MSG_ARTIFACT) {
+                writeArtifactPath(in, out, context);
+            } else if (type != MSG_HEARTBEAT) {
+                throw new IOException("connection to worker lost");
+            }
+        }
+    }
+
+    private static Response readResponse(DataInputStream in) throws IOException {
+        String name = readString(in);
+        TaskOutcome outcome;
+        try {
+            outcome = TaskOutcome.valueOf(String.valueOf(name));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid task outcome " + name, e);
+        }
+        String outcomeReason = readString(in);
+        int artifactCount = in.readInt();
+        List<Artifact> artifacts = new ArrayList<>();
+        for (int i = 0; i < artifactCount; i++) {
+            artifacts.add(new Artifact(readString(in), readString(in)));
+        }
+        return new Response(outcome, outcomeReason, artifacts);
+    }
+}
@@ -0,0 +1,331 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import io.kojan.workflow.model.Workflow;
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A long-lived engine executing many workflows at the same time, with tasks of all workflows
+ * running on a single shared pool of threads and limited by a single shared {@link TaskThrottle}.
+ *
+ * <p>Each submitted workflow has a priority. Whenever a pool thread becomes available, it runs a
+ * ready task of the highest-priority workflow that has any ready tasks. Workflows with the same
+ * priority take turns, so that each of them makes progress regardless of how many ready tasks
+ * other workflows have.
+ *
+ * <p>Pool threads are not held by tasks that wait, whether for throttle capacity, result locks,
+ * batches, dependencies or before being retried. While a task waits, another task is run in its
+ * place, on a new thread if no pool thread is idle, and once the wait is over the task continues
+ * as soon as there is a free slot in the pool. The number of tasks running at the same time
+ * therefore never exceeds the pool size, but the number of threads may.
+ *
+ * <p>Task handler factories of submitted workflows are shared, so they are not closed when each
+ * workflow finishes, but when the engine is closed.
+ *
+ * @author Mikolaj Izdebski
+ */
+public class WorkflowEngine implements Closeable {
+    private final TaskThrottle throttle;
+    private final int poolSize;
+    private final Set<Thread> workers = new HashSet<>();
+    private final Set<Thread> coordinators = new HashSet<>();
+    private final Set<TaskHandlerFactory> handlerFactories =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+    private final List<Submission> submissions = new ArrayList<>();
+    // Pool slots not taken by running tasks, and tasks waiting for a slot to continue
+    private int freeSlots;
+    private int resumingTasks;
+    private int idleWorkers;
+    private int startedWorkers;
+    private boolean closed;
+
+    // Dispatcher of a single workflow, sharing the pool of the engine
+    private class SubmissionDispatcher implements TaskDispatcher {
+        private final Submission submission;
+
+        SubmissionDispatcher(Submission submission) {
+            this.submission = submission;
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            dispatch(submission, task);
+        }
+
+        @Override
+        public void waitStarted() {
+            releaseSlot();
+        }
+
+        @Override
+        public void waitFinished() {
+            resumeInSlot();
+        }
+    }
+
+    private static class Submission {
+        private final int priority;
+        private final Deque<Runnable> readyTasks = new ArrayDeque<>();
+
+        Submission(int priority) {
+            this.priority = priority;
+        }
+    }
+
+    /**
+     * Creates a workflow engine.
+     *
+     * @param poolSize number of threads in the shared pool
+     * @param throttle limiter of task execution pace, shared by all workflows
+     */
+    public WorkflowEngine(int poolSize, TaskThrottle throttle) {
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("At least one pool thread is required");
+        }
+        this.throttle = throttle;
+        this.poolSize = poolSize;
+        freeSlots = poolSize;
+    }
+
+    // Workers are started on demand, so that every task that can take a free slot has an idle
+    // worker to run it
+    private void startWorkers() {
+        int readyCount = 0;
+        for (Submission submission : submissions) {
+            readyCount += submission.readyTasks.size();
+        }
+        while (idleWorkers < Math.min(freeSlots - resumingTasks, readyCount)) {
+            Thread worker = new Thread(this::workLoop, "workflow-engine-" + startedWorkers++);
+            worker.setDaemon(true);
+            workers.add(worker);
+            idleWorkers++;
+            worker.start();
+        }
+    }
+
+    private synchronized void dispatch(Submission submission, Runnable task) {
+        submission.readyTasks.add(task);
+        startWorkers();
+        notifyAll();
+    }
+
+    private synchronized void releaseSlot() {
+        freeSlots++;
+        startWorkers();
+        notifyAll();
+    }
+
+    // Tasks that finished waiting take precedence over tasks that have not started yet
+    private synchronized void resumeInSlot() {
+        resumingTasks++;
+        boolean interrupted = false;
+        while (freeSlots == 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        resumingTasks--;
+        freeSlots--;
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Highest priority wins; among equal priorities the submission served least recently wins
+    private Runnable pollTask() {
+        Submission best = null;
+        for (Submission submission : submissions) {
+            if (!submission.readyTasks.isEmpty()
+                    && (best == null || submission.priority > best.priority)) {
+                best = submission;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        submissions.remove(best);
+        submissions.add(best);
+        return best.readyTasks.poll();
+    }
+
+    private void workLoop() {
+        for (; ; ) {
+            Runnable task;
+            synchronized (this) {
+                while (freeSlots - resumingTasks <= 0 || (task = pollTask()) == null) {
+                    // Workers started while other tasks were waiting are not kept idle
+                    if (closed && submissions.isEmpty() || workers.size() > poolSize) {
+                        idleWorkers--;
+                        workers.remove(Thread.currentThread());
+                        notifyAll();
+                        return;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // Interrupt status of a worker has no meaning
+                    }
+                }
+                idleWorkers--;
+                freeSlots--;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // Failure of a single task must not shrink the pool
+                Thread.currentThread()
+                        .getUncaughtExceptionHandler()
+                        .uncaughtException(Thread.currentThread(), e);
+            } finally {
+                synchronized (this) {
+                    idleWorkers++;
+                    freeSlots++;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a workflow executor that uses the shared throttle of this engine. The executor can
+     * be further configured before it is submitted with {@link #submit(WorkflowExecutor, int)}.
+     *
+     * @param wf the workflow to execute
+     * @param handlerFactory a factory to create task handlers
+     * @param storage interface to task persistent and ephemeral storage
+     * @param batchMode whether non-interactive logger should be used
+     * @return workflow executor
+     */
+    public WorkflowExecutor createExecutor(
+            Workflow wf,
+            TaskHandlerFactory handlerFactory,
+            TaskStorage storage,
+            boolean batchMode) {
+        return new WorkflowExecutor(wf, handlerFactory, storage, throttle, batchMode);
+    }
+
+    /**
+     * Submits a workflow for execution.
+     *
+     * @param wf the workflow to execute
+     * @param handlerFactory a factory to create task handlers
+     * @param storage interface to task persistent and ephemeral storage
+     * @param batchMode whether non-interactive logger should be used
+     * @param priority workflow priority, higher values take precedence
+     * @return future completed with new workflow state once workflow execution is finished
+     */
+    public CompletableFuture<Workflow> submit(
+            Workflow wf,
+            TaskHandlerFactory handlerFactory,
+            TaskStorage storage,
+            boolean batchMode,
+            int priority) {
+        return submit(createExecutor(wf, handlerFactory, storage, batchMode), priority);
+    }
+
+    /**
+     * Submits a workflow executor for execution. Tasks of the workflow are run on the shared pool
+     * of this engine.
+     *
+     * @param executor the workflow executor to run
+     * @param priority workflow priority, higher values take precedence
+     * @return future completed with new workflow state once workflow execution is finished
+     * @throws IllegalStateException if the engine has been closed
+     */
+    public CompletableFuture<Workflow> submit(WorkflowExecutor executor, int priority) {
+        Submission submission = new Submission(priority);
+        CompletableFuture<Workflow> future = new CompletableFuture<>();
+        // Scheduling loop of each workflow runs in its own lightweight thread, which spends most
+        // of its time waiting for tasks to finish
+        Thread coordinator =
+                new Thread(
+                        () -> {
+                            try {
+                                future.complete(executor.execute());
+                            } catch (RuntimeException | Error e) {
+                                future.completeExceptionally(e);
+                            } finally {
+                                synchronized (this) {
+                                    submissions.remove(submission);
+                                    coordinators.remove(Thread.currentThread());
+                                    notifyAll();
+                                }
+                            }
+                        },
+                        "workflow-coordinator");
+        coordinator.setDaemon(true);
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Workflow engine is closed");
+            }
+            submissions.add(submission);
+            coordinators.add(coordinator);
+            handlerFactories.add(executor.getHandlerFactory());
+        }
+        executor.setHandlerFactoryOwned(false);
+        executor.setTaskDispatcher(new SubmissionDispatcher(submission));
+        coordinator.start();
+        return future;
+    }
+
+    /**
+     * Stops accepting new workflows, waits until all submitted workflows finish, stops pool
+     * threads and closes task handler factories of the submitted workflows.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            joinAll(coordinators);
+            joinAll(workers);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        for (TaskHandlerFactory handlerFactory : handlerFactories) {
+            handlerFactory.closeHandlers();
+        }
+    }
+
+    // Threads remove themselves from the set only once they are about to exit
+    private void joinAll(Set<Thread> threads) throws InterruptedException {
+        for (; ; ) {
+            Thread thread;
+            synchronized (this) {
+                if (threads.isEmpty()) {
+                    return;
+                }
+                thread = threads.iterator().next();
+            }
+            thread.join();
+        }
+    }
+}
@@ -18,6 +18,7 @@ package io.kojan.workflow;
 import io.kojan.workflow.model.Task;
 import io.kojan.workflow.model.TaskOutcome;
 import io.kojan.workflow.model.Workflow;
+import java.time.Duration;
 
 /**
  * An event listener that is notified about various events during {@link Workflow} execution.
@@ -49,6 +50,20 @@ public interface WorkflowExecutionListener {
      */
     void taskFailed(Workflow workflow, FinishedTask finishedTask);
 
+    /**
+     * Called when a task execution attempt is finished with an outcome that is going to be retried
+     * according to {@link RetryPolicy}. The task is executed again after given delay.
+     *
+     * <p>The default implementation does nothing.
+     *
+     * @param workflow the workflow being executed
+     * @param finishedTask the task with result of the failed attempt
+     * @param attempt number of the failed attempt, starting from 1
+     * @param delay delay after which the task is going to be executed again
+     */
+    default void taskRetrying(
+            Workflow workflow, FinishedTask finishedTask, int attempt, Duration delay) {}
+
     /**
      * Called when a task execution has been skipped because an already-existing result has been
      * found and reused for the task.
@@ -58,6 +73,32 @@ public interface WorkflowExecutionListener {
      */
     void taskReused(Workflow workflow, FinishedTask finishedTask);
 
+    /**
+     * Called when a task execution has been skipped because a cached failed result, which has not
+     * expired yet, has been found and reported again for the task, see {@link
+     * WorkflowExecutor#setFailureCacheTtl(Duration)}. The task is not reported through {@link
+     * #taskFailed(Workflow, FinishedTask)}, as it was never running.
+     *
+     * <p>The default implementation does nothing.
+     *
+     * @param workflow the workflow being executed
+     * @param finishedTask the task which execution has been skipped
+     */
+    default void taskFailureReused(Workflow workflow, FinishedTask finishedTask) {}
+
+    /**
+     * Called when a result successfully produced by a workflow execution could not be packed
+     * after the execution finished, see {@link WorkflowExecutor#setResultPacking(boolean)}. The
+     * result is left unpacked and remains valid.
+     *
+     * <p>The default implementation does nothing.
+     *
+     * @param workflow the workflow that was executed
+     * @param finishedTask the task which result could not be packed
+     * @param reason description of the failure
+     */
+    default void resultPackingFailed(Workflow workflow, FinishedTask finishedTask, String reason) {}
+
     /**
      * Called when a workflow execution is about to be started.
      *
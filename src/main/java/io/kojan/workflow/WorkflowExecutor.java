@@ -15,14 +15,34 @@
  */
 package io.kojan.workflow;
 
+import io.kojan.workflow.model.Artifact;
+import io.kojan.workflow.model.Result;
 import io.kojan.workflow.model.Task;
 import io.kojan.workflow.model.TaskOutcome;
 import io.kojan.workflow.model.Workflow;
 import io.kojan.workflow.model.WorkflowBuilder;
+import io.kojan.workflow.model.WorkflowDiff;
+import io.kojan.workflow.model.WorkflowGraph;
+import io.kojan.xml.XMLException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
 
 /**
  * A facility to execute {@link Workflow}s.
@@ -33,12 +53,46 @@ public class WorkflowExecutor {
     private final TaskHandlerFactory handlerFactory;
     private final TaskStorage storage;
     private final WorkflowBuilder workflowBuilder = new WorkflowBuilder();
-    private final Set<Task> newTasks;
+    private final WorkflowGraph graph;
+    private final List<Task> submittedTasks = new ArrayList<>();
+    private final Map<String, Integer> submittedIndices = new HashMap<>();
+    private final List<int[]> submittedDependencies = new ArrayList<>();
+    private final Map<Integer, List<Integer>> submittedDependents = new HashMap<>();
+    private final Map<String, CompletableFuture<Void>> preparedHandlers =
+            new ConcurrentHashMap<>();
+    private int[] pendingDependencyCounts;
+    private final Deque<Integer> readyTasks = new ArrayDeque<>();
     private final Set<Task> pendingOrRunningTasks = new LinkedHashSet<>();
-    private final Set<FinishedTask> successfullyFinishedTasks = new LinkedHashSet<>();
-    private final Set<FinishedTask> unsuccessfullyFinishedTasks = new LinkedHashSet<>();
+    private final Set<Task> runningTasks = new HashSet<>();
+    private FinishedTask[] successfullyFinishedTasks;
+    private boolean[] scheduledTasks;
+    private int successfullyFinishedCount;
     private final TaskThrottle throttle;
+    private final TaskBatcher batcher;
     private final List<WorkflowExecutionListener> listeners = new ArrayList<>();
+    private final Map<String, Result> journaledResults = new HashMap<>();
+    private ResultJournal journal;
+    private final Map<String, Duration> historicalDurations = new HashMap<>();
+    private final Map<String, Result> previousResults = new HashMap<>();
+    private TaskTimeoutPolicy timeoutPolicy;
+    private double speculationFactor;
+    private RetryPolicy retryPolicy;
+    private Duration failureCacheTtl;
+    private boolean forceRetry;
+    private boolean earlyCutoff;
+    private double digestVerificationRate;
+    private Predicate<String> compressedArtifactTypes;
+    private boolean resultPacking;
+    private final List<FinishedTask> executedResults = new ArrayList<>();
+    private final ArtifactScratch artifactScratch = new ArtifactScratch();
+    private Predicate<Task> streamingTasks;
+    private final Object streamLock = new Object();
+    private final Map<Integer, ArtifactChannel> channels = new HashMap<>();
+    private final Set<Integer> startedTasks = new HashSet<>();
+    private Executor taskDispatcher = task -> new Thread(task).start();
+    private boolean handlerFactoryOwned = true;
+    private int runningExecutorCount;
+    private final Map<Integer, BitSet> transitiveClosures = new HashMap<>();
 
     /**
      * Creates a workflow executor.
@@ -48,6 +102,8 @@ public class WorkflowExecutor {
      * @param storage interface to task persistent and ephemeral storage
      * @param throttle limiter of task execution peace
      * @param batchMode whether non-interactive logger should be used
+     * @throws IllegalArgumentException if task IDs are not unique, some task depends on a
+     *     non-existent task or task dependencies form a cycle
      */
     public WorkflowExecutor(
             Workflow wf,
@@ -56,10 +112,29 @@ public class WorkflowExecutor {
             TaskThrottle throttle,
             boolean batchMode) {
         wf.getTasks().stream().forEach(workflowBuilder::addTask);
-        newTasks = new LinkedHashSet<>(wf.getTasks());
+        graph = WorkflowGraph.compile(wf);
+        pendingDependencyCounts = new int[graph.size()];
+        successfullyFinishedTasks = new FinishedTask[graph.size()];
+        scheduledTasks = new boolean[graph.size()];
+        for (int i = 0; i < graph.size(); i++) {
+            pendingDependencyCounts[i] = graph.getDependencyCount(i);
+            if (pendingDependencyCounts[i] == 0) {
+                readyTasks.add(i);
+            }
+        }
+        for (Result result : wf.getResults()) {
+            if (result.getOutcome() == TaskOutcome.SUCCESS
+                    && result.getTimeStarted() != null
+                    && result.getTimeFinished() != null) {
+                historicalDurations.put(
+                        result.getTaskId(),
+                        Duration.between(result.getTimeStarted(), result.getTimeFinished()));
+            }
+        }
         this.handlerFactory = handlerFactory;
         this.storage = storage;
         this.throttle = throttle;
+        batcher = new TaskBatcher(this);
         if (batchMode) {
             listeners.add(new BatchLogger());
         } else {
@@ -75,6 +150,52 @@ public class WorkflowExecutor {
         return throttle;
     }
 
+    TaskBatcher getTaskBatcher() {
+        return batcher;
+    }
+
+    TaskHandlerFactory getHandlerFactory() {
+        return handlerFactory;
+    }
+
+    // Handlers are prepared without holding executor monitor, as preparation can take long; tasks
+    // using a handler which is being prepared wait until its preparation is complete
+    void prepareHandler(Task task) {
+        CompletableFuture<Void> prepared = new CompletableFuture<>();
+        CompletableFuture<Void> existing =
+                preparedHandlers.putIfAbsent(task.getHandler(), prepared);
+        if (existing != null) {
+            existing.join();
+            return;
+        }
+        try {
+            handlerFactory.prepareHandler(task);
+            prepared.complete(null);
+        } catch (RuntimeException | Error e) {
+            prepared.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Handler factory shared by several workflows is closed by its owner
+    void setHandlerFactoryOwned(boolean handlerFactoryOwned) {
+        this.handlerFactoryOwned = handlerFactoryOwned;
+    }
+
+    // Waits of tasks are reported to dispatchers with bounded pools, which run other tasks
+    // in place of waiting ones
+    void waitStarted() {
+        if (taskDispatcher instanceof TaskDispatcher dispatcher) {
+            dispatcher.waitStarted();
+        }
+    }
+
+    void waitFinished() {
+        if (taskDispatcher instanceof TaskDispatcher dispatcher) {
+            dispatcher.waitFinished();
+        }
+    }
+
     /**
      * Add event listener that will be notified about various events during workflow execution.
      *
@@ -84,36 +205,623 @@ public class WorkflowExecutor {
         listeners.add(listener);
     }
 
+    /**
+     * Set policy determining task execution timeouts. Tasks that exceed their timeout are
+     * interrupted and finished with {@link TaskOutcome#ERROR} outcome as soon as their timeout
+     * expires, without waiting for their handlers to exit. Handlers that do not react to
+     * interruption are left running in the background, and their directories are discarded once
+     * they exit. Streaming dependents of tasks that time out finish with {@link
+     * TaskOutcome#ERROR} outcome too.
+     *
+     * @param timeoutPolicy the timeout policy, or {@code null} if tasks should have no timeout
+     */
+    public void setTaskTimeoutPolicy(TaskTimeoutPolicy timeoutPolicy) {
+        this.timeoutPolicy = timeoutPolicy;
+    }
+
+    /**
+     * Enable speculative execution of straggling tasks. When a task runs longer than its
+     * historical duration, taken from a successful result of the same task included in the
+     * executed workflow, multiplied by given factor, a second copy of the task is started with
+     * separate working and result directories. Whichever copy finishes first determines the task
+     * result, and the other copy is interrupted. Tasks which have streaming dependents are not
+     * executed speculatively, as artifacts streamed by both copies would be mixed.
+     *
+     * @param slowdownFactor how many times longer than its historical duration a task has to run
+     *     to be considered a straggler, or {@code 0} to disable speculative execution
+     */
+    public void setSpeculativeExecution(double slowdownFactor) {
+        this.speculationFactor = slowdownFactor;
+    }
+
+    /**
+     * Set policy determining whether and when tasks that finished with certain outcomes are
+     * executed again. Listeners are notified about each failed attempt that is going to be
+     * retried.
+     *
+     * @param retryPolicy the retry policy, or {@code null} if tasks should not be retried
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Enable caching of failed results. Results of tasks that finished with {@link
+     * TaskOutcome#FAILURE} outcome are recorded in task storage under their result ID, and for
+     * given time the same task with the same result ID is reported as failed again without being
+     * executed. Only the final attempt of a task is recorded. Tasks that finished with {@link
+     * TaskOutcome#ERROR} outcome are never cached, as errors are not considered deterministic.
+     *
+     * @param ttl how long failed results remain valid, or {@code null} to disable caching of failed
+     *     results
+     */
+    public void setFailureCacheTtl(Duration ttl) {
+        this.failureCacheTtl = ttl;
+    }
+
+    /**
+     * Set whether cached failed results should be ignored, so that tasks which failed previously
+     * are executed again. Results of such executions are cached anew, if caching of failed results
+     * is enabled.
+     *
+     * @param forceRetry whether cached failed results should be ignored
+     */
+    public void setForceRetry(boolean forceRetry) {
+        this.forceRetry = forceRetry;
+    }
+
+    /**
+     * Enable early cutoff. Results of dependent tasks are identified by content digests of
+     * dependency artifacts rather than by dependency result IDs. A cached result is valid as long
+     * as it was produced from byte-identical dependency artifacts, regardless of whether
+     * dependencies were executed again since then, so that re-executed tasks which reproduce their
+     * artifacts exactly do not cause tasks depending on them to be executed again.
+     *
+     * <p>Dependency results without artifact digests, such as results recorded by older versions,
+     * are identified by their result IDs and checked by their timestamps as usual.
+     *
+     * @param earlyCutoff whether early cutoff should be enabled
+     */
+    public void setEarlyCutoff(boolean earlyCutoff) {
+        this.earlyCutoff = earlyCutoff;
+    }
+
+    boolean isEarlyCutoff() {
+        return earlyCutoff;
+    }
+
+    /**
+     * Set fraction of reused results which artifact digests are verified. Size and modification
+     * time of artifacts of cached results are always verified before the results are reused,
+     * which is cheap. Recomputing digests of all artifacts on every run would be too expensive,
+     * so digests are verified only for a random sample of reused results. Results which artifacts
+     * do not match are not reused, and their tasks are executed again.
+     *
+     * @param rate fraction of reused results to verify, from {@code 0} (default, digests are never
+     *     verified) to {@code 1} (digests are verified every time)
+     */
+    public void setDigestVerificationRate(double rate) {
+        this.digestVerificationRate = rate;
+    }
+
+    double getDigestVerificationRate() {
+        return digestVerificationRate;
+    }
+
+    /**
+     * Enable compression of artifacts. Once a task finishes successfully, its artifacts of
+     * selected types are compressed with GZIP, in parallel by a pool of threads, and the task
+     * waits for the compression to complete before its result is recorded, as the recorded
+     * encoding of artifacts must match the files that readers see. Artifact types which data is
+     * already compressed should not be selected; artifacts that do not compress well are kept
+     * uncompressed anyway. Artifacts of tasks which have streaming dependents are never
+     * compressed.
+     *
+     * <p>Compressed artifacts are decompressed transparently to temporary copies when their path
+     * is obtained through {@link FinishedTask#getArtifact(Artifact)} or {@link
+     * TaskExecutionContext#getDependencyArtifacts(String)}. The copies are deleted once workflow
+     * execution finishes. Artifacts can be read without being decompressed to a file through
+     * {@link FinishedTask#openArtifact(Artifact)}.
+     *
+     * @param compressedTypes predicate determining types of artifacts that should be compressed,
+     *     or {@code null} if artifacts should not be compressed
+     */
+    public void setArtifactCompression(Predicate<String> compressedTypes) {
+        this.compressedArtifactTypes = compressedTypes;
+    }
+
+    Predicate<String> getCompressedArtifactTypes() {
+        return compressedArtifactTypes;
+    }
+
+    ArtifactScratch getArtifactScratch() {
+        return artifactScratch;
+    }
+
+    /**
+     * Enable archival of results. Once the workflow finishes executing, directories of results
+     * successfully produced by this execution are packed into single indexed pack files, which
+     * reduces the number of files kept in task storage. Packed results are reused directly from
+     * their packs, and their artifacts are extracted to temporary copies only when their paths
+     * are obtained through {@link FinishedTask#getArtifact(Artifact)} or {@link
+     * TaskExecutionContext#getDependencyArtifacts(String)}, or are read without being extracted
+     * through {@link FinishedTask#openArtifact(Artifact)}.
+     *
+     * <p>Files created in result directories which are not recorded as artifacts are not packed.
+     * Results which artifacts are being read by other executions, in this or other processes, are
+     * left unpacked. Results which cannot be packed are reported to listeners and left unpacked.
+     *
+     * @param resultPacking whether results should be packed
+     */
+    public void setResultPacking(boolean resultPacking) {
+        this.resultPacking = resultPacking;
+    }
+
+    // Result could have been replaced in the meantime, and result directory which is being read
+    // by other executions must not be deleted
+    private static void packResult(FinishedTask finishedTask) throws IOException {
+        Path resultDir = finishedTask.getResultDir();
+        try (ResultLock lock = ResultLock.acquire(resultDir)) {
+            // Results which cannot be packed faithfully are left unpacked
+            if (Files.isRegularFile(resultDir.resolve("stamp")) && lock.excludeReaders()) {
+                ResultPack.pack(resultDir, finishedTask.getResult());
+            }
+        } catch (InterruptedException e) {
+            // Result is left unpacked
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void packResults(Workflow workflow) {
+        Map<FinishedTask, String> failures = new ConcurrentHashMap<>();
+        executedResults.parallelStream()
+                .forEach(
+                        finishedTask -> {
+                            try {
+                                packResult(finishedTask);
+                            } catch (IOException | RuntimeException e) {
+                                failures.put(finishedTask, e.toString());
+                            }
+                        });
+        for (FinishedTask finishedTask : executedResults) {
+            String reason = failures.get(finishedTask);
+            if (reason != null) {
+                for (WorkflowExecutionListener listener : listeners) {
+                    listener.resultPackingFailed(workflow, finishedTask, reason);
+                }
+            }
+        }
+        executedResults.clear();
+    }
+
+    Duration getFailureCacheTtl() {
+        return failureCacheTtl;
+    }
+
+    boolean isForceRetry() {
+        return forceRetry;
+    }
+
+    Duration getTaskTimeout(Task task) {
+        return timeoutPolicy != null ? timeoutPolicy.getTimeout(task) : null;
+    }
+
+    Duration getSpeculationDelay(Task task) {
+        Duration historicalDuration = historicalDurations.get(task.getId());
+        if (speculationFactor <= 0 || historicalDuration == null) {
+            return null;
+        }
+        return Duration.ofNanos((long) (historicalDuration.toNanos() * speculationFactor));
+    }
+
+    /**
+     * Set journal to which results of finished tasks are appended. Successful results already
+     * recorded in the journal are reused without probing task storage, as long as their result ID
+     * matches and they are still valid.
+     *
+     * @param journal the result journal to use
+     */
+    public void setResultJournal(ResultJournal journal) {
+        this.journal = journal;
+        journaledResults.clear();
+        for (Result result : journal.getReplayedResults()) {
+            if (result.getOutcome() == TaskOutcome.SUCCESS) {
+                journaledResults.put(result.getTaskId(), result);
+            }
+        }
+    }
+
+    /**
+     * Set dispatcher that runs tasks. Each task occupies a dispatcher thread from the time it is
+     * scheduled until it finishes, including time spent waiting for throttle capacity. By
+     * default every task is run in a new thread. Workflows submitted to a {@link WorkflowEngine}
+     * use its pool, which runs other tasks in place of tasks that are waiting.
+     *
+     * @param taskDispatcher the dispatcher to run tasks with
+     */
+    public void setTaskDispatcher(Executor taskDispatcher) {
+        this.taskDispatcher = taskDispatcher;
+    }
+
+    /**
+     * Set predicate determining which tasks are streaming. Streaming tasks are started as soon as
+     * all their dependencies are running or have finished, rather than after all of them finish
+     * successfully. They can consume artifacts that running dependencies publish with {@link
+     * TaskExecutionContext#publishArtifact(String, String)} through {@link
+     * TaskExecutionContext#streamDependencyArtifacts(String, ArtifactConsumer)}.
+     *
+     * <p>Streaming tasks are executed in provisional directories. Once they finish successfully,
+     * they wait for all their dependencies to finish, and then their result is moved to the
+     * result directory determined by the final results of their dependencies, so that caching is
+     * not affected. If an attempt of a dependency fails, streaming tasks that have already been
+     * started finish with {@link TaskOutcome#ERROR} outcome.
+     *
+     * @param streamingTasks predicate determining streaming tasks, or {@code null} if no task
+     *     should be streaming
+     */
+    public void setStreamingTasks(Predicate<Task> streamingTasks) {
+        this.streamingTasks = streamingTasks;
+    }
+
+    /**
+     * Set previous version of the executed workflow, together with results of its execution.
+     * Tasks that are not affected by any change between the previous and the current workflow, as
+     * determined by {@link WorkflowDiff}, reuse their previous successful results without
+     * computing result IDs or probing task storage, as long as all their dependencies have reused
+     * their previous results too.
+     *
+     * @param previous the previous workflow
+     */
+    public void setPreviousWorkflow(Workflow previous) {
+        WorkflowDiff diff = WorkflowDiff.compute(previous, graph);
+        previousResults.clear();
+        for (Result result : previous.getResults()) {
+            if (result.getOutcome() == TaskOutcome.SUCCESS
+                    && graph.indexOf(result.getTaskId()) >= 0
+                    && !diff.isAffected(result.getTaskId())) {
+                previousResults.put(result.getTaskId(), result);
+            }
+        }
+    }
+
+    private FinishedTask reusePreviousResult(int index) {
+        Task task = getTask(index);
+        Result result = previousResults.get(task.getId());
+        if (result == null) {
+            return null;
+        }
+        for (int i = 0; i < getDependencyCount(index); i++) {
+            int dependency = getDependency(index, i);
+            if (successfullyFinishedTasks[dependency].getResult()
+                    != previousResults.get(getTask(dependency).getId())) {
+                return null;
+            }
+        }
+        return new FinishedTask(
+                task, result, storage.getResultDir(task, result.getId()), artifactScratch);
+    }
+
+    Result getJournaledResult(Task task) {
+        return journaledResults.get(task.getId());
+    }
+
+    private void journalResult(Result result) {
+        if (journal != null && journaledResults.get(result.getTaskId()) != result) {
+            journal.append(result);
+        }
+    }
+
+    // Tasks submitted during execution are indexed after tasks of the compiled graph
+    private int getTaskCount() {
+        return graph.size() + submittedTasks.size();
+    }
+
+    private Task getTask(int index) {
+        return index < graph.size()
+                ? graph.getTask(index)
+                : submittedTasks.get(index - graph.size());
+    }
+
+    private int indexOf(String taskId) {
+        int index = graph.indexOf(taskId);
+        if (index < 0) {
+            Integer submittedIndex = submittedIndices.get(taskId);
+            index = submittedIndex != null ? submittedIndex : -1;
+        }
+        return index;
+    }
+
+    private int getDependencyCount(int index) {
+        return index < graph.size()
+                ? graph.getDependencyCount(index)
+                : submittedDependencies.get(index - graph.size()).length;
+    }
+
+    private int getDependency(int index, int n) {
+        return index < graph.size()
+                ? graph.getDependency(index, n)
+                : submittedDependencies.get(index - graph.size())[n];
+    }
+
+    // Transitive closure of a successfully finished task, including the task itself, as a set of
+    // task indices. Closures are memoized and shared by all tasks depending on the same tasks, and
+    // computed iteratively, so that deep graphs do not overflow the stack.
+    private BitSet getTransitiveClosure(int index) {
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(index);
+        while (!stack.isEmpty()) {
+            int current = stack.peek();
+            if (transitiveClosures.containsKey(current)) {
+                stack.pop();
+                continue;
+            }
+            boolean ready = true;
+            for (int i = 0; i < getDependencyCount(current); i++) {
+                int dependency = getDependency(current, i);
+                if (!transitiveClosures.containsKey(dependency)) {
+                    stack.push(dependency);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                stack.pop();
+                BitSet closure = new BitSet();
+                closure.set(current);
+                for (int i = 0; i < getDependencyCount(current); i++) {
+                    closure.or(transitiveClosures.get(getDependency(current, i)));
+                }
+                transitiveClosures.put(current, closure);
+            }
+        }
+        return transitiveClosures.get(index);
+    }
+
+    synchronized List<FinishedTask> getTransitiveDependencies(Task task) {
+        int index = indexOf(task.getId());
+        BitSet closure = new BitSet();
+        for (int i = 0; i < getDependencyCount(index); i++) {
+            closure.or(getTransitiveClosure(getDependency(index, i)));
+        }
+        List<FinishedTask> finishedTasks = new ArrayList<>(closure.cardinality());
+        for (int i = closure.nextSetBit(0); i >= 0; i = closure.nextSetBit(i + 1)) {
+            finishedTasks.add(successfullyFinishedTasks[i]);
+        }
+        return finishedTasks;
+    }
+
+    private List<Integer> getDependents(int index) {
+        List<Integer> dependents = new ArrayList<>();
+        if (index < graph.size()) {
+            for (int i = 0; i < graph.getDependentCount(index); i++) {
+                dependents.add(graph.getDependent(index, i));
+            }
+        }
+        dependents.addAll(submittedDependents.getOrDefault(index, List.of()));
+        return dependents;
+    }
+
+    private boolean hasStreamingDependent(int index) {
+        if (streamingTasks != null) {
+            for (int dependent : getDependents(index)) {
+                if (streamingTasks.test(getTask(dependent))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Whether all dependencies either finished successfully or are running and publish artifacts
+    private boolean canStream(int index) {
+        for (int i = 0; i < getDependencyCount(index); i++) {
+            int dependency = getDependency(index, i);
+            if (successfullyFinishedTasks[dependency] == null
+                    && !(startedTasks.contains(dependency) && channels.containsKey(dependency))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void failChannel(Task task, String reason) {
+        int index = indexOf(task.getId());
+        startedTasks.remove(index);
+        ArtifactChannel channel = channels.remove(index);
+        if (channel != null) {
+            channel.fail(task + " did not succeed: " + reason);
+        }
+    }
+
+    synchronized void stateChangeFromPendingToFailed(FinishedTask finishedTask) {
+        workflowBuilder.addResult(finishedTask.getResult());
+        journalResult(finishedTask.getResult());
+        pendingOrRunningTasks.remove(finishedTask.getTask());
+        failChannel(finishedTask.getTask(), finishedTask.getResult().getOutcomeReason());
+        notify();
+        Workflow workflow = workflowBuilder.build();
+        for (WorkflowExecutionListener listener : listeners) {
+            listener.taskFailureReused(workflow, finishedTask);
+        }
+    }
+
+    /**
+     * Adds a task to the workflow being executed. The task is scheduled for execution as soon as
+     * all its dependencies finish successfully.
+     *
+     * @param task the task to add
+     * @throws TaskTermination if a different task with the same ID exists or some dependency
+     *     refers to a non-existent task
+     */
+    synchronized void submitTask(Task task) throws TaskTermination {
+        int existing = indexOf(task.getId());
+        if (existing >= graph.size() && WorkflowDiff.isSameDefinition(getTask(existing), task)) {
+            // Submitted again, for example by a retried attempt
+            return;
+        }
+        if (existing >= 0) {
+            TaskTermination.error("Submitted task ID " + task.getId() + " is not unique");
+        }
+        int[] dependencies = new int[task.getDependencies().size()];
+        for (int i = 0; i < dependencies.length; i++) {
+            String dependencyId = task.getDependencies().get(i);
+            dependencies[i] = indexOf(dependencyId);
+            if (dependencies[i] < 0) {
+                TaskTermination.error(
+                        "Submitted " + task + " depends on non-existent task " + dependencyId);
+            }
+        }
+
+        int index = getTaskCount();
+        submittedTasks.add(task);
+        submittedIndices.put(task.getId(), index);
+        submittedDependencies.add(dependencies);
+        workflowBuilder.addTask(task);
+        if (index == pendingDependencyCounts.length) {
+            pendingDependencyCounts = Arrays.copyOf(pendingDependencyCounts, index * 2 + 16);
+            successfullyFinishedTasks = Arrays.copyOf(successfullyFinishedTasks, index * 2 + 16);
+            scheduledTasks = Arrays.copyOf(scheduledTasks, index * 2 + 16);
+        }
+        // The new task has no dependents yet, so it cannot introduce a cycle
+        int pending = 0;
+        for (int dependency : dependencies) {
+            submittedDependents.computeIfAbsent(dependency, d -> new ArrayList<>()).add(index);
+            if (successfullyFinishedTasks[dependency] == null) {
+                pending++;
+            }
+        }
+        pendingDependencyCounts[index] = pending;
+        if (pending == 0) {
+            readyTasks.add(index);
+            notify();
+        }
+    }
+
+    private void resubmitTasks(FinishedTask finishedTask) {
+        for (Artifact artifact : finishedTask.getResult().getArtifacts()) {
+            if (artifact.getType().equals(TaskExecutionContext.SUBMITTED_TASKS_ARTIFACT_TYPE)) {
+                try {
+                    Workflow submitted = Workflow.readFromXML(finishedTask.getArtifact(artifact));
+                    for (Task task : submitted.getTasks()) {
+                        submitTask(task);
+                    }
+                } catch (IOException | XMLException e) {
+                    throw new RuntimeException(e);
+                } catch (TaskTermination e) {
+                    throw new IllegalStateException(e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    private void markSuccessfullyFinished(FinishedTask finishedTask) {
+        int index = indexOf(finishedTask.getTask().getId());
+        successfullyFinishedTasks[index] = finishedTask;
+        successfullyFinishedCount++;
+        startedTasks.remove(index);
+        ArtifactChannel channel = channels.remove(index);
+        if (channel != null) {
+            channel.finish(finishedTask);
+        }
+        if (index < graph.size()) {
+            for (int i = 0; i < graph.getDependentCount(index); i++) {
+                int dependent = graph.getDependent(index, i);
+                if (--pendingDependencyCounts[dependent] == 0) {
+                    readyTasks.add(dependent);
+                }
+            }
+        }
+        for (int dependent : submittedDependents.getOrDefault(index, List.of())) {
+            if (--pendingDependencyCounts[dependent] == 0) {
+                readyTasks.add(dependent);
+            }
+        }
+    }
+
+    synchronized void taskExecutorFinished() {
+        runningExecutorCount--;
+        notifyAll();
+    }
+
     synchronized void stateChangeFromPendingToRunning(Task task) {
+        if (streamingTasks != null) {
+            int index = indexOf(task.getId());
+            startedTasks.add(index);
+            for (int dependent : getDependents(index)) {
+                if (!scheduledTasks[dependent]
+                        && streamingTasks.test(getTask(dependent))
+                        && canStream(dependent)) {
+                    readyTasks.add(dependent);
+                    notify();
+                }
+            }
+        }
+        runningTasks.add(task);
+        Workflow workflow = workflowBuilder.build();
         for (WorkflowExecutionListener listener : listeners) {
-            listener.taskRunning(workflowBuilder.build(), task);
+            listener.taskRunning(workflow, task);
+        }
+    }
+
+    synchronized void stateChangeFromRunningToRetrying(
+            FinishedTask finishedTask, int attempt, Duration delay) {
+        runningTasks.remove(finishedTask.getTask());
+        failChannel(finishedTask.getTask(), finishedTask.getResult().getOutcomeReason());
+        Workflow workflow = workflowBuilder.build();
+        for (WorkflowExecutionListener listener : listeners) {
+            listener.taskRetrying(workflow, finishedTask, attempt, delay);
         }
     }
 
     synchronized void stateChangeFromRunningToFinished(FinishedTask finishedTask) {
         workflowBuilder.addResult(finishedTask.getResult());
+        journalResult(finishedTask.getResult());
         pendingOrRunningTasks.remove(finishedTask.getTask());
+        runningTasks.remove(finishedTask.getTask());
+        Workflow workflow = workflowBuilder.build();
         if (finishedTask.getResult().getOutcome() == TaskOutcome.SUCCESS) {
-            successfullyFinishedTasks.add(finishedTask);
+            markSuccessfullyFinished(finishedTask);
+            if (resultPacking) {
+                executedResults.add(finishedTask);
+            }
             for (WorkflowExecutionListener listener : listeners) {
-                listener.taskSucceeded(workflowBuilder.build(), finishedTask);
+                listener.taskSucceeded(workflow, finishedTask);
             }
         } else {
-            unsuccessfullyFinishedTasks.add(finishedTask);
+            failChannel(finishedTask.getTask(), finishedTask.getResult().getOutcomeReason());
             for (WorkflowExecutionListener listener : listeners) {
-                listener.taskFailed(workflowBuilder.build(), finishedTask);
+                listener.taskFailed(workflow, finishedTask);
             }
         }
         notify();
     }
 
+    // Task executor failed unexpectedly, possibly while the task was not running, in which case
+    // listeners are notified about the task running first, so that they observe the usual order
+    synchronized void stateChangeToFinishedWithError(FinishedTask finishedTask) {
+        Task task = finishedTask.getTask();
+        if (!pendingOrRunningTasks.contains(task)) {
+            return;
+        }
+        if (!runningTasks.contains(task)) {
+            stateChangeFromPendingToRunning(task);
+        }
+        stateChangeFromRunningToFinished(finishedTask);
+    }
+
     synchronized void stateChangeFromPendingToFinished(FinishedTask finishedTask) {
         workflowBuilder.addResult(finishedTask.getResult());
+        journalResult(finishedTask.getResult());
         pendingOrRunningTasks.remove(finishedTask.getTask());
-        successfullyFinishedTasks.add(finishedTask);
+        resubmitTasks(finishedTask);
+        markSuccessfullyFinished(finishedTask);
         notify();
+        Workflow workflow = workflowBuilder.build();
         for (WorkflowExecutionListener listener : listeners) {
-            listener.taskReused(workflowBuilder.build(), finishedTask);
+            listener.taskReused(workflow, finishedTask);
         }
     }
 
@@ -122,36 +830,71 @@ public class WorkflowExecutor {
      *
      * @return new workflow state
      */
-    public synchronized Workflow execute() {
-        List<Thread> threads = new ArrayList<>();
-        outer:
+    public Workflow execute() {
+        for (Task task : graph.getTasks()) {
+            prepareHandler(task);
+        }
+        return executeTasks();
+    }
+
+    private synchronized Workflow executeTasks() {
+        List<TaskExecutor> executors = new ArrayList<>();
         for (; ; ) {
-            for (Task td : newTasks) {
-                List<FinishedTask> deps = new ArrayList<>();
-                for (String depId : td.getDependencies()) {
-                    for (FinishedTask task : successfullyFinishedTasks) {
-                        if (task.getTask().getId().equals(depId)) {
-                            deps.add(task);
-                        }
+            while (!readyTasks.isEmpty()) {
+                int index = readyTasks.remove();
+                Task td = getTask(index);
+                // Streaming tasks may be queued early, and then again when all dependencies finish
+                boolean ready = pendingDependencyCounts[index] == 0;
+                if (scheduledTasks[index] || !ready && !canStream(index)) {
+                    continue;
+                }
+                scheduledTasks[index] = true;
+                if (ready) {
+                    FinishedTask reused = reusePreviousResult(index);
+                    if (reused != null) {
+                        stateChangeFromPendingToFinished(reused);
+                        continue;
                     }
                 }
+                ArtifactChannel channel = null;
+                if (hasStreamingDependent(index)) {
+                    channel = new ArtifactChannel(streamLock);
+                    channels.put(index, channel);
+                }
+                pendingOrRunningTasks.add(td);
 
-                if (deps.size() == td.getDependencies().size()) {
-                    newTasks.remove(td);
-                    pendingOrRunningTasks.add(td);
-
-                    Thread thread = new TaskExecutor(this, handlerFactory, td, deps);
-                    thread.start();
-                    threads.add(thread);
-                    continue outer;
+                TaskExecutor executor;
+                if (ready) {
+                    List<FinishedTask> deps = new ArrayList<>(getDependencyCount(index));
+                    for (int i = 0; i < getDependencyCount(index); i++) {
+                        deps.add(successfullyFinishedTasks[getDependency(index, i)]);
+                    }
+                    executor = new TaskExecutor(this, handlerFactory, td, deps, channel);
+                } else {
+                    List<ArtifactChannel> dependencyChannels = new ArrayList<>();
+                    for (int i = 0; i < getDependencyCount(index); i++) {
+                        int dependency = getDependency(index, i);
+                        dependencyChannels.add(
+                                successfullyFinishedTasks[dependency] != null
+                                        ? ArtifactChannel.ofFinishedTask(
+                                                streamLock, successfullyFinishedTasks[dependency])
+                                        : channels.get(dependency));
+                    }
+                    executor =
+                            new TaskExecutor(
+                                    this, handlerFactory, td, channel, dependencyChannels);
                 }
+                executors.add(executor);
+                runningExecutorCount++;
+                batcher.announce(td);
+                taskDispatcher.execute(executor);
             }
             if (!pendingOrRunningTasks.isEmpty()) {
                 try {
                     wait();
                 } catch (InterruptedException e) {
-                    for (Thread thread : threads) {
-                        thread.interrupt();
+                    for (TaskExecutor executor : executors) {
+                        executor.interrupt();
                     }
                 }
                 continue;
@@ -159,7 +902,7 @@ public class WorkflowExecutor {
             break;
         }
         Workflow workflow = workflowBuilder.build();
-        if (newTasks.isEmpty() && pendingOrRunningTasks.isEmpty()) {
+        if (successfullyFinishedCount == getTaskCount()) {
             for (WorkflowExecutionListener listener : listeners) {
                 listener.workflowSucceeded(workflow);
             }
@@ -168,20 +911,28 @@ public class WorkflowExecutor {
                 listener.workflowFailed(workflow);
             }
         }
-        for (Thread thread : threads) {
+        while (runningExecutorCount > 0) {
             try {
-                thread.join();
+                wait();
             } catch (InterruptedException e) {
-                for (Thread thread2 : threads) {
-                    thread2.interrupt();
+                for (TaskExecutor executor : executors) {
+                    executor.interrupt();
                 }
             }
         }
-        for (Thread thread : threads) {
-            try {
-                thread.join();
-            } catch (InterruptedException e) {
+        if (handlerFactoryOwned) {
+            handlerFactory.closeHandlers();
+        }
+        // Artifacts are no longer read by this execution once its scratch space is closed
+        artifactScratch.close();
+        try {
+            if (journal != null) {
+                journal.flush();
             }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            packResults(workflow);
         }
 
         return workflow;
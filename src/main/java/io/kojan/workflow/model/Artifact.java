@@ -22,13 +22,20 @@ import io.kojan.xml.Entity;
  * Task artifact file. A file produced by a task execution that should be preserved after task
  * execution finished.
  *
- * <p>Task artifacts have a type and unique name within given task execution.
+ * <p>Task artifacts have a type and unique name within given task execution. Artifacts may also
+ * have a digest of their content, which allows determining whether two artifacts are identical
+ * without comparing their files, and a size, which allows detecting truncated or otherwise
+ * damaged artifact files cheaply. Artifact files may be stored in encoded form, for example
+ * compressed, in which case their encoding is recorded too.
  *
  * @author Mikolaj Izdebski
  */
 public class Artifact {
     private final String type;
     private final String name;
+    private final Long size;
+    private final String digest;
+    private final String encoding;
 
     /**
      * Create an artifact of given type and with given name.
@@ -37,8 +44,37 @@ public class Artifact {
      * @param name artifact name
      */
     public Artifact(String type, String name) {
-        this.type = type;
+        this(type, name, null, null);
+    }
+
+    /**
+     * Create an artifact of given type, with given name, size and content digest.
+     *
+     * @param type type of artifact to create
+     * @param name artifact name
+     * @param size total size of artifact files in bytes, or {@code null} if unknown
+     * @param digest digest of artifact content, or {@code null} if unknown
+     */
+    public Artifact(String type, String name, Long size, String digest) {
+        this(type, name, size, digest, null);
+    }
+
+    /**
+     * Create an artifact of given type, with given name, size, content digest and encoding.
+     *
+     * @param type type of artifact to create
+     * @param name artifact name
+     * @param size total size of artifact files in bytes, or {@code null} if unknown
+     * @param digest digest of artifact content, or {@code null} if unknown
+     * @param encoding encoding in which artifact file is stored, or {@code null} if it is stored
+     *     as is
+     */
+    public Artifact(String type, String name, Long size, String digest, String encoding) {
+        this.type = StringPool.intern(type);
         this.name = name;
+        this.size = size;
+        this.digest = digest;
+        this.encoding = StringPool.intern(encoding);
     }
 
     /**
@@ -59,10 +95,48 @@ public class Artifact {
         return name;
     }
 
+    /**
+     * Determine total size of artifact files.
+     *
+     * @return artifact size in bytes, or {@code null} if unknown
+     */
+    public Long getSize() {
+        return size;
+    }
+
+    /**
+     * Determine digest of artifact content.
+     *
+     * @return artifact content digest, or {@code null} if unknown
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * Determine encoding in which artifact file is stored. Size and digest of encoded artifacts
+     * refer to their decoded content.
+     *
+     * @return artifact encoding, or {@code null} if artifact file is stored as is
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
     static final Entity<Artifact, ArtifactBuilder> ENTITY =
             Entity.of(
                     "artifact",
                     ArtifactBuilder::new,
                     Attribute.of("type", Artifact::getType, ArtifactBuilder::setType),
-                    Attribute.of("name", Artifact::getName, ArtifactBuilder::setName));
+                    Attribute.of("name", Artifact::getName, ArtifactBuilder::setName),
+                    Attribute.ofOptional(
+                            "size",
+                            Artifact::getSize,
+                            ArtifactBuilder::setSize,
+                            Object::toString,
+                            Long::valueOf),
+                    Attribute.ofOptional(
+                            "digest", Artifact::getDigest, ArtifactBuilder::setDigest),
+                    Attribute.ofOptional(
+                            "encoding", Artifact::getEncoding, ArtifactBuilder::setEncoding));
 }
@@ -25,6 +25,9 @@ import io.kojan.xml.Builder;
 public class ArtifactBuilder implements Builder<Artifact> {
     private String type;
     private String name;
+    private Long size;
+    private String digest;
+    private String encoding;
 
     /** Creates the builder with default initial state. */
     public ArtifactBuilder() {}
@@ -47,8 +50,35 @@ public class ArtifactBuilder implements Builder<Artifact> {
         this.name = name;
     }
 
+    /**
+     * Sets total size of artifact files.
+     *
+     * @param size artifact size in bytes to set
+     */
+    public void setSize(Long size) {
+        this.size = size;
+    }
+
+    /**
+     * Sets digest of artifact content.
+     *
+     * @param digest artifact content digest to set
+     */
+    public void setDigest(String digest) {
+        this.digest = digest;
+    }
+
+    /**
+     * Sets encoding in which artifact file is stored.
+     *
+     * @param encoding artifact encoding to set
+     */
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
     @Override
     public Artifact build() {
-        return new Artifact(type, name);
+        return new Artifact(type, name, size, digest, encoding);
     }
 }
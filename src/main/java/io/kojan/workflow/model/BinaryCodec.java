@@ -0,0 +1,352 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary serialization of workflow model objects.
+ *
+ * <p>A stream starts with a header consisting of magic bytes, format version and a byte
+ * identifying the kind of the top-level object. Integers are encoded as variable-length integers.
+ * Each distinct string is written in full only once per stream; subsequent occurrences refer to
+ * it by its index in the string table that both encoder and decoder build as they go. Task
+ * outcomes are written by their name, so that they do not depend on the order of enum constants.
+ *
+ * <p>Decoder reads from the underlying stream exactly the bytes of the object being decoded, one
+ * at a time, so that the stream can contain other data after the object. Streams which are not
+ * backed by memory should therefore be buffered by the caller.
+ *
+ * @author Mikolaj Izdebski
+ */
+final class BinaryCodec {
+    private static final byte[] MAGIC = {'K', 'W', 'F', 'B'};
+    private static final int VERSION = 1;
+    static final int KIND_WORKFLOW = 'W';
+    static final int KIND_RESULT = 'R';
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private BinaryCodec() {}
+
+    static class Encoder {
+        private final OutputStream os;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final byte[] buf = new byte[BUFFER_SIZE];
+        private int pos;
+
+        Encoder(OutputStream os, int kind) throws IOException {
+            this.os = os;
+            writeBytes(MAGIC);
+            writeVarInt(VERSION);
+            writeVarInt(kind);
+        }
+
+        void flush() throws IOException {
+            os.write(buf, 0, pos);
+            pos = 0;
+            os.flush();
+        }
+
+        private void writeByte(int b) throws IOException {
+            if (pos == buf.length) {
+                os.write(buf, 0, pos);
+                pos = 0;
+            }
+            buf[pos++] = (byte) b;
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            if (bytes.length > buf.length - pos) {
+                os.write(buf, 0, pos);
+                pos = 0;
+                if (bytes.length > buf.length) {
+                    os.write(bytes);
+                    return;
+                }
+            }
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        // 0 stands for null, 1 introduces a new string, n > 1 refers to string table entry n - 2
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = strings.get(value);
+            if (index != null) {
+                writeVarInt(index + 2);
+                return;
+            }
+            strings.put(value, strings.size());
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(1);
+            writeVarInt(bytes.length);
+            writeBytes(bytes);
+        }
+
+        private void writeTime(LocalDateTime time) throws IOException {
+            if (time == null) {
+                writeVarInt(0);
+                return;
+            }
+            long seconds = time.toEpochSecond(ZoneOffset.UTC);
+            writeVarInt(1);
+            writeVarLong((seconds << 1) ^ (seconds >> 63));
+            writeVarInt(time.getNano());
+        }
+
+        private void writeOutcome(TaskOutcome outcome) throws IOException {
+            writeString(outcome == null ? null : outcome.name());
+        }
+
+        void writeTask(Task task) throws IOException {
+            writeString(task.getId());
+            writeString(task.getHandler());
+            writeVarInt(task.getDependencies().size());
+            for (String dependency : task.getDependencies()) {
+                writeString(dependency);
+            }
+            writeVarInt(task.getParameters().size());
+            for (Parameter parameter : task.getParameters()) {
+                writeString(parameter.getName());
+                writeString(parameter.getValue());
+            }
+        }
+
+        void writeResult(Result result) throws IOException {
+            writeString(result.getId());
+            writeString(result.getTaskId());
+            writeVarInt(result.getArtifacts().size());
+            for (Artifact artifact : result.getArtifacts()) {
+                writeString(artifact.getType());
+                writeString(artifact.getName());
+                writeVarLong(artifact.getSize() == null ? 0 : artifact.getSize() + 1);
+                writeString(artifact.getDigest());
+                writeString(artifact.getEncoding());
+            }
+            writeOutcome(result.getOutcome());
+            writeString(result.getOutcomeReason());
+            writeTime(result.getTimeStarted());
+            writeTime(result.getTimeFinished());
+            writeString(result.getInputDigest());
+        }
+
+        void writeWorkflow(Workflow workflow) throws IOException {
+            writeVarInt(workflow.getTasks().size());
+            for (Task task : workflow.getTasks()) {
+                writeTask(task);
+            }
+            writeVarInt(workflow.getResults().size());
+            for (Result result : workflow.getResults()) {
+                writeResult(result);
+            }
+        }
+    }
+
+    static class Decoder {
+        private final InputStream is;
+        private final List<String> strings = new ArrayList<>();
+
+        Decoder(InputStream is, int kind) throws IOException {
+            this.is = is;
+            for (byte b : MAGIC) {
+                if (readByte() != b) {
+                    throw new IOException("Not a binary workflow stream");
+                }
+            }
+            int version = readVarInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary workflow format version " + version);
+            }
+            if (readVarInt() != kind) {
+                throw new IOException("Unexpected kind of object in binary workflow stream");
+            }
+        }
+
+        private int readByte() throws IOException {
+            int b = is.read();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of binary workflow stream");
+            }
+            return b;
+        }
+
+        private byte[] readBytes(int length) throws IOException {
+            byte[] bytes = is.readNBytes(length);
+            if (bytes.length < length) {
+                throw new EOFException("Unexpected end of binary workflow stream");
+            }
+            return bytes;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length integer");
+        }
+
+        private int readVarInt() throws IOException {
+            long value = readVarLong();
+            if ((value >>> 32) != 0) {
+                throw new IOException("Malformed variable-length integer");
+            }
+            return (int) value;
+        }
+
+        private int readCount() throws IOException {
+            int count = readVarInt();
+            if (count < 0) {
+                throw new IOException("Malformed element count");
+            }
+            return count;
+        }
+
+        private String readString() throws IOException {
+            int code = readVarInt();
+            if (code == 0) {
+                return null;
+            }
+            if (code == 1) {
+                byte[] bytes = readBytes(readCount());
+                String value = new String(bytes, StandardCharsets.UTF_8);
+                strings.add(value);
+                return value;
+            }
+            if (code - 2 < 0 || code - 2 >= strings.size()) {
+                throw new IOException("Invalid string table reference " + (code - 2));
+            }
+            return strings.get(code - 2);
+        }
+
+        private LocalDateTime readTime() throws IOException {
+            if (readVarInt() == 0) {
+                return null;
+            }
+            long zigzag = readVarLong();
+            long seconds = (zigzag >>> 1) ^ -(zigzag & 1);
+            int nanos = readVarInt();
+            try {
+                return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+            } catch (DateTimeException e) {
+                throw new IOException("Invalid time in binary workflow stream", e);
+            }
+        }
+
+        private TaskOutcome readOutcome() throws IOException {
+            String name = readString();
+            if (name == null) {
+                return null;
+            }
+            try {
+                return TaskOutcome.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid task outcome " + name, e);
+            }
+        }
+
+        Task readTask() throws IOException {
+            String id = readString();
+            String handler = readString();
+            int dependencyCount = readCount();
+            List<String> dependencies = new ArrayList<>(Math.min(dependencyCount, 1024));
+            for (int i = 0; i < dependencyCount; i++) {
+                dependencies.add(readString());
+            }
+            int parameterCount = readCount();
+            List<Parameter> parameters = new ArrayList<>(Math.min(parameterCount, 1024));
+            for (int i = 0; i < parameterCount; i++) {
+                parameters.add(new Parameter(readString(), readString()));
+            }
+            return new Task(id, handler, dependencies, parameters);
+        }
+
+        Result readResult() throws IOException {
+            String id = readString();
+            String taskId = readString();
+            int artifactCount = readCount();
+            List<Artifact> artifacts = new ArrayList<>(Math.min(artifactCount, 1024));
+            for (int i = 0; i < artifactCount; i++) {
+                String type = readString();
+                String name = readString();
+                long size = readVarLong();
+                String digest = readString();
+                String encoding = readString();
+                artifacts.add(
+                        new Artifact(type, name, size == 0 ? null : size - 1, digest, encoding));
+            }
+            TaskOutcome outcome = readOutcome();
+            String outcomeReason = readString();
+            LocalDateTime timeStarted = readTime();
+            LocalDateTime timeFinished = readTime();
+            String inputDigest = readString();
+            return new Result(
+                    id,
+                    taskId,
+                    artifacts,
+                    outcome,
+                    outcomeReason,
+                    timeStarted,
+                    timeFinished,
+                    inputDigest);
+        }
+
+        Workflow readWorkflow() throws IOException {
+            int taskCount = readCount();
+            List<Task> tasks = new ArrayList<>(Math.min(taskCount, 65536));
+            for (int i = 0; i < taskCount; i++) {
+                tasks.add(readTask());
+            }
+            int resultCount = readCount();
+            List<Result> results = new ArrayList<>(Math.min(resultCount, 65536));
+            for (int i = 0; i < resultCount; i++) {
+                results.add(readResult());
+            }
+            return new Workflow(tasks, results);
+        }
+    }
+}
@@ -34,7 +34,7 @@ public class Parameter {
      * @param value parameter value
      */
     public Parameter(String name, String value) {
-        this.name = name;
+        this.name = StringPool.intern(name);
         this.value = value;
     }
 
@@ -19,7 +19,11 @@ import io.kojan.xml.Attribute;
 import io.kojan.xml.Entity;
 import io.kojan.xml.Relationship;
 import io.kojan.xml.XMLException;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -39,6 +43,7 @@ public class Result {
     private final String outcomeReason;
     private final LocalDateTime timeStarted;
     private final LocalDateTime timeFinished;
+    private final String inputDigest;
 
     /**
      * Creates a task execution result object.
@@ -59,6 +64,31 @@ public class Result {
             String outcomeReason,
             LocalDateTime timeStarted,
             LocalDateTime timeFinished) {
+        this(id, taskId, artifacts, outcome, outcomeReason, timeStarted, timeFinished, null);
+    }
+
+    /**
+     * Creates a task execution result object, specifying digest of task inputs.
+     *
+     * @param id unique ID of this result
+     * @param taskId ID of task executed
+     * @param artifacts list of artifacts produced by task execution
+     * @param outcome outcome of task execution
+     * @param outcomeReason reason of particular task execution outcome
+     * @param timeStarted date and time task execution started
+     * @param timeFinished date and time task execution finished
+     * @param inputDigest digest of content of dependency artifacts the task was executed with, or
+     *     {@code null} if unknown
+     */
+    public Result(
+            String id,
+            String taskId,
+            List<Artifact> artifacts,
+            TaskOutcome outcome,
+            String outcomeReason,
+            LocalDateTime timeStarted,
+            LocalDateTime timeFinished,
+            String inputDigest) {
         this.id = id;
         this.taskId = taskId;
         this.artifacts = Collections.unmodifiableList(new ArrayList<>(artifacts));
@@ -66,6 +96,7 @@ public class Result {
         this.outcomeReason = outcomeReason;
         this.timeStarted = timeStarted;
         this.timeFinished = timeFinished;
+        this.inputDigest = inputDigest;
     }
 
     /**
@@ -131,6 +162,16 @@ public class Result {
         return timeFinished;
     }
 
+    /**
+     * Determines digest of content of dependency artifacts the task was executed with. Results
+     * with equal input digest were produced from byte-identical dependency artifacts.
+     *
+     * @return digest of task inputs, or {@code null} if unknown
+     */
+    public String getInputDigest() {
+        return inputDigest;
+    }
+
     static final Entity<Result, ResultBuilder> ENTITY =
             Entity.of(
                     "result",
@@ -160,7 +201,9 @@ public class Result {
                             Result::getTimeFinished,
                             ResultBuilder::setTimeFinished,
                             LocalDateTime::toString,
-                            LocalDateTime::parse));
+                            LocalDateTime::parse),
+                    Attribute.ofOptional(
+                            "inputDigest", Result::getInputDigest, ResultBuilder::setInputDigest));
 
     /**
      * Reads task execution result from an XML file at specified {@link Path}.
@@ -184,4 +227,58 @@ public class Result {
     public void writeToXML(Path path) throws IOException, XMLException {
         ENTITY.writeToXML(path, this);
     }
+
+    /**
+     * Reads task execution result in compact binary form from the specified {@link InputStream}.
+     *
+     * <p>Only the bytes of the serialized result are read from the stream, one at a time, so the
+     * stream may be positioned at further data afterwards. Streams which are not backed by memory
+     * should be buffered.
+     *
+     * @param is binary stream to deserialize data from
+     * @return task execution result deserialized from binary form
+     * @throws IOException in case I/O error occurs when reading the stream or the stream is not a
+     *     valid binary result
+     */
+    public static Result readFromBinary(InputStream is) throws IOException {
+        return new BinaryCodec.Decoder(is, BinaryCodec.KIND_RESULT).readResult();
+    }
+
+    /**
+     * Reads task execution result from a file in compact binary form at specified {@link Path}.
+     *
+     * @param path path to binary file to deserialize data from
+     * @return task execution result deserialized from binary form
+     * @throws IOException in case I/O error occurs when reading the file or the file is not a
+     *     valid binary result
+     */
+    public static Result readFromBinary(Path path) throws IOException {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(path))) {
+            return readFromBinary(is);
+        }
+    }
+
+    /**
+     * Writes task execution result in compact binary form to the specified {@link OutputStream}.
+     *
+     * @param os binary stream to serialize data to
+     * @throws IOException in case I/O error occurs when writing the stream
+     */
+    public void writeToBinary(OutputStream os) throws IOException {
+        BinaryCodec.Encoder encoder = new BinaryCodec.Encoder(os, BinaryCodec.KIND_RESULT);
+        encoder.writeResult(this);
+        encoder.flush();
+    }
+
+    /**
+     * Writes task execution result as a file in compact binary form at specified {@link Path}.
+     *
+     * @param path path to binary file to serialize data to
+     * @throws IOException in case I/O error occurs when writing the file
+     */
+    public void writeToBinary(Path path) throws IOException {
+        try (OutputStream os = Files.newOutputStream(path)) {
+            writeToBinary(os);
+        }
+    }
 }
@@ -33,6 +33,7 @@ public class ResultBuilder implements Builder<Result> {
     private String outcomeReason;
     private LocalDateTime timeStarted;
     private LocalDateTime timeFinished;
+    private String inputDigest;
 
     /** Creates the builder with default initial state. */
     public ResultBuilder() {}
@@ -100,8 +101,25 @@ public class ResultBuilder implements Builder<Result> {
         this.timeFinished = timeFinished;
     }
 
+    /**
+     * Sets digest of content of dependency artifacts the task was executed with.
+     *
+     * @param inputDigest digest of task inputs
+     */
+    public void setInputDigest(String inputDigest) {
+        this.inputDigest = inputDigest;
+    }
+
     @Override
     public Result build() {
-        return new Result(id, taskId, artifacts, outcome, outcomeReason, timeStarted, timeFinished);
+        return new Result(
+                id,
+                taskId,
+                artifacts,
+                outcome,
+                outcomeReason,
+                timeStarted,
+                timeFinished,
+                inputDigest);
     }
 }
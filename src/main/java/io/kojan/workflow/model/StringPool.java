@@ -0,0 +1,39 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+/**
+ * Canonical instances of strings that repeat heavily across model objects, such as handler names,
+ * parameter names, artifact types and encodings. Model objects intern such strings when they are
+ * constructed, so that large workflows, whether built in code or read from XML or binary form,
+ * keep a single copy of each of them. Strings which are mostly unique, such as task IDs or
+ * artifact names, are not interned, as that would only grow the pool without saving memory.
+ *
+ * @author Mikolaj Izdebski
+ */
+final class StringPool {
+    private StringPool() {}
+
+    /**
+     * Obtains canonical instance of a string.
+     *
+     * @param s the string, or {@code null}
+     * @return canonical instance of the string, or {@code null} if the string was {@code null}
+     */
+    static String intern(String s) {
+        return s != null ? s.intern() : null;
+    }
+}
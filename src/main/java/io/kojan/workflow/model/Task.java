@@ -19,8 +19,11 @@ import io.kojan.workflow.TaskHandler;
 import io.kojan.xml.Attribute;
 import io.kojan.xml.Entity;
 import io.kojan.xml.Relationship;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A smallest work unit. An abstract task, a thing that needs to be done.
@@ -40,6 +43,7 @@ public class Task {
     private final String handler;
     private final List<String> dependencies;
     private final List<Parameter> parameters;
+    private volatile Map<String, String> parameterIndex;
 
     /**
      * Creates a new task object.
@@ -51,9 +55,10 @@ public class Task {
      */
     public Task(String id, String handler, List<String> dependencies, List<Parameter> parameters) {
         this.id = id;
-        this.handler = handler;
+        this.handler = StringPool.intern(handler);
         this.dependencies = Collections.unmodifiableList(dependencies);
-        this.parameters = Collections.unmodifiableList(parameters);
+        // Copied, so that parameter index cannot get out of sync with parameters
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
     }
 
     /**
@@ -92,6 +97,26 @@ public class Task {
         return parameters;
     }
 
+    /**
+     * Determines value of task execution parameter with given name. If the task has several
+     * parameters with the same name, value of the first of them is returned. Parameters are
+     * indexed by their name when this method is first called.
+     *
+     * @param name parameter name
+     * @return parameter value, or {@code null} if the task has no parameter with given name
+     */
+    public String getParameter(String name) {
+        Map<String, String> index = parameterIndex;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Parameter parameter : parameters) {
+                index.putIfAbsent(parameter.getName(), parameter.getValue());
+            }
+            parameterIndex = index;
+        }
+        return index.get(name);
+    }
+
     @Override
     public String toString() {
         return "Task(" + id + ")";
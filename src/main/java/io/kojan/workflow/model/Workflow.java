@@ -18,9 +18,13 @@ package io.kojan.workflow.model;
 import io.kojan.xml.Entity;
 import io.kojan.xml.Relationship;
 import io.kojan.xml.XMLException;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -43,8 +47,16 @@ public class Workflow {
      * @param results list of results of some of the tasks
      */
     public Workflow(List<Task> tasks, List<Result> results) {
-        this.tasks = Collections.unmodifiableList(new ArrayList<>(tasks));
-        this.results = Collections.unmodifiableList(new ArrayList<>(results));
+        this.tasks = immutableCopy(tasks);
+        this.results = immutableCopy(results);
+    }
+
+    // Snapshots of append-only lists are immutable, so they do not need to be copied
+    private static <E> List<E> immutableCopy(List<E> list) {
+        if (list instanceof AppendOnlyList.Snapshot) {
+            return list;
+        }
+        return Collections.unmodifiableList(new ArrayList<>(list));
     }
 
     /**
@@ -137,4 +149,58 @@ public class Workflow {
     public String toXML() throws XMLException {
         return ENTITY.toXML(this);
     }
+
+    /**
+     * Reads a workflow in compact binary form from the specified {@link InputStream}.
+     *
+     * <p>Only the bytes of the serialized workflow are read from the stream, one at a time, so the
+     * stream may be positioned at further data afterwards. Streams which are not backed by memory
+     * should be buffered.
+     *
+     * @param is binary stream to deserialize data from
+     * @return workflow object deserialized from binary form
+     * @throws IOException in case I/O error occurs when reading the stream or the stream is not a
+     *     valid binary workflow
+     */
+    public static Workflow readFromBinary(InputStream is) throws IOException {
+        return new BinaryCodec.Decoder(is, BinaryCodec.KIND_WORKFLOW).readWorkflow();
+    }
+
+    /**
+     * Reads a workflow from a file in compact binary form at specified {@link Path}.
+     *
+     * @param path path to binary file to deserialize data from
+     * @return workflow object deserialized from binary form
+     * @throws IOException in case I/O error occurs when reading the file or the file is not a
+     *     valid binary workflow
+     */
+    public static Workflow readFromBinary(Path path) throws IOException {
+        try (InputStream is = new BufferedInputStream(Files.newInputStream(path))) {
+            return readFromBinary(is);
+        }
+    }
+
+    /**
+     * Writes the workflow in compact binary form to the specified {@link OutputStream}.
+     *
+     * @param os binary stream to serialize data to
+     * @throws IOException in case I/O error occurs when writing the stream
+     */
+    public void writeToBinary(OutputStream os) throws IOException {
+        BinaryCodec.Encoder encoder = new BinaryCodec.Encoder(os, BinaryCodec.KIND_WORKFLOW);
+        encoder.writeWorkflow(this);
+        encoder.flush();
+    }
+
+    /**
+     * Writes the workflow as a file in compact binary form at specified {@link Path}.
+     *
+     * @param path path to binary file to serialize data to
+     * @throws IOException in case I/O error occurs when writing the file
+     */
+    public void writeToBinary(Path path) throws IOException {
+        try (OutputStream os = Files.newOutputStream(path)) {
+            writeToBinary(os);
+        }
+    }
 }
@@ -16,17 +16,19 @@
 package io.kojan.workflow.model;
 
 import io.kojan.xml.Builder;
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * A {@link Builder} for {@link Workflow} objects.
  *
+ * <p>Tasks and results are stored in append-only form, so that {@link #build()} takes constant
+ * time and can be called repeatedly while the workflow is being extended, for example after each
+ * task finishes. Workflows built earlier are not affected by tasks and results added later.
+ *
  * @author Mikolaj Izdebski
  */
 public class WorkflowBuilder implements Builder<Workflow> {
-    private final List<Task> tasks = new ArrayList<>();
-    private final List<Result> results = new ArrayList<>();
+    private final AppendOnlyList<Task> tasks = new AppendOnlyList<>();
+    private final AppendOnlyList<Result> results = new AppendOnlyList<>();
 
     /** Creates the builder with default initial state. */
     public WorkflowBuilder() {}
@@ -51,6 +53,6 @@ public class WorkflowBuilder implements Builder<Workflow> {
 
     @Override
     public Workflow build() {
-        return new Workflow(tasks, results);
+        return new Workflow(tasks.snapshot(), results.snapshot());
     }
 }
@@ -0,0 +1,169 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Difference between two versions of a {@link Workflow}.
+ *
+ * <p>A task of the current workflow is considered changed if the previous workflow has no task
+ * with the same ID, or if that task has different handler, parameters or set of dependencies; the
+ * order in which dependencies are listed is not significant. Changes of a task affect also all
+ * tasks that depend on it, directly or transitively. Tasks that are not affected by any change
+ * would be executed exactly as before.
+ *
+ * @author Mikolaj Izdebski
+ */
+public final class WorkflowDiff {
+    private final Set<String> changedTaskIds;
+    private final Set<String> affectedTaskIds;
+    private final Set<String> removedTaskIds;
+
+    private WorkflowDiff(
+            Set<String> changedTaskIds, Set<String> affectedTaskIds, Set<String> removedTaskIds) {
+        this.changedTaskIds = Collections.unmodifiableSet(changedTaskIds);
+        this.affectedTaskIds = Collections.unmodifiableSet(affectedTaskIds);
+        this.removedTaskIds = Collections.unmodifiableSet(removedTaskIds);
+    }
+
+    private static boolean sameParameters(List<Parameter> a, List<Parameter> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).getName().equals(b.get(i).getName())
+                    || !a.get(i).getValue().equals(b.get(i).getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determines whether two tasks have the same definition, that is the same handler, parameters
+     * and set of dependencies. Task IDs and order of dependencies are not compared.
+     *
+     * @param a the first task
+     * @param b the second task
+     * @return {@code true} if and only if both tasks have the same definition
+     */
+    public static boolean isSameDefinition(Task a, Task b) {
+        return a.getHandler().equals(b.getHandler())
+                && Set.copyOf(a.getDependencies()).equals(Set.copyOf(b.getDependencies()))
+                && sameParameters(a.getParameters(), b.getParameters());
+    }
+
+    /**
+     * Computes difference between two versions of a workflow.
+     *
+     * @param previous previous version of the workflow
+     * @param current current version of the workflow
+     * @return workflow difference
+     * @throws IllegalArgumentException if the current workflow is not valid, as determined by
+     *     {@link WorkflowGraph#compile(Workflow)}
+     */
+    public static WorkflowDiff compute(Workflow previous, Workflow current) {
+        return compute(previous, WorkflowGraph.compile(current));
+    }
+
+    /**
+     * Computes difference between previous version of a workflow and current version of the
+     * workflow, given as its compiled graph.
+     *
+     * @param previous previous version of the workflow
+     * @param current graph of current version of the workflow
+     * @return workflow difference
+     */
+    public static WorkflowDiff compute(Workflow previous, WorkflowGraph current) {
+        Map<String, Task> previousTasks = new HashMap<>();
+        for (Task task : previous.getTasks()) {
+            previousTasks.put(task.getId(), task);
+        }
+
+        Set<String> changed = new LinkedHashSet<>();
+        Set<String> affected = new LinkedHashSet<>();
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int i = 0; i < current.size(); i++) {
+            Task task = current.getTask(i);
+            Task previousTask = previousTasks.remove(task.getId());
+            if (previousTask == null || !isSameDefinition(previousTask, task)) {
+                changed.add(task.getId());
+                affected.add(task.getId());
+                queue.add(i);
+            }
+        }
+        // Propagate changes along reverse dependency edges
+        while (!queue.isEmpty()) {
+            int index = queue.remove();
+            for (int n = 0; n < current.getDependentCount(index); n++) {
+                int dependent = current.getDependent(index, n);
+                if (affected.add(current.getTask(dependent).getId())) {
+                    queue.add(dependent);
+                }
+            }
+        }
+
+        return new WorkflowDiff(changed, affected, new LinkedHashSet<>(previousTasks.keySet()));
+    }
+
+    /**
+     * Determines IDs of tasks of the current workflow which are new or which definition has
+     * changed.
+     *
+     * @return set of changed task IDs
+     */
+    public Set<String> getChangedTaskIds() {
+        return changedTaskIds;
+    }
+
+    /**
+     * Determines IDs of tasks of the current workflow which are changed or depend, directly or
+     * transitively, on changed tasks.
+     *
+     * @return set of affected task IDs
+     */
+    public Set<String> getAffectedTaskIds() {
+        return affectedTaskIds;
+    }
+
+    /**
+     * Determines IDs of tasks of the previous workflow which are not present in the current
+     * workflow.
+     *
+     * @return set of removed task IDs
+     */
+    public Set<String> getRemovedTaskIds() {
+        return removedTaskIds;
+    }
+
+    /**
+     * Determines whether task with given ID is affected by changes.
+     *
+     * @param taskId task ID
+     * @return {@code true} if and only if the task is affected
+     */
+    public boolean isAffected(String taskId) {
+        return affectedTaskIds.contains(taskId);
+    }
+}
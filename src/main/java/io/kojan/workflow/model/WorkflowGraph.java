@@ -0,0 +1,251 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled, immutable dependency graph of {@link Workflow} tasks.
+ *
+ * <p>Each task is identified by an index from 0 to {@code size() - 1}, assigned in the order in
+ * which tasks appear in the workflow. Dependency edges, as well as reverse (dependent) edges, are
+ * stored in compressed sparse row form as primitive arrays. Dependencies of each task are kept in
+ * the same order in which they are listed in the task.
+ *
+ * <p>The graph is validated when it is compiled: task IDs must be unique, all dependencies must
+ * refer to tasks of the workflow and dependencies must not form cycles.
+ *
+ * @author Mikolaj Izdebski
+ */
+public final class WorkflowGraph {
+    private final List<Task> tasks;
+    private final Map<String, Integer> indices;
+    private final int[] dependencyOffsets;
+    private final int[] dependencies;
+    private final int[] dependentOffsets;
+    private final int[] dependents;
+    private final int[] topologicalOrder;
+
+    private WorkflowGraph(List<Task> tasks) {
+        int n = tasks.size();
+        this.tasks = Collections.unmodifiableList(new ArrayList<>(tasks));
+        indices = new HashMap<>(n * 2);
+        for (int i = 0; i < n; i++) {
+            Task task = tasks.get(i);
+            if (indices.putIfAbsent(task.getId(), i) != null) {
+                throw new IllegalArgumentException("Duplicate task ID " + task.getId());
+            }
+        }
+
+        dependencyOffsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            dependencyOffsets[i + 1] = dependencyOffsets[i] + tasks.get(i).getDependencies().size();
+        }
+        dependencies = new int[dependencyOffsets[n]];
+        dependentOffsets = new int[n + 1];
+        for (int i = 0, e = 0; i < n; i++) {
+            Task task = tasks.get(i);
+            for (String dependencyId : task.getDependencies()) {
+                Integer dependency = indices.get(dependencyId);
+                if (dependency == null) {
+                    throw new IllegalArgumentException(
+                            task + " depends on non-existent task " + dependencyId);
+                }
+                dependencies[e++] = dependency;
+                dependentOffsets[dependency + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            dependentOffsets[i + 1] += dependentOffsets[i];
+        }
+        dependents = new int[dependencies.length];
+        int[] fill = new int[n];
+        for (int i = 0; i < n; i++) {
+            for (int e = dependencyOffsets[i]; e < dependencyOffsets[i + 1]; e++) {
+                int dependency = dependencies[e];
+                dependents[dependentOffsets[dependency] + fill[dependency]++] = i;
+            }
+        }
+
+        topologicalOrder = sort();
+    }
+
+    // Kahn's algorithm; fails if some tasks could not be ordered due to a cycle
+    private int[] sort() {
+        int n = tasks.size();
+        int[] pending = new int[n];
+        int[] order = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < n; i++) {
+            pending[i] = getDependencyCount(i);
+            if (pending[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int i = order[head++];
+            for (int e = dependentOffsets[i]; e < dependentOffsets[i + 1]; e++) {
+                if (--pending[dependents[e]] == 0) {
+                    order[tail++] = dependents[e];
+                }
+            }
+        }
+        if (tail < n) {
+            throw new IllegalArgumentException("Dependency cycle detected: " + findCycle(pending));
+        }
+        return order;
+    }
+
+    private String findCycle(int[] pending) {
+        int n = tasks.size();
+        int[] visited = new int[n];
+        int i = 0;
+        while (pending[i] == 0) {
+            i++;
+        }
+        // Every unordered task has at least one unordered dependency, so following such
+        // dependencies must eventually revisit a task
+        for (int step = 1; visited[i] == 0; step++) {
+            visited[i] = step;
+            for (int e = dependencyOffsets[i]; e < dependencyOffsets[i + 1]; e++) {
+                if (pending[dependencies[e]] != 0) {
+                    i = dependencies[e];
+                    break;
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder(tasks.get(i).getId());
+        int start = i;
+        do {
+            for (int e = dependencyOffsets[i]; e < dependencyOffsets[i + 1]; e++) {
+                if (pending[dependencies[e]] != 0) {
+                    i = dependencies[e];
+                    break;
+                }
+            }
+            sb.append(" -> ").append(tasks.get(i).getId());
+        } while (i != start);
+        return sb.toString();
+    }
+
+    /**
+     * Compiles dependency graph of tasks of given workflow.
+     *
+     * @param workflow the workflow of which graph should be compiled
+     * @return compiled workflow graph
+     * @throws IllegalArgumentException if task IDs are not unique, some dependency refers to a
+     *     non-existent task or dependencies form a cycle
+     */
+    public static WorkflowGraph compile(Workflow workflow) {
+        return new WorkflowGraph(workflow.getTasks());
+    }
+
+    /**
+     * Determines number of tasks in the graph.
+     *
+     * @return number of tasks
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * Determines all tasks of the graph, ordered by their index.
+     *
+     * @return list of tasks
+     */
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * Obtains task with given index.
+     *
+     * @param index task index
+     * @return the task
+     */
+    public Task getTask(int index) {
+        return tasks.get(index);
+    }
+
+    /**
+     * Determines index of task with given ID.
+     *
+     * @param taskId task ID
+     * @return task index, or {@code -1} if there is no such task in the graph
+     */
+    public int indexOf(String taskId) {
+        Integer index = indices.get(taskId);
+        return index != null ? index : -1;
+    }
+
+    /**
+     * Determines number of dependencies of given task.
+     *
+     * @param index task index
+     * @return number of dependencies
+     */
+    public int getDependencyCount(int index) {
+        return dependencyOffsets[index + 1] - dependencyOffsets[index];
+    }
+
+    /**
+     * Obtains index of a dependency of given task.
+     *
+     * @param index task index
+     * @param n position of dependency, from 0 to {@code getDependencyCount(index) - 1}
+     * @return index of the dependency task
+     */
+    public int getDependency(int index, int n) {
+        return dependencies[dependencyOffsets[index] + n];
+    }
+
+    /**
+     * Determines number of tasks that directly depend on given task.
+     *
+     * @param index task index
+     * @return number of dependent tasks
+     */
+    public int getDependentCount(int index) {
+        return dependentOffsets[index + 1] - dependentOffsets[index];
+    }
+
+    /**
+     * Obtains index of a task that directly depends on given task.
+     *
+     * @param index task index
+     * @param n position of dependent, from 0 to {@code getDependentCount(index) - 1}
+     * @return index of the dependent task
+     */
+    public int getDependent(int index, int n) {
+        return dependents[dependentOffsets[index] + n];
+    }
+
+    /**
+     * Obtains task indices in topological order, in which each task comes after all of its
+     * dependencies.
+     *
+     * @return array of task indices in topological order
+     */
+    public int[] getTopologicalOrder() {
+        return topologicalOrder.clone();
+    }
+}
@@ -0,0 +1,220 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+import io.kojan.xml.XMLException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming reader of {@link Workflow}s in XML form.
+ *
+ * <p>Unlike {@link Workflow#readFromXML(Path)}, which builds the whole workflow in memory, this
+ * reader passes each {@link Task} and {@link Result} to a consumer as soon as it has been parsed,
+ * so that memory usage stays bounded regardless of the workflow size. The XML format accepted is
+ * the same as the one written by {@link Workflow#writeToXML(Path)} and by {@link WorkflowWriter}.
+ *
+ * @author Mikolaj Izdebski
+ */
+public final class WorkflowReader {
+    private WorkflowReader() {}
+
+    /**
+     * Reads a workflow as XML from the specified {@link Reader}, passing its tasks and results to
+     * given consumers in document order.
+     *
+     * @param reader XML stream to deserialize data from
+     * @param taskConsumer consumer of workflow tasks
+     * @param resultConsumer consumer of workflow results
+     * @throws XMLException in case an exception occurs during XML deserialization
+     */
+    public static void read(
+            Reader reader, Consumer<Task> taskConsumer, Consumer<Result> resultConsumer)
+            throws XMLException {
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+            XMLStreamReader xsr = factory.createXMLStreamReader(reader);
+            try {
+                readWorkflow(xsr, taskConsumer, resultConsumer);
+            } finally {
+                xsr.close();
+            }
+        } catch (XMLStreamException | IllegalArgumentException | DateTimeException e) {
+            throw new XMLException(e);
+        }
+    }
+
+    /**
+     * Reads a workflow from an XML file at specified {@link Path}, passing its tasks and results
+     * to given consumers in document order.
+     *
+     * @param path path to XML file to deserialize data from
+     * @param taskConsumer consumer of workflow tasks
+     * @param resultConsumer consumer of workflow results
+     * @throws IOException in case I/O error occurs when reading the file
+     * @throws XMLException in case an exception occurs during XML deserialization
+     */
+    public static void read(
+            Path path, Consumer<Task> taskConsumer, Consumer<Result> resultConsumer)
+            throws IOException, XMLException {
+        try (Reader reader = Files.newBufferedReader(path)) {
+            read(reader, taskConsumer, resultConsumer);
+        }
+    }
+
+    private static void readWorkflow(
+            XMLStreamReader xsr, Consumer<Task> taskConsumer, Consumer<Result> resultConsumer)
+            throws XMLStreamException, XMLException {
+        xsr.nextTag();
+        expectElement(xsr, "workflow");
+        while (xsr.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (xsr.getLocalName()) {
+                case "task" -> taskConsumer.accept(readTask(xsr));
+                case "result" -> resultConsumer.accept(readResult(xsr));
+                default -> throw unexpectedElement(xsr, "workflow");
+            }
+        }
+    }
+
+    private static Task readTask(XMLStreamReader xsr) throws XMLStreamException, XMLException {
+        TaskBuilder builder = new TaskBuilder();
+        Set<String> present = new HashSet<>();
+        while (xsr.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (nextElement(xsr, present)) {
+                case "id" -> builder.setId(xsr.getElementText());
+                case "handler" -> builder.setHandler(xsr.getElementText());
+                case "dependency" -> builder.addDependency(xsr.getElementText());
+                case "parameter" -> builder.addParameter(readParameter(xsr));
+                default -> throw unexpectedElement(xsr, "task");
+            }
+        }
+        requireElements(xsr, "task", present, "id", "handler");
+        return builder.build();
+    }
+
+    private static Parameter readParameter(XMLStreamReader xsr)
+            throws XMLStreamException, XMLException {
+        ParameterBuilder builder = new ParameterBuilder();
+        Set<String> present = new HashSet<>();
+        while (xsr.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (nextElement(xsr, present)) {
+                case "name" -> builder.setName(xsr.getElementText());
+                case "value" -> builder.setValue(xsr.getElementText());
+                default -> throw unexpectedElement(xsr, "parameter");
+            }
+        }
+        requireElements(xsr, "parameter", present, "name", "value");
+        return builder.build();
+    }
+
+    private static Result readResult(XMLStreamReader xsr) throws XMLStreamException, XMLException {
+        ResultBuilder builder = new ResultBuilder();
+        Set<String> present = new HashSet<>();
+        while (xsr.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (nextElement(xsr, present)) {
+                case "id" -> builder.setId(xsr.getElementText());
+                case "task" -> builder.setTaskId(xsr.getElementText());
+                case "artifact" -> builder.addArtifact(readArtifact(xsr));
+                case "outcome" -> builder.setOutcome(TaskOutcome.valueOf(xsr.getElementText()));
+                case "outcomeReason" -> builder.setOutcomeReason(xsr.getElementText());
+                case "timeStarted" ->
+                        builder.setTimeStarted(LocalDateTime.parse(xsr.getElementText()));
+                case "timeFinished" ->
+                        builder.setTimeFinished(LocalDateTime.parse(xsr.getElementText()));
+                case "inputDigest" -> builder.setInputDigest(xsr.getElementText());
+                default -> throw unexpectedElement(xsr, "result");
+            }
+        }
+        requireElements(
+                xsr, "result", present, "id", "task", "outcome", "timeStarted", "timeFinished");
+        return builder.build();
+    }
+
+    private static Artifact readArtifact(XMLStreamReader xsr)
+            throws XMLStreamException, XMLException {
+        ArtifactBuilder builder = new ArtifactBuilder();
+        Set<String> present = new HashSet<>();
+        while (xsr.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            switch (nextElement(xsr, present)) {
+                case "type" -> builder.setType(xsr.getElementText());
+                case "name" -> builder.setName(xsr.getElementText());
+                case "size" -> builder.setSize(Long.valueOf(xsr.getElementText()));
+                case "digest" -> builder.setDigest(xsr.getElementText());
+                case "encoding" -> builder.setEncoding(xsr.getElementText());
+                default -> throw unexpectedElement(xsr, "artifact");
+            }
+        }
+        requireElements(xsr, "artifact", present, "type", "name");
+        return builder.build();
+    }
+
+    private static void expectElement(XMLStreamReader xsr, String name) throws XMLException {
+        if (!xsr.isStartElement() || !xsr.getLocalName().equals(name)) {
+            throw new XMLException(
+                    "Expected element <"
+                            + name
+                            + "> at line "
+                            + xsr.getLocation().getLineNumber());
+        }
+    }
+
+    private static String nextElement(XMLStreamReader xsr, Set<String> present) {
+        String name = xsr.getLocalName();
+        present.add(name);
+        return name;
+    }
+
+    // Required elements match attributes that are not optional in model entities, except for
+    // outcome reason, which is omitted by WorkflowWriter when it is null
+    private static void requireElements(
+            XMLStreamReader xsr, String parent, Set<String> present, String... names)
+            throws XMLException {
+        for (String name : names) {
+            if (!present.contains(name)) {
+                throw new XMLException(
+                        "Missing element <"
+                                + name
+                                + "> inside <"
+                                + parent
+                                + "> ending at line "
+                                + xsr.getLocation().getLineNumber());
+            }
+        }
+    }
+
+    private static XMLException unexpectedElement(XMLStreamReader xsr, String parent) {
+        return new XMLException(
+                "Unexpected element <"
+                        + xsr.getLocalName()
+                        + "> inside <"
+                        + parent
+                        + "> at line "
+                        + xsr.getLocation().getLineNumber());
+    }
+}
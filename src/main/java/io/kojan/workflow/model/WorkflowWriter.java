@@ -0,0 +1,219 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+import io.kojan.xml.XMLException;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Streaming writer of {@link Workflow}s in XML form.
+ *
+ * <p>Unlike {@link Workflow#writeToXML(Path)}, which requires the whole workflow to be built in
+ * memory first, this writer serializes each {@link Task} and {@link Result} as soon as it is
+ * passed to it, which allows results to be appended incrementally while the workflow is being
+ * executed. All tasks must be written before any result. The workflow document is completed when
+ * the writer is closed. The XML format produced is the same as the one written by {@link
+ * Workflow#writeToXML(Path)}.
+ *
+ * @author Mikolaj Izdebski
+ */
+public class WorkflowWriter implements Closeable {
+    private final Writer writer;
+    private final boolean ownsWriter;
+    private final XMLStreamWriter xsw;
+    private int depth;
+    private boolean resultsStarted;
+
+    /**
+     * Creates a workflow writer that serializes XML to the specified {@link Writer}. The writer is
+     * not closed when this workflow writer is closed.
+     *
+     * @param writer XML stream to serialize data to
+     * @throws XMLException in case an exception occurs during XML serialization
+     */
+    public WorkflowWriter(Writer writer) throws XMLException {
+        this(writer, false);
+    }
+
+    /**
+     * Creates a workflow writer that serializes XML to a file at specified {@link Path}.
+     *
+     * @param path path to XML file to serialize data to
+     * @throws IOException in case I/O error occurs when opening the file
+     * @throws XMLException in case an exception occurs during XML serialization
+     */
+    public WorkflowWriter(Path path) throws IOException, XMLException {
+        this(Files.newBufferedWriter(path), true);
+    }
+
+    private WorkflowWriter(Writer writer, boolean ownsWriter) throws XMLException {
+        this.writer = writer;
+        this.ownsWriter = ownsWriter;
+        try {
+            xsw = XMLOutputFactory.newInstance().createXMLStreamWriter(writer);
+            xsw.writeStartDocument("UTF-8", "1.0");
+            startElement("workflow");
+        } catch (XMLStreamException | RuntimeException e) {
+            // Writer opened by this object would not be closed by anyone else
+            if (ownsWriter) {
+                try {
+                    writer.close();
+                } catch (IOException ce) {
+                    e.addSuppressed(ce);
+                }
+            }
+            if (e instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new XMLException(e);
+        }
+    }
+
+    private void indent() throws XMLStreamException {
+        xsw.writeCharacters("\n");
+        for (int i = 0; i < depth; i++) {
+            xsw.writeCharacters("  ");
+        }
+    }
+
+    private void startElement(String name) throws XMLStreamException {
+        indent();
+        xsw.writeStartElement(name);
+        depth++;
+    }
+
+    private void endElement() throws XMLStreamException {
+        depth--;
+        indent();
+        xsw.writeEndElement();
+    }
+
+    private void textElement(String name, Object value) throws XMLStreamException {
+        if (value != null) {
+            indent();
+            xsw.writeStartElement(name);
+            xsw.writeCharacters(value.toString());
+            xsw.writeEndElement();
+        }
+    }
+
+    /**
+     * Writes a {@link Task} to the workflow being serialized.
+     *
+     * @param task the task to write
+     * @throws XMLException in case an exception occurs during XML serialization
+     * @throws IllegalStateException if any result has already been written
+     */
+    public void writeTask(Task task) throws XMLException {
+        if (resultsStarted) {
+            throw new IllegalStateException("Tasks must be written before results");
+        }
+        try {
+            startElement("task");
+            textElement("id", task.getId());
+            textElement("handler", task.getHandler());
+            for (String dependency : task.getDependencies()) {
+                textElement("dependency", dependency);
+            }
+            for (Parameter parameter : task.getParameters()) {
+                startElement("parameter");
+                textElement("name", parameter.getName());
+                textElement("value", parameter.getValue());
+                endElement();
+            }
+            endElement();
+        } catch (XMLStreamException e) {
+            throw new XMLException(e);
+        }
+    }
+
+    /**
+     * Writes a {@link Result} to the workflow being serialized.
+     *
+     * @param result the result to write
+     * @throws XMLException in case an exception occurs during XML serialization
+     */
+    public void writeResult(Result result) throws XMLException {
+        resultsStarted = true;
+        try {
+            startElement("result");
+            textElement("id", result.getId());
+            textElement("task", result.getTaskId());
+            for (Artifact artifact : result.getArtifacts()) {
+                startElement("artifact");
+                textElement("type", artifact.getType());
+                textElement("name", artifact.getName());
+                textElement("size", artifact.getSize());
+                textElement("digest", artifact.getDigest());
+                textElement("encoding", artifact.getEncoding());
+                endElement();
+            }
+            textElement("outcome", result.getOutcome());
+            textElement("outcomeReason", result.getOutcomeReason());
+            textElement("timeStarted", result.getTimeStarted());
+            textElement("timeFinished", result.getTimeFinished());
+            textElement("inputDigest", result.getInputDigest());
+            endElement();
+        } catch (XMLStreamException e) {
+            throw new XMLException(e);
+        }
+    }
+
+    /**
+     * Flushes all data written so far to the underlying stream. The data does not form a complete
+     * XML document until the writer is closed.
+     *
+     * @throws IOException in case I/O error occurs when flushing the stream
+     */
+    public void flush() throws IOException {
+        try {
+            xsw.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Completes the workflow document and closes the writer.
+     *
+     * @throws IOException in case I/O error occurs when writing or closing the stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            endElement();
+            xsw.writeCharacters("\n");
+            xsw.writeEndDocument();
+            xsw.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            if (ownsWriter) {
+                writer.close();
+            } else {
+                writer.flush();
+            }
+        }
+    }
+}
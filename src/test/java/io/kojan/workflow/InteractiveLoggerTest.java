@@ -0,0 +1,67 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.kojan.workflow.model.Task;
+import io.kojan.workflow.model.Workflow;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class InteractiveLoggerTest {
+    @Test
+    void burstOfEventsIsRateLimited() {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        int count = 20000;
+        InteractiveLogger logger =
+                new InteractiveLogger(count, new PrintStream(bos, false, StandardCharsets.UTF_8));
+        Workflow workflow = new Workflow(List.of(), List.of());
+        long startTime = System.nanoTime();
+        logger.workflowRunning(workflow);
+        for (int i = 0; i < count; i++) {
+            logger.taskRunning(workflow, new Task("t" + i, "h", List.of(), List.of()));
+        }
+        logger.workflowSucceeded(workflow);
+        long elapsedMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+        String output = bos.toString(StandardCharsets.UTF_8);
+        int rendered = 0;
+        for (String line : output.split("\n")) {
+            if (line.contains("Task(t") || line.contains("Workflow ")) {
+                rendered++;
+            }
+        }
+        int dropped = 0;
+        Matcher matcher = Pattern.compile("\\.\\.\\. (\\d+) more events").matcher(output);
+        while (matcher.find()) {
+            dropped += Integer.parseInt(matcher.group(1));
+        }
+        // Every event is either rendered or counted, and the burst does not fit into the queue
+        assertEquals(count + 2, rendered + dropped);
+        assertTrue(dropped > 0);
+        // Status line is rendered once per frame, and once more when the workflow finishes
+        int frames = output.split("\\[ Tasks: ", -1).length - 1;
+        assertTrue(frames <= elapsedMillis / 100 + 2, frames + " frames in " + elapsedMillis);
+        assertTrue(output.endsWith("all: " + count + " ]\n"));
+    }
+}
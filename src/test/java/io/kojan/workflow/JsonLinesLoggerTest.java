@@ -0,0 +1,52 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.kojan.workflow.model.Task;
+import io.kojan.workflow.model.Workflow;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class JsonLinesLoggerTest {
+    @TempDir Path tempDir;
+
+    @Test
+    void allRecordsAreWritten() throws Exception {
+        Path path = tempDir.resolve("log.jsonl");
+        Workflow workflow = new Workflow(List.of(), List.of());
+        int count = 50000;
+        try (JsonLinesLogger logger = new JsonLinesLogger(path)) {
+            logger.workflowRunning(workflow);
+            for (int i = 0; i < count; i++) {
+                logger.taskRunning(workflow, new Task("t\"" + i, "h", List.of(), List.of()));
+            }
+            logger.workflowSucceeded(workflow);
+            logger.flush();
+        }
+        List<String> lines = Files.readAllLines(path);
+        assertEquals(count + 2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"event\":\"workflowRunning\""));
+        assertTrue(lines.get(1).endsWith(",\"task\":\"t\\\"0\"}"));
+        assertTrue(lines.get(count).endsWith(",\"task\":\"t\\\"" + (count - 1) + "\"}"));
+        assertTrue(lines.get(count + 1).startsWith("{\"event\":\"workflowSucceeded\""));
+    }
+}
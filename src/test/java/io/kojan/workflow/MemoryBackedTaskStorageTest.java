@@ -0,0 +1,105 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.kojan.workflow.model.Task;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MemoryBackedTaskStorageTest {
+    @TempDir Path tempDir;
+
+    private final List<String> released = new ArrayList<>();
+
+    private final TaskStorage disk =
+            new TaskStorage() {
+                @Override
+                public Path getResultDir(Task task, String resultId) {
+                    return tempDir.resolve("result").resolve(resultId);
+                }
+
+                @Override
+                public Path getWorkDir(Task task, String resultId) {
+                    return tempDir.resolve("disk").resolve(resultId);
+                }
+
+                @Override
+                public void releaseWorkDir(Task task, String resultId, Path workDir) {
+                    released.add(resultId);
+                }
+            };
+
+    private static Task task(String id) {
+        return new Task(id, "handler", List.of(), List.of());
+    }
+
+    private MemoryBackedTaskStorage storage(long budget, Map<String, Long> sizes) {
+        return new MemoryBackedTaskStorage(
+                disk, tempDir.resolve("memory"), budget, task -> sizes.get(task.getId()));
+    }
+
+    @Test
+    void workDirsFallBackToDiskWhenBudgetIsExhausted() {
+        MemoryBackedTaskStorage storage = storage(100, Map.of("a", 60L, "b", 60L, "c", 40L));
+        Path memory = tempDir.resolve("memory");
+        Path disk = tempDir.resolve("disk");
+
+        Path a = storage.getWorkDir(task("a"), "ra");
+        assertEquals(memory.resolve("ra"), a);
+        assertEquals(60, storage.getReservedMemory());
+        // Does not fit in the remaining budget
+        Path b = storage.getWorkDir(task("b"), "rb");
+        assertEquals(disk.resolve("rb"), b);
+        // Fits exactly
+        Path c = storage.getWorkDir(task("c"), "rc");
+        assertEquals(memory.resolve("rc"), c);
+        assertEquals(100, storage.getReservedMemory());
+
+        storage.releaseWorkDir(task("b"), "rb", b);
+        assertEquals(List.of("rb"), released);
+        storage.releaseWorkDir(task("a"), "ra", a);
+        assertEquals(40, storage.getReservedMemory());
+        assertEquals(List.of("rb"), released);
+        // Released budget is used again
+        assertEquals(memory.resolve("rb"), storage.getWorkDir(task("b"), "rb"));
+        assertEquals(100, storage.getReservedMemory());
+        assertEquals(
+                tempDir.resolve("result").resolve("ra"), storage.getResultDir(task("a"), "ra"));
+    }
+
+    @Test
+    void workDirInUseIsNotSharedInMemory() {
+        MemoryBackedTaskStorage storage = storage(100, Map.of("a", 10L));
+        Path first = storage.getWorkDir(task("a"), "ra");
+        Path second = storage.getWorkDir(task("a"), "ra");
+        assertEquals(tempDir.resolve("memory").resolve("ra"), first);
+        assertEquals(tempDir.resolve("disk").resolve("ra"), second);
+        assertEquals(10, storage.getReservedMemory());
+    }
+
+    @Test
+    void workDirFallsBackToDiskWhenFileSystemIsFull() {
+        MemoryBackedTaskStorage storage = storage(Long.MAX_VALUE, Map.of("a", Long.MAX_VALUE / 2));
+        assertEquals(tempDir.resolve("disk").resolve("ra"), storage.getWorkDir(task("a"), "ra"));
+        assertEquals(0, storage.getReservedMemory());
+    }
+}
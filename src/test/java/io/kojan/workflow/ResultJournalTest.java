@@ -0,0 +1,161 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.kojan.workflow.ResultJournal.SyncPolicy;
+import io.kojan.workflow.model.Artifact;
+import io.kojan.workflow.model.Result;
+import io.kojan.workflow.model.TaskOutcome;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultJournalTest {
+    @TempDir Path tempDir;
+
+    private static Result result(String id, String taskId, TaskOutcome outcome) {
+        LocalDateTime time = LocalDateTime.of(2026, 1, 2, 3, 4, 5);
+        return new Result(id, taskId, List.of(), outcome, "reason", time, time);
+    }
+
+    private static List<String> ids(List<Result> results) {
+        return results.stream().map(Result::getId).toList();
+    }
+
+    private Path journalPath() {
+        return tempDir.resolve("journal");
+    }
+
+    private void append(Result... results) throws IOException {
+        try (ResultJournal journal = new ResultJournal(journalPath(), SyncPolicy.ON_FLUSH)) {
+            for (Result result : results) {
+                journal.append(result);
+            }
+        }
+    }
+
+    private List<Result> replay() throws IOException {
+        try (ResultJournal journal = new ResultJournal(journalPath(), SyncPolicy.NEVER)) {
+            return journal.getReplayedResults();
+        }
+    }
+
+    private void appendRaw(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer header = ByteBuffer.allocate(8);
+        header.putInt(payload.length).putInt((int) crc.getValue());
+        Files.write(journalPath(), header.array(), StandardOpenOption.APPEND);
+        Files.write(journalPath(), payload, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    void resultsAreReplayed() throws Exception {
+        append(result("1", "a", TaskOutcome.SUCCESS), result("2", "b", TaskOutcome.FAILURE));
+        append(result("3", "c", TaskOutcome.SUCCESS));
+        List<Result> results = replay();
+        assertEquals(List.of("1", "2", "3"), ids(results));
+        assertEquals("b", results.get(1).getTaskId());
+        assertEquals(TaskOutcome.FAILURE, results.get(1).getOutcome());
+    }
+
+    @Test
+    void tornTailIsDiscarded() throws Exception {
+        append(result("1", "a", TaskOutcome.SUCCESS), result("2", "b", TaskOutcome.SUCCESS));
+        long size = Files.size(journalPath());
+        try (var channel = Files.newByteChannel(journalPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+        assertEquals(List.of("1"), ids(replay()));
+        append(result("3", "c", TaskOutcome.SUCCESS));
+        assertEquals(List.of("1", "3"), ids(replay()));
+    }
+
+    @Test
+    void undecodableRecordIsSkipped() throws Exception {
+        append(result("1", "a", TaskOutcome.SUCCESS));
+        long size = Files.size(journalPath());
+        appendRaw(new byte[] {'K', 'W', 'F', 'B', 99});
+        assertEquals(List.of("1"), ids(replay()));
+        // Journal was compacted, dropping the undecodable record
+        assertEquals(size, Files.size(journalPath()));
+        appendRaw(new byte[] {'K', 'W', 'F', 'B', 99});
+        append(result("2", "b", TaskOutcome.SUCCESS));
+        assertEquals(List.of("1", "2"), ids(replay()));
+    }
+
+    @Test
+    void compaction() throws Exception {
+        append(
+                result("1", "a", TaskOutcome.SUCCESS),
+                result("2", "b", TaskOutcome.SUCCESS),
+                result("3", "a", TaskOutcome.SUCCESS),
+                result("4", "b", TaskOutcome.FAILURE),
+                result("5", "b", TaskOutcome.ERROR));
+        assertEquals(List.of("2", "3", "5"), ids(replay()));
+        long size = Files.size(journalPath());
+        assertEquals(List.of("2", "3", "5"), ids(replay()));
+        assertEquals(size, Files.size(journalPath()));
+        assertTrue(Files.notExists(tempDir.resolve("journal.compact")));
+    }
+
+    @Test
+    void journalIsLocked() throws Exception {
+        try (ResultJournal journal = new ResultJournal(journalPath(), SyncPolicy.NEVER)) {
+            journal.append(result("1", "a", TaskOutcome.SUCCESS));
+            assertThrows(IOException.class, () -> replay());
+        }
+        assertEquals(List.of("1"), ids(replay()));
+    }
+
+    @Test
+    void failedBatchIsReportedOnlyToItsFlushes() throws Exception {
+        // Result which cannot be encoded, as its artifact is missing
+        LocalDateTime time = LocalDateTime.of(2026, 1, 2, 3, 4, 5);
+        Result broken =
+                new Result(
+                        "broken",
+                        "b",
+                        Arrays.asList((Artifact) null),
+                        TaskOutcome.SUCCESS,
+                        null,
+                        time,
+                        time);
+        try (ResultJournal journal = new ResultJournal(journalPath(), SyncPolicy.ON_COMMIT)) {
+            journal.append(result("1", "a", TaskOutcome.SUCCESS));
+            journal.flush();
+            journal.append(broken);
+            assertThrows(IOException.class, journal::flush);
+            // Failure is not sticky, later group commits succeed
+            journal.append(result("2", "c", TaskOutcome.SUCCESS));
+            journal.flush();
+            journal.flush();
+        }
+        assertEquals(List.of("1", "2"), ids(replay()));
+    }
+}
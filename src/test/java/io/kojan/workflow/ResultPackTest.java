@@ -0,0 +1,159 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.kojan.workflow.model.Artifact;
+import io.kojan.workflow.model.Result;
+import io.kojan.workflow.model.TaskOutcome;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultPackTest {
+    @TempDir Path tempDir;
+
+    private static List<String> digests(List<Artifact> artifacts) {
+        return artifacts.stream().map(a -> a.getName() + ":" + a.getDigest()).toList();
+    }
+
+    private static Result result(List<Artifact> artifacts) {
+        LocalDateTime time = LocalDateTime.of(2026, 1, 2, 3, 4, 5);
+        return new Result("id", "task", artifacts, TaskOutcome.SUCCESS, "reason", time, time);
+    }
+
+    // Result directory with a directory artifact containing an executable script, a plain file,
+    // an empty directory and a symbolic link, and a single file artifact
+    private Result createResult(Path resultDir) throws IOException {
+        Path tree = Files.createDirectories(resultDir.resolve("tree"));
+        Files.writeString(tree.resolve("run.sh"), "#!/bin/sh\n");
+        Files.setPosixFilePermissions(
+                tree.resolve("run.sh"), PosixFilePermissions.fromString("rwxr-x---"));
+        Files.writeString(tree.resolve("data.txt"), "data");
+        Files.createDirectories(tree.resolve("empty"));
+        Files.createSymbolicLink(tree.resolve("link"), Path.of("data.txt"));
+        Files.writeString(resultDir.resolve("single.txt"), "single");
+        Files.setPosixFilePermissions(
+                resultDir.resolve("single.txt"), PosixFilePermissions.fromString("rw-------"));
+        return result(
+                ArtifactDigester.digestArtifacts(
+                        List.of(new Artifact("dir", "tree"), new Artifact("file", "single.txt")),
+                        resultDir));
+    }
+
+    @Test
+    void packedArtifactsAreExtractedWithTheirTypesAndModes() throws IOException {
+        Path resultDir = tempDir.resolve("result");
+        Result result = createResult(resultDir);
+        assertTrue(ResultPack.pack(resultDir, result));
+        assertFalse(Files.exists(resultDir));
+
+        ResultPack pack = ResultPack.open(ResultPack.getPackPath(resultDir));
+        assertEquals(digests(result.getArtifacts()), digests(pack.getResult().getArtifacts()));
+        assertTrue(ArtifactDigester.verifyPackedArtifacts(result.getArtifacts(), pack, true));
+        try (InputStream is = pack.open("single.txt")) {
+            assertEquals("single", new String(is.readAllBytes()));
+        }
+        assertThrows(IOException.class, () -> pack.open("tree/link"));
+
+        Path dir = tempDir.resolve("extracted");
+        pack.extract("tree", dir);
+        pack.extract("single.txt", dir);
+        Path tree = dir.resolve("tree");
+        assertEquals("#!/bin/sh\n", Files.readString(tree.resolve("run.sh")));
+        assertEquals(
+                "rwxr-x---",
+                PosixFilePermissions.toString(
+                        Files.getPosixFilePermissions(tree.resolve("run.sh"))));
+        assertEquals("data", Files.readString(tree.resolve("data.txt")));
+        assertTrue(Files.isDirectory(tree.resolve("empty")));
+        assertTrue(Files.isSymbolicLink(tree.resolve("link")));
+        assertEquals(Path.of("data.txt"), Files.readSymbolicLink(tree.resolve("link")));
+        assertEquals("single", Files.readString(dir.resolve("single.txt")));
+        assertEquals(
+                "rw-------",
+                PosixFilePermissions.toString(
+                        Files.getPosixFilePermissions(dir.resolve("single.txt"))));
+        // Extracted copy is a faithful copy of the artifact
+        assertEquals(
+                digests(result.getArtifacts()),
+                digests(
+                        ArtifactDigester.digestArtifacts(
+                                List.of(
+                                        new Artifact("dir", "tree"),
+                                        new Artifact("file", "single.txt")),
+                                dir)));
+    }
+
+    @Test
+    void resultWithSymbolicLinkArtifactIsNotPacked() throws IOException {
+        Path resultDir = Files.createDirectories(tempDir.resolve("result"));
+        Files.writeString(tempDir.resolve("outside.txt"), "outside");
+        Files.createSymbolicLink(resultDir.resolve("link"), tempDir.resolve("outside.txt"));
+        assertFalse(ResultPack.pack(resultDir, result(List.of(new Artifact("file", "link")))));
+        assertTrue(Files.isSymbolicLink(resultDir.resolve("link")));
+        assertFalse(Files.exists(ResultPack.getPackPath(resultDir)));
+    }
+
+    private static void overwrite(Path path, long position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+
+    @Test
+    void corruptedPackIsDetected() throws IOException {
+        Path resultDir = tempDir.resolve("result");
+        Result result = createResult(resultDir);
+        ResultPack.pack(resultDir, result);
+        Path packPath = ResultPack.getPackPath(resultDir);
+        byte[] original = Files.readAllBytes(packPath);
+
+        // Damaged artifact content is found only by full verification
+        int dataOffset = new String(original, "ISO-8859-1").indexOf("single");
+        overwrite(packPath, dataOffset, "SINGLE".getBytes());
+        ResultPack damaged = ResultPack.open(packPath);
+        assertTrue(ArtifactDigester.verifyPackedArtifacts(result.getArtifacts(), damaged, false));
+        assertFalse(ArtifactDigester.verifyPackedArtifacts(result.getArtifacts(), damaged, true));
+
+        // Damaged trailer, header or central directory make the pack unreadable
+        Files.write(packPath, original);
+        overwrite(packPath, original.length - 1, new byte[] {0});
+        assertThrows(IOException.class, () -> ResultPack.open(packPath));
+        Files.write(packPath, original);
+        overwrite(packPath, 4, new byte[] {0, 0, 0, 1});
+        assertThrows(IOException.class, () -> ResultPack.open(packPath));
+        Files.write(packPath, original);
+        long directoryOffset = ByteBuffer.wrap(original, original.length - 12, 8).getLong();
+        overwrite(packPath, directoryOffset, new byte[] {0x7F, 0, 0, 0});
+        assertThrows(IOException.class, () -> ResultPack.open(packPath));
+        Files.write(packPath, List.of("truncated"));
+        assertThrows(IOException.class, () -> ResultPack.open(packPath));
+    }
+}
@@ -0,0 +1,104 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.kojan.workflow.model.Task;
+import io.kojan.workflow.model.TaskOutcome;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class TaskCoordinatorTest {
+    private static final Task TASK = new Task("a", "handler", List.of(), List.of());
+
+    private static final TaskExecutionContext CONTEXT =
+            new TaskExecutionContext() {
+                @Override
+                public Task getTask() {
+                    return TASK;
+                }
+
+                @Override
+                public List<FinishedTask> getDependencies() {
+                    return List.of();
+                }
+
+                @Override
+                public Path getWorkDir() {
+                    return Path.of("work");
+                }
+
+                @Override
+                public Path getResultDir() {
+                    return Path.of("result");
+                }
+
+                @Override
+                public List<Path> getDependencyArtifacts(String type) {
+                    return List.of();
+                }
+
+                @Override
+                public Path getDependencyArtifact(String type) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public Path addArtifact(String type, String name) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+
+    @Test
+    void taskFailsWhenNoWorkerIsAvailable() throws Exception {
+        try (TaskCoordinator coordinator = new TaskCoordinator(0, Duration.ofSeconds(30))) {
+            coordinator.setWorkerWaitTimeout(Duration.ofMillis(100));
+            TaskTermination termination =
+                    assertThrows(
+                            TaskTermination.class,
+                            () -> coordinator.createTaskHandler(TASK).handleTask(CONTEXT));
+            assertEquals(TaskOutcome.ERROR, termination.getOutcome());
+            assertTrue(termination.getMessage().contains("No remote worker"));
+        }
+    }
+
+    @Test
+    void waitingTaskFailsWhenCoordinatorIsClosed() throws Exception {
+        TaskCoordinator coordinator = new TaskCoordinator(0, Duration.ofSeconds(30));
+        CompletableFuture<TaskTermination> result =
+                CompletableFuture.supplyAsync(
+                        () -> {
+                            try {
+                                coordinator.createTaskHandler(TASK).handleTask(CONTEXT);
+                                return null;
+                            } catch (TaskTermination termination) {
+                                return termination;
+                            }
+                        });
+        Thread.sleep(100);
+        coordinator.close();
+        TaskTermination termination = result.get(10, TimeUnit.SECONDS);
+        assertEquals(TaskOutcome.ERROR, termination.getOutcome());
+        assertTrue(termination.getMessage().contains("closed"));
+    }
+}
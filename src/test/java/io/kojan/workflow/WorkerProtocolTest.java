@@ -0,0 +1,273 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.kojan.workflow.WorkerProtocol.Response;
+import io.kojan.workflow.model.Artifact;
+import io.kojan.workflow.model.Parameter;
+import io.kojan.workflow.model.Result;
+import io.kojan.workflow.model.Task;
+import io.kojan.workflow.model.TaskOutcome;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorkerProtocolTest {
+    @TempDir Path tempDir;
+
+    private final List<String> resolvedArtifacts = Collections.synchronizedList(new ArrayList<>());
+
+    /** Handler instantiated by the worker, which copies content of "input" artifact. */
+    public static class CopyHandler implements TaskHandler {
+        @Override
+        public void handleTask(TaskExecutionContext context) throws TaskTermination {
+            try {
+                String content = Files.readString(context.getDependencyArtifact("input"));
+                Files.writeString(context.addArtifact("output", "copy.txt"), content);
+            } catch (IOException e) {
+                TaskTermination.error(e.getMessage());
+            }
+            TaskTermination.fail("Copied " + context.getTask().getParameter("label"));
+        }
+    }
+
+    /** Handler instantiated by the worker, which counts its instances. */
+    public static class CountingHandler implements TaskHandler {
+        static final AtomicInteger instances = new AtomicInteger();
+        static final AtomicInteger closed = new AtomicInteger();
+
+        public CountingHandler() {
+            instances.incrementAndGet();
+        }
+
+        @Override
+        public void handleTask(TaskExecutionContext context) throws TaskTermination {
+            TaskTermination.success("Counted");
+        }
+
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+        }
+    }
+
+    private class Context implements TaskExecutionContext {
+        private final Task task;
+        private final List<FinishedTask> dependencies;
+
+        Context(Task task, List<FinishedTask> dependencies) {
+            this.task = task;
+            this.dependencies = dependencies;
+        }
+
+        @Override
+        public Task getTask() {
+            return task;
+        }
+
+        @Override
+        public List<FinishedTask> getDependencies() {
+            return dependencies;
+        }
+
+        @Override
+        public Path getWorkDir() {
+            return tempDir.resolve("work");
+        }
+
+        @Override
+        public Path getResultDir() {
+            return tempDir.resolve("result");
+        }
+
+        @Override
+        public List<Path> getDependencyArtifacts(String type) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Path getDependencyArtifact(String type) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Path addArtifact(String type, String name) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private DataInputStream in;
+    private DataOutputStream out;
+    private Thread worker;
+
+    private void startWorker() throws IOException {
+        PipedInputStream workerIn = new PipedInputStream();
+        PipedOutputStream executorOut = new PipedOutputStream(workerIn);
+        PipedInputStream executorIn = new PipedInputStream();
+        PipedOutputStream workerOut = new PipedOutputStream(executorIn);
+        worker =
+                new Thread(
+                        () -> {
+                            try {
+                                TaskWorker.serve(workerIn, workerOut);
+                                workerOut.close();
+                            } catch (IOException e) {
+                                // Test fails on missing response
+                            }
+                        });
+        worker.start();
+        in = new DataInputStream(new BufferedInputStream(executorIn));
+        out = new DataOutputStream(new BufferedOutputStream(executorOut));
+    }
+
+    @Test
+    void responseToOtherLeaseIsRejected() throws Exception {
+        Files.createDirectories(tempDir.resolve("result"));
+        Parameter label = new Parameter("label", "it");
+        Task task = new Task("b", CountingHandler.class.getName(), List.of(), List.of(label));
+        startWorker();
+        Context context = new Context(task, List.of());
+        WorkerProtocol.writeRequest(out, 1, task.getHandler(), context);
+        assertThrows(IOException.class, () -> WorkerProtocol.readResponse(in, out, context, 2));
+        out.close();
+        worker.join();
+    }
+
+    @Test
+    void handlersAreClosedOnRequest() throws Exception {
+        Files.createDirectories(tempDir.resolve("result"));
+        Task task = new Task("b", CountingHandler.class.getName(), List.of(), List.of());
+        Context context = new Context(task, List.of());
+        CountingHandler.instances.set(0);
+        CountingHandler.closed.set(0);
+        startWorker();
+        for (int token = 0; token < 2; token++) {
+            WorkerProtocol.writeRequest(out, token, task.getHandler(), context);
+            WorkerProtocol.readResponse(in, out, context, token);
+        }
+        WorkerProtocol.writeCloseHandlers(out);
+        WorkerProtocol.writeRequest(out, 2, task.getHandler(), context);
+        WorkerProtocol.readResponse(in, out, context, 2);
+        assertEquals(2, CountingHandler.instances.get());
+        assertEquals(1, CountingHandler.closed.get());
+        out.close();
+        worker.join();
+        assertEquals(2, CountingHandler.closed.get());
+    }
+
+    @Test
+    void dependencyArtifactsAreResolvedOnDemand() throws Exception {
+        Path dependencyDir = Files.createDirectories(tempDir.resolve("dependency"));
+        Files.writeString(dependencyDir.resolve("in.txt"), "content");
+        Files.createDirectories(tempDir.resolve("result"));
+        Task dependencyTask = new Task("a", "x", List.of(), List.of());
+        LocalDateTime time = LocalDateTime.of(2026, 1, 2, 3, 4, 5);
+        Result dependencyResult =
+                new Result(
+                        "1",
+                        "a",
+                        List.of(new Artifact("unused", "big.bin"), new Artifact("input", "in.txt")),
+                        TaskOutcome.SUCCESS,
+                        "ok",
+                        time,
+                        time);
+        FinishedTask dependency =
+                new FinishedTask(dependencyTask, dependencyResult, dependencyDir) {
+                    @Override
+                    public Path getArtifact(Artifact artifact) {
+                        resolvedArtifacts.add(artifact.getName());
+                        return super.getArtifact(artifact);
+                    }
+                };
+        Parameter label = new Parameter("label", "it");
+        Task task = new Task("b", CopyHandler.class.getName(), List.of("a"), List.of(label));
+
+        startWorker();
+        Context context = new Context(task, List.of(dependency));
+        WorkerProtocol.writeRequest(out, 7, task.getHandler(), context);
+        Response response = WorkerProtocol.readResponse(in, out, context, 7);
+        out.close();
+        worker.join();
+
+        assertEquals(TaskOutcome.FAILURE, response.outcome);
+        assertEquals("Copied it", response.outcomeReason);
+        assertEquals(1, response.artifacts.size());
+        assertEquals("output", response.artifacts.get(0).getType());
+        assertEquals("copy.txt", response.artifacts.get(0).getName());
+        assertEquals("content", Files.readString(tempDir.resolve("result").resolve("copy.txt")));
+        assertEquals(List.of("in.txt"), resolvedArtifacts);
+    }
+
+    @Test
+    void unavailableDependencyArtifactFailsOnlyItsTask() throws Exception {
+        Files.createDirectories(tempDir.resolve("result"));
+        Task dependencyTask = new Task("a", "x", List.of(), List.of());
+        LocalDateTime time = LocalDateTime.of(2026, 1, 2, 3, 4, 5);
+        Result dependencyResult =
+                new Result(
+                        "1",
+                        "a",
+                        List.of(new Artifact("input", "in.txt")),
+                        TaskOutcome.SUCCESS,
+                        "ok",
+                        time,
+                        time);
+        FinishedTask dependency =
+                new FinishedTask(dependencyTask, dependencyResult, tempDir.resolve("dependency")) {
+                    @Override
+                    public Path getArtifact(Artifact artifact) {
+                        resolvedArtifacts.add(artifact.getName());
+                        throw new IllegalStateException("Artifact was removed");
+                    }
+                };
+        Parameter label = new Parameter("label", "it");
+        Task task = new Task("b", CopyHandler.class.getName(), List.of("a"), List.of(label));
+        Task next = new Task("c", CountingHandler.class.getName(), List.of(), List.of());
+
+        startWorker();
+        Context context = new Context(task, List.of(dependency));
+        WorkerProtocol.writeRequest(out, 1, task.getHandler(), context);
+        Response response = WorkerProtocol.readResponse(in, out, context, 1);
+        assertEquals(TaskOutcome.ERROR, response.outcome);
+        assertTrue(response.outcomeReason.contains("not available"), response.outcomeReason);
+        assertEquals(List.of("in.txt"), resolvedArtifacts);
+
+        // Connection remains usable for subsequent tasks
+        Context nextContext = new Context(next, List.of());
+        WorkerProtocol.writeRequest(out, 2, next.getHandler(), nextContext);
+        assertEquals(
+                TaskOutcome.SUCCESS, WorkerProtocol.readResponse(in, out, nextContext, 2).outcome);
+        out.close();
+        worker.join();
+    }
+}
@@ -0,0 +1,128 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.kojan.workflow.model.Result;
+import io.kojan.workflow.model.Task;
+import io.kojan.workflow.model.TaskOutcome;
+import io.kojan.workflow.model.Workflow;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorkflowEngineTest {
+    @TempDir Path tempDir;
+
+    private final CountDownLatch released = new CountDownLatch(1);
+    private final AtomicInteger closedFactories = new AtomicInteger();
+
+    private final TaskStorage storage =
+            new TaskStorage() {
+                @Override
+                public Path getResultDir(Task task, String resultId) {
+                    return tempDir.resolve("result").resolve(task.getId() + "-" + resultId);
+                }
+
+                @Override
+                public Path getWorkDir(Task task, String resultId) {
+                    return tempDir.resolve("work").resolve(task.getId() + "-" + resultId);
+                }
+            };
+
+    // Task "blocked" cannot get capacity until task "releaser" has been handled
+    private final TaskThrottle throttle =
+            new TaskThrottle() {
+                @Override
+                public void acquireCapacity(Task task) {
+                    if (task.getId().startsWith("blocked")) {
+                        try {
+                            released.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+
+                @Override
+                public void releaseCapacity(Task task) {}
+            };
+
+    private final TaskHandlerFactory handlerFactory =
+            new TaskHandlerFactory() {
+                @Override
+                public TaskHandler createTaskHandler(Task task) {
+                    return context -> {
+                        if (context.getTask().getId().equals("releaser")) {
+                            released.countDown();
+                        }
+                        TaskTermination.success("Handled");
+                    };
+                }
+
+                @Override
+                public void closeHandlers() {
+                    closedFactories.incrementAndGet();
+                }
+            };
+
+    private static Workflow workflow(String... taskIds) {
+        return new Workflow(
+                List.of(taskIds).stream()
+                        .map(id -> new Task(id, "handler", List.of(), List.of()))
+                        .toList(),
+                List.of());
+    }
+
+    private static void assertSucceeded(Workflow workflow) {
+        for (Result result : workflow.getResults()) {
+            assertEquals(TaskOutcome.SUCCESS, result.getOutcome(), result.getOutcomeReason());
+        }
+    }
+
+    @Test
+    void waitingTaskDoesNotHoldPoolThread() throws Exception {
+        try (WorkflowEngine engine = new WorkflowEngine(1, throttle)) {
+            Workflow workflow = workflow("blocked", "releaser");
+            CompletableFuture<Workflow> future =
+                    engine.submit(workflow, handlerFactory, storage, true, 0);
+            Workflow finished = future.get(30, TimeUnit.SECONDS);
+            assertEquals(2, finished.getResults().size());
+            assertSucceeded(finished);
+        }
+    }
+
+    @Test
+    void sharedHandlerFactoryIsClosedWithEngine() throws Exception {
+        released.countDown();
+        WorkflowEngine engine = new WorkflowEngine(2, throttle);
+        CompletableFuture<Workflow> first =
+                engine.submit(workflow("a", "b"), handlerFactory, storage, true, 0);
+        CompletableFuture<Workflow> second =
+                engine.submit(workflow("c", "d"), handlerFactory, storage, true, 1);
+        assertSucceeded(first.get(30, TimeUnit.SECONDS));
+        assertSucceeded(second.get(30, TimeUnit.SECONDS));
+        assertEquals(0, closedFactories.get());
+        engine.close();
+        assertEquals(1, closedFactories.get());
+    }
+}
@@ -0,0 +1,1183 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.kojan.workflow.model.Artifact;
+import io.kojan.workflow.model.Parameter;
+import io.kojan.workflow.model.Result;
+import io.kojan.workflow.model.Task;
+import io.kojan.workflow.model.TaskOutcome;
+import io.kojan.workflow.model.Workflow;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class WorkflowExecutorTest {
+    @TempDir Path tempDir;
+
+    private final Map<String, TaskHandler> handlers = new ConcurrentHashMap<>();
+    private final List<String> started = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> finished = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+    private final Set<String> brokenTasks = ConcurrentHashMap.newKeySet();
+    private final Set<Path> acquiredWorkDirs = ConcurrentHashMap.newKeySet();
+
+    private final TaskStorage storage =
+            new TaskStorage() {
+                @Override
+                public Path getResultDir(Task task, String resultId) {
+                    return tempDir.resolve("result").resolve(task.getId() + "-" + resultId);
+                }
+
+                @Override
+                public Path getWorkDir(Task task, String resultId) {
+                    if (brokenTasks.contains(task.getId())) {
+                        throw new IllegalStateException("Storage unavailable");
+                    }
+                    Path workDir = tempDir.resolve("work").resolve(task.getId() + "-" + resultId);
+                    if (!acquiredWorkDirs.add(workDir)) {
+                        violations.add(workDir + " acquired twice");
+                    }
+                    return workDir;
+                }
+
+                @Override
+                public void releaseWorkDir(Task task, String resultId, Path workDir) {
+                    acquiredWorkDirs.remove(workDir);
+                }
+            };
+
+    private final TaskThrottle throttle =
+            new TaskThrottle() {
+                @Override
+                public void acquireCapacity(Task task) {}
+
+                @Override
+                public void releaseCapacity(Task task) {}
+            };
+
+    private static Task task(String id, String handler, String... dependencies) {
+        return new Task(id, handler, List.of(dependencies), List.of());
+    }
+
+    private WorkflowExecutor executor(Task... tasks) {
+        Workflow workflow = new Workflow(List.of(tasks), List.of());
+        return new WorkflowExecutor(
+                workflow, task -> handlers.get(task.getHandler()), storage, throttle, true);
+    }
+
+    private static Map<String, Result> results(Workflow workflow) {
+        Map<String, Result> results = new HashMap<>();
+        for (Result result : workflow.getResults()) {
+            results.put(result.getTaskId(), result);
+        }
+        return results;
+    }
+
+    private void addLoggingHandler() {
+        handlers.put(
+                "log",
+                context -> {
+                    Task task = context.getTask();
+                    started.add(task.getId());
+                    for (String dependency : task.getDependencies()) {
+                        if (!finished.contains(dependency)) {
+                            violations.add(task.getId() + " started before " + dependency);
+                        }
+                    }
+                    try {
+                        Files.writeString(context.addArtifact("log", "out.txt"), task.getId());
+                    } catch (Exception e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    finished.add(task.getId());
+                    TaskTermination.success("Logged");
+                });
+    }
+
+    @Test
+    void tasksRunAfterTheirDependencies() {
+        addLoggingHandler();
+        Workflow workflow =
+                executor(
+                                task("e", "log", "c", "d"),
+                                task("d", "log", "b"),
+                                task("c", "log", "a", "b"),
+                                task("b", "log"),
+                                task("a", "log"))
+                        .execute();
+        assertEquals(List.of(), violations);
+        assertEquals(5, started.size());
+        assertEquals("e", finished.get(4));
+        Map<String, Result> results = results(workflow);
+        assertEquals(5, results.size());
+        for (Result result : results.values()) {
+            assertEquals(TaskOutcome.SUCCESS, result.getOutcome());
+        }
+    }
+
+    @Test
+    void dependencyArtifactsAreVisible() {
+        addLoggingHandler();
+        handlers.put(
+                "read",
+                context -> {
+                    try {
+                        String content = Files.readString(context.getDependencyArtifact("log"));
+                        if (!content.equals("a")) {
+                            TaskTermination.fail("Unexpected content " + content);
+                        }
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Read");
+                });
+        Workflow workflow = executor(task("a", "log"), task("b", "read", "a")).execute();
+        assertEquals(TaskOutcome.SUCCESS, results(workflow).get("b").getOutcome());
+    }
+
+    @Test
+    void compressedArtifactsAreDecompressedToTemporaryCopies() throws IOException {
+        String content = "compressible ".repeat(10000);
+        handlers.put(
+                "write",
+                context -> {
+                    try {
+                        Files.writeString(context.addArtifact("data", "data.txt"), content);
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Written");
+                });
+        List<Path> copies = Collections.synchronizedList(new ArrayList<>());
+        handlers.put(
+                "read",
+                context -> {
+                    try {
+                        Path copy = context.getDependencyArtifact("data");
+                        copies.add(copy);
+                        if (!Files.readString(copy).equals(content)) {
+                            TaskTermination.fail("Unexpected content");
+                        }
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Read");
+                });
+        WorkflowExecutor executor = executor(task("a", "write"), task("b", "read", "a"));
+        executor.setArtifactCompression("data"::equals);
+        Map<String, Result> results = results(executor.execute());
+        assertEquals(TaskOutcome.SUCCESS, results.get("b").getOutcome());
+        Result result = results.get("a");
+        assertEquals("gzip", result.getArtifacts().get(0).getEncoding());
+        Path resultDir = tempDir.resolve("result").resolve("a-" + result.getId());
+        assertTrue(Files.isRegularFile(resultDir.resolve("data.txt.gz")));
+        assertFalse(Files.exists(resultDir.resolve("data.txt")));
+        assertEquals(1, copies.size());
+        assertFalse(copies.get(0).startsWith(resultDir));
+        assertFalse(Files.exists(copies.get(0)));
+    }
+
+    @Test
+    void packedCompressedArtifactsKeepTheirBytesAndMode() throws IOException {
+        byte[] content = new byte[100000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 7 * 37);
+        }
+        handlers.put(
+                "write",
+                context -> {
+                    try {
+                        Path path = context.addArtifact("tool", "tool.bin");
+                        Files.write(path, content);
+                        Files.setPosixFilePermissions(
+                                path, PosixFilePermissions.fromString("rwxr-x---"));
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Written");
+                });
+        List<String> modes = Collections.synchronizedList(new ArrayList<>());
+        handlers.put(
+                "read",
+                context -> {
+                    try {
+                        Path copy = context.getDependencyArtifact("tool");
+                        if (!Arrays.equals(Files.readAllBytes(copy), content)) {
+                            TaskTermination.fail("Unexpected content");
+                        }
+                        modes.add(
+                                PosixFilePermissions.toString(
+                                        Files.getPosixFilePermissions(copy)));
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Read");
+                });
+        WorkflowExecutor first = executor(task("a", "write"));
+        first.setArtifactCompression("tool"::equals);
+        first.setResultPacking(true);
+        Result result = results(first.execute()).get("a");
+        assertEquals("gzip", result.getArtifacts().get(0).getEncoding());
+        Path resultDir = tempDir.resolve("result").resolve("a-" + result.getId());
+        assertTrue(Files.isRegularFile(ResultPack.getPackPath(resultDir)));
+
+        Map<String, Result> results =
+                results(executor(task("a", "write"), task("b", "read", "a")).execute());
+        assertEquals(result.getId(), results.get("a").getId());
+        assertEquals(TaskOutcome.SUCCESS, results.get("b").getOutcome());
+        assertEquals(List.of("rwxr-x---"), modes);
+    }
+
+    @Test
+    void alreadyCompressedArtifactsAreNotCompressed() throws IOException {
+        byte[] noise = new byte[100000];
+        new Random(42).nextBytes(noise);
+        handlers.put(
+                "write",
+                context -> {
+                    try {
+                        Path archive = context.addArtifact("archive", "archive.gz");
+                        try (OutputStream os =
+                                new GZIPOutputStream(Files.newOutputStream(archive))) {
+                            os.write("compressible ".repeat(10000).getBytes());
+                        }
+                        Files.write(context.addArtifact("noise", "noise.bin"), noise);
+                        Files.writeString(
+                                context.addArtifact("text", "text.txt"),
+                                "compressible ".repeat(10000));
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Written");
+                });
+        WorkflowExecutor executor = executor(task("a", "write"));
+        executor.setArtifactCompression(type -> true);
+        Result result = results(executor.execute()).get("a");
+        Map<String, String> encodings = new HashMap<>();
+        for (Artifact artifact : result.getArtifacts()) {
+            encodings.put(artifact.getName(), String.valueOf(artifact.getEncoding()));
+        }
+        assertEquals(
+                Map.of("archive.gz", "null", "noise.bin", "null", "text.txt", "gzip"), encodings);
+        Path resultDir = tempDir.resolve("result").resolve("a-" + result.getId());
+        try (Stream<Path> files = Files.list(resultDir)) {
+            assertEquals(
+                    List.of("archive.gz", "noise.bin", "result.xml", "stamp", "text.txt.gz"),
+                    files.map(file -> file.getFileName().toString()).sorted().toList());
+        }
+    }
+
+    @Test
+    void packedResultsAreReusedAndExtractedToTemporaryCopies() throws IOException {
+        addLoggingHandler();
+        WorkflowExecutor executor = executor(task("a", "log"));
+        executor.setResultPacking(true);
+        Result result = results(executor.execute()).get("a");
+        Path resultDir = tempDir.resolve("result").resolve("a-" + result.getId());
+        assertFalse(Files.exists(resultDir));
+        assertTrue(Files.isRegularFile(ResultPack.getPackPath(resultDir)));
+        try (Stream<Path> files = Files.list(tempDir.resolve("result"))) {
+            assertEquals(
+                    List.of(),
+                    files.filter(file -> file.toString().endsWith(".lock")).toList());
+        }
+
+        List<Path> copies = Collections.synchronizedList(new ArrayList<>());
+        handlers.put(
+                "read",
+                context -> {
+                    try {
+                        Path copy = context.getDependencyArtifact("log");
+                        copies.add(copy);
+                        if (!Files.readString(copy).equals("a")) {
+                            TaskTermination.fail("Unexpected content");
+                        }
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Read");
+                });
+        Map<String, Result> results =
+                results(executor(task("a", "log"), task("b", "read", "a")).execute());
+        assertEquals(List.of("a"), started);
+        assertEquals(result.getId(), results.get("a").getId());
+        assertEquals(TaskOutcome.SUCCESS, results.get("b").getOutcome());
+        assertFalse(Files.exists(resultDir));
+        assertEquals(1, copies.size());
+        assertFalse(Files.exists(copies.get(0)));
+    }
+
+    @Test
+    void resultsBeingReadAreNotPacked() throws Exception {
+        addLoggingHandler();
+        List<ResultLock> readers = Collections.synchronizedList(new ArrayList<>());
+        handlers.put(
+                "hold",
+                context -> {
+                    try {
+                        Path dependencyDir = context.getDependencies().get(0).getResultDir();
+                        readers.add(ResultLock.acquireReader(dependencyDir));
+                    } catch (IOException | InterruptedException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Held");
+                });
+        WorkflowExecutor executor = executor(task("a", "log"), task("b", "hold", "a"));
+        executor.setResultPacking(true);
+        Map<String, Result> results = results(executor.execute());
+        Path resultDirA = tempDir.resolve("result").resolve("a-" + results.get("a").getId());
+        Path resultDirB = tempDir.resolve("result").resolve("b-" + results.get("b").getId());
+        assertEquals(1, readers.size());
+        assertTrue(Files.isRegularFile(resultDirA.resolve("out.txt")));
+        assertFalse(Files.exists(ResultPack.getPackPath(resultDirA)));
+        assertFalse(Files.exists(resultDirB));
+        assertTrue(Files.isRegularFile(ResultPack.getPackPath(resultDirB)));
+        readers.get(0).close();
+    }
+
+    @Test
+    void readyTasksAreBatchedWithoutDelay() {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        handlers.put(
+                "batch",
+                new BatchTaskHandler() {
+                    @Override
+                    public void handleTasks(List<TaskExecutionContext> contexts)
+                            throws TaskTermination {
+                        batchSizes.add(contexts.size());
+                        TaskTermination.success("Batched");
+                    }
+
+                    @Override
+                    public void handleTask(TaskExecutionContext context) throws TaskTermination {
+                        batchSizes.add(1);
+                        TaskTermination.success("Handled");
+                    }
+
+                    @Override
+                    public Duration getMaxBatchDelay() {
+                        return Duration.ofMinutes(10);
+                    }
+                });
+        long startTime = System.nanoTime();
+        Workflow workflow =
+                executor(task("a", "batch"), task("b", "batch"), task("c", "batch")).execute();
+        assertTrue(System.nanoTime() - startTime < TimeUnit.MINUTES.toNanos(1));
+        assertEquals(List.of(3), batchSizes);
+        for (Result result : results(workflow).values()) {
+            assertEquals(TaskOutcome.SUCCESS, result.getOutcome());
+        }
+    }
+
+    private Map<String, Result> executeFailingBatch(boolean split, List<Integer> batchSizes) {
+        handlers.put(
+                "batch",
+                new BatchTaskHandler() {
+                    @Override
+                    public void handleTasks(List<TaskExecutionContext> contexts)
+                            throws TaskTermination {
+                        batchSizes.add(contexts.size());
+                        TaskTermination.fail("Batch failed");
+                    }
+
+                    @Override
+                    public void handleTask(TaskExecutionContext context) throws TaskTermination {
+                        batchSizes.add(1);
+                        if (context.getTask().getId().equals("b")) {
+                            TaskTermination.fail("Broken");
+                        }
+                        TaskTermination.success("Handled");
+                    }
+
+                    @Override
+                    public Duration getMaxBatchDelay() {
+                        return Duration.ofMinutes(10);
+                    }
+
+                    @Override
+                    public boolean isFailedBatchSplit() {
+                        return split;
+                    }
+                });
+        return results(
+                executor(task("a", "batch"), task("b", "batch"), task("c", "batch")).execute());
+    }
+
+    @Test
+    void failedBatchIsSplitIntoIndividualTasks() {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        Map<String, Result> results = executeFailingBatch(true, batchSizes);
+        assertEquals(List.of(3, 1, 1, 1), batchSizes);
+        assertEquals(TaskOutcome.SUCCESS, results.get("a").getOutcome());
+        assertEquals(TaskOutcome.FAILURE, results.get("b").getOutcome());
+        assertEquals("Broken", results.get("b").getOutcomeReason());
+        assertEquals(TaskOutcome.SUCCESS, results.get("c").getOutcome());
+    }
+
+    @Test
+    void failedBatchIsNotSplitWhenDisabled() {
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        Map<String, Result> results = executeFailingBatch(false, batchSizes);
+        assertEquals(List.of(3), batchSizes);
+        for (Result result : results.values()) {
+            assertEquals(TaskOutcome.FAILURE, result.getOutcome());
+            assertEquals("Batch failed", result.getOutcomeReason());
+        }
+        assertEquals(3, results.size());
+    }
+
+    private void addSubmittingHandler() {
+        handlers.put(
+                "submit",
+                context -> {
+                    started.add(context.getTask().getId());
+                    // Task depending on the submitting task, and an independent one
+                    context.submitTask(task("x", "log", "gen"));
+                    context.submitTask(task("y", "log"));
+                    context.submitTask(task("x", "log", "gen"));
+                    finished.add(context.getTask().getId());
+                    TaskTermination.success("Submitted");
+                });
+    }
+
+    @Test
+    void submittedTasksAreExecuted() {
+        addLoggingHandler();
+        addSubmittingHandler();
+        Workflow workflow = executor(task("gen", "submit"), task("tail", "log", "gen")).execute();
+        assertEquals(List.of(), violations);
+        assertEquals(Set.of("gen", "tail", "x", "y"), Set.copyOf(started));
+        Map<String, Result> results = results(workflow);
+        assertEquals(4, results.size());
+        for (Result result : results.values()) {
+            assertEquals(TaskOutcome.SUCCESS, result.getOutcome());
+        }
+        assertEquals(
+                List.of(TaskExecutionContext.SUBMITTED_TASKS_ARTIFACT_TYPE),
+                results.get("gen").getArtifacts().stream().map(Artifact::getType).toList());
+
+        // Tasks submitted by a reused result are submitted again, and reused too
+        started.clear();
+        Map<String, Result> reused =
+                results(executor(task("gen", "submit"), task("tail", "log", "gen")).execute());
+        assertEquals(List.of(), started);
+        assertEquals(results.keySet(), reused.keySet());
+        assertEquals(results.get("x").getId(), reused.get("x").getId());
+    }
+
+    @Test
+    void invalidSubmittedTasksAreRejected() {
+        addLoggingHandler();
+        List<String> rejected = Collections.synchronizedList(new ArrayList<>());
+        handlers.put(
+                "submit",
+                context -> {
+                    for (Task task :
+                            List.of(
+                                    task("tail", "other"),
+                                    task("x", "log", "missing"),
+                                    task("gen", "log"))) {
+                        try {
+                            context.submitTask(task);
+                            violations.add(task.getId() + " was accepted");
+                        } catch (TaskTermination e) {
+                            rejected.add(task.getId());
+                        }
+                    }
+                    TaskTermination.success("Submitted");
+                });
+        Map<String, Result> results =
+                results(executor(task("gen", "submit"), task("tail", "log")).execute());
+        assertEquals(List.of(), violations);
+        assertEquals(List.of("tail", "x", "gen"), rejected);
+        assertEquals(Set.of("gen", "tail"), results.keySet());
+    }
+
+    private static Set<String> bruteForceClosure(Map<String, Task> tasks, String id) {
+        Set<String> closure = new HashSet<>();
+        Deque<String> stack = new ArrayDeque<>(tasks.get(id).getDependencies());
+        while (!stack.isEmpty()) {
+            String dependency = stack.pop();
+            if (closure.add(dependency)) {
+                stack.addAll(tasks.get(dependency).getDependencies());
+            }
+        }
+        return closure;
+    }
+
+    @Test
+    void transitiveDependencyArtifactsMatchBruteForceClosure() {
+        Map<String, Set<String>> closures = new ConcurrentHashMap<>();
+        handlers.put(
+                "closure",
+                context -> {
+                    Set<String> ids = new HashSet<>();
+                    try {
+                        for (Path path : context.getTransitiveDependencyArtifacts("log")) {
+                            ids.add(Files.readString(path));
+                        }
+                        Files.writeString(
+                                context.addArtifact("log", "out.txt"), context.getTask().getId());
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    closures.put(context.getTask().getId(), ids);
+                    TaskTermination.success("Done");
+                });
+        // Random DAG, in which each task depends on a few earlier tasks
+        Random random = new Random(42);
+        Map<String, Task> tasks = new LinkedHashMap<>();
+        for (int i = 0; i < 200; i++) {
+            Set<String> dependencies = new TreeSet<>();
+            for (int n = random.nextInt(4); i > 0 && n > 0; n--) {
+                dependencies.add("t" + random.nextInt(i));
+            }
+            Task task = new Task("t" + i, "closure", List.copyOf(dependencies), List.of());
+            tasks.put(task.getId(), task);
+        }
+        executor(tasks.values().toArray(Task[]::new)).execute();
+        assertEquals(tasks.keySet(), closures.keySet());
+        for (String id : tasks.keySet()) {
+            assertEquals(bruteForceClosure(tasks, id), closures.get(id), id);
+        }
+    }
+
+    @Test
+    void failureStopsDependents() {
+        addLoggingHandler();
+        handlers.put("fail", context -> TaskTermination.fail("Broken"));
+        Workflow workflow =
+                executor(
+                                task("a", "fail"),
+                                task("b", "log", "a"),
+                                task("c", "log", "b"),
+                                task("d", "log"))
+                        .execute();
+        assertEquals(List.of("d"), started);
+        Map<String, Result> results = results(workflow);
+        assertEquals(TaskOutcome.FAILURE, results.get("a").getOutcome());
+        assertEquals("Broken", results.get("a").getOutcomeReason());
+        assertEquals(TaskOutcome.SUCCESS, results.get("d").getOutcome());
+        assertEquals(2, results.size());
+    }
+
+    @Test
+    void unexpectedExceptionFinishesTaskWithError() {
+        addLoggingHandler();
+        brokenTasks.add("a");
+        Workflow workflow =
+                executor(task("a", "log"), task("b", "log", "a"), task("c", "log")).execute();
+        Map<String, Result> results = results(workflow);
+        assertEquals(TaskOutcome.ERROR, results.get("a").getOutcome());
+        assertTrue(results.get("a").getOutcomeReason().contains("Storage unavailable"));
+        assertEquals(TaskOutcome.SUCCESS, results.get("c").getOutcome());
+        assertEquals(List.of("c"), started);
+    }
+
+    @Test
+    void cachedFailureIsReusedUntilUnreadable() throws IOException {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        handlers.put(
+                "fail",
+                context -> {
+                    started.add(context.getTask().getId());
+                    TaskTermination.fail("Broken");
+                });
+        WorkflowExecutionListener listener =
+                new WorkflowExecutionListener() {
+                    @Override
+                    public void taskRunning(Workflow workflow, Task task) {
+                        events.add("running");
+                    }
+
+                    @Override
+                    public void taskSucceeded(Workflow workflow, FinishedTask finishedTask) {
+                        events.add("succeeded");
+                    }
+
+                    @Override
+                    public void taskFailed(Workflow workflow, FinishedTask finishedTask) {
+                        events.add("failed");
+                    }
+
+                    @Override
+                    public void taskReused(Workflow workflow, FinishedTask finishedTask) {
+                        events.add("reused");
+                    }
+
+                    @Override
+                    public void taskFailureReused(Workflow workflow, FinishedTask finishedTask) {
+                        events.add("failureReused");
+                    }
+
+                    @Override
+                    public void workflowRunning(Workflow workflow) {}
+
+                    @Override
+                    public void workflowSucceeded(Workflow workflow) {}
+
+                    @Override
+                    public void workflowFailed(Workflow workflow) {}
+                };
+        Result result = null;
+        for (int run = 0; run < 3; run++) {
+            WorkflowExecutor executor = executor(task("a", "fail"));
+            executor.setFailureCacheTtl(Duration.ofHours(1));
+            executor.addExecutionListener(listener);
+            result = results(executor.execute()).get("a");
+            assertEquals(TaskOutcome.FAILURE, result.getOutcome());
+            assertEquals("Broken", result.getOutcomeReason());
+            if (run == 1) {
+                Path resultDir = tempDir.resolve("result").resolve("a-" + result.getId());
+                Files.writeString(resultDir.resolve("result.xml"), "<corrupt");
+            }
+        }
+        assertEquals(List.of("a", "a"), started);
+        assertEquals(List.of("running", "failed", "failureReused", "running", "failed"), events);
+    }
+
+    @Test
+    void tasksProducingTheSameResultAreExecutedOnce() {
+        AtomicInteger handled = new AtomicInteger();
+        handlers.put(
+                "slow",
+                context -> {
+                    handled.incrementAndGet();
+                    try {
+                        Thread.sleep(200);
+                        Files.writeString(context.addArtifact("log", "out.txt"), "slow");
+                    } catch (IOException | InterruptedException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Handled");
+                });
+        // Result directory does not depend on task ID, so that tasks with identical definitions
+        // share it
+        TaskStorage sharedStorage =
+                new TaskStorage() {
+                    @Override
+                    public Path getResultDir(Task task, String resultId) {
+                        return tempDir.resolve("result").resolve(resultId);
+                    }
+
+                    @Override
+                    public Path getWorkDir(Task task, String resultId) {
+                        return tempDir.resolve("work").resolve(task.getId() + "-" + resultId);
+                    }
+                };
+        Workflow workflow =
+                new Workflow(List.of(task("a", "slow"), task("b", "slow")), List.of());
+        Map<String, Result> results =
+                results(
+                        new WorkflowExecutor(
+                                        workflow,
+                                        task -> handlers.get(task.getHandler()),
+                                        sharedStorage,
+                                        throttle,
+                                        true)
+                                .execute());
+        assertEquals(1, handled.get());
+        assertEquals(TaskOutcome.SUCCESS, results.get("a").getOutcome());
+        assertEquals(TaskOutcome.SUCCESS, results.get("b").getOutcome());
+        assertEquals(results.get("a").getId(), results.get("b").getId());
+    }
+
+    @Test
+    void successfulResultIsNotReplacedByFailure() throws IOException {
+        addLoggingHandler();
+        Set<String> failing = ConcurrentHashMap.newKeySet();
+        handlers.put(
+                "check",
+                context -> {
+                    if (failing.contains(context.getTask().getId())) {
+                        TaskTermination.fail("Broken");
+                    }
+                    try {
+                        Files.writeString(context.addArtifact("log", "out.txt"), "checked");
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Checked");
+                });
+        Map<String, Result> firstResults =
+                results(executor(task("a", "log"), task("b", "check", "a")).execute());
+        Result first = firstResults.get("b");
+        Path resultDir = tempDir.resolve("result").resolve("b-" + first.getId());
+        assertTrue(Files.isRegularFile(resultDir.resolve("stamp")));
+        // Dependency executed again invalidates the result, which then fails to be reproduced
+        TaskAttempt.deleteDirectoryIfExists(
+                tempDir.resolve("result").resolve("a-" + firstResults.get("a").getId()));
+        failing.add("b");
+        Map<String, Result> results =
+                results(executor(task("a", "log"), task("b", "check", "a")).execute());
+        assertEquals(List.of("a", "a"), started);
+        assertEquals(TaskOutcome.FAILURE, results.get("b").getOutcome());
+        assertEquals(first.getId(), results.get("b").getId());
+        assertTrue(Files.isRegularFile(resultDir.resolve("stamp")));
+        assertEquals("checked", Files.readString(resultDir.resolve("out.txt")));
+    }
+
+    @Test
+    void erroneousAttemptsAreRetried() {
+        Map<String, Integer> attempts = new ConcurrentHashMap<>();
+        handlers.put(
+                "flaky",
+                context -> {
+                    String id = context.getTask().getId();
+                    int attempt = attempts.merge(id, 1, Integer::sum);
+                    // Task "a" recovers on its third attempt, "b" never recovers and "c" fails
+                    if (id.equals("c")) {
+                        TaskTermination.fail("Broken");
+                    }
+                    if (id.equals("b") || attempt < 3) {
+                        TaskTermination.error("Flaky");
+                    }
+                    TaskTermination.success("Recovered");
+                });
+        List<String> retries = Collections.synchronizedList(new ArrayList<>());
+        WorkflowExecutor executor =
+                executor(task("a", "flaky"), task("b", "flaky"), task("c", "flaky"));
+        executor.setRetryPolicy(
+                RetryPolicy.ofErrors(3, Duration.ofMillis(1), Duration.ofMillis(5)));
+        executor.addExecutionListener(
+                new WorkflowExecutionListener() {
+                    @Override
+                    public void taskRunning(Workflow workflow, Task task) {}
+
+                    @Override
+                    public void taskSucceeded(Workflow workflow, FinishedTask finishedTask) {}
+
+                    @Override
+                    public void taskFailed(Workflow workflow, FinishedTask finishedTask) {}
+
+                    @Override
+                    public void taskRetrying(
+                            Workflow workflow,
+                            FinishedTask finishedTask,
+                            int attempt,
+                            Duration delay) {
+                        retries.add(finishedTask.getTask().getId() + "#" + attempt);
+                    }
+
+                    @Override
+                    public void taskReused(Workflow workflow, FinishedTask finishedTask) {}
+
+                    @Override
+                    public void workflowRunning(Workflow workflow) {}
+
+                    @Override
+                    public void workflowSucceeded(Workflow workflow) {}
+
+                    @Override
+                    public void workflowFailed(Workflow workflow) {}
+                });
+        Map<String, Result> results = results(executor.execute());
+        assertEquals(TaskOutcome.SUCCESS, results.get("a").getOutcome());
+        assertEquals(TaskOutcome.ERROR, results.get("b").getOutcome());
+        assertEquals(TaskOutcome.FAILURE, results.get("c").getOutcome());
+        assertEquals(Map.of("a", 3, "b", 3, "c", 1), attempts);
+        assertEquals(List.of("a#1", "a#2", "b#1", "b#2"), retries.stream().sorted().toList());
+        assertEquals(Set.of(), acquiredWorkDirs);
+    }
+
+    @Test
+    void earlyCutoffReusesResultsOfIdenticalDependencyArtifacts() {
+        addLoggingHandler();
+        // Changing the parameter re-executes task "a", which still writes the same artifact
+        Function<String, WorkflowExecutor> executor =
+                version ->
+                        executor(
+                                new Task(
+                                        "a",
+                                        "log",
+                                        List.of(),
+                                        List.of(new Parameter("v", version))),
+                                task("b", "log", "a"));
+        WorkflowExecutor first = executor.apply("1");
+        first.setEarlyCutoff(true);
+        Result firstResult = results(first.execute()).get("b");
+        WorkflowExecutor second = executor.apply("2");
+        second.setEarlyCutoff(true);
+        Result secondResult = results(second.execute()).get("b");
+        assertEquals(List.of("a", "b", "a"), started);
+        assertEquals(firstResult.getId(), secondResult.getId());
+        assertEquals(TaskOutcome.SUCCESS, secondResult.getOutcome());
+        // Without early cutoff, re-executed dependency invalidates the result
+        results(executor.apply("3").execute());
+        assertEquals(List.of("a", "b", "a", "a", "b"), started);
+        assertEquals(List.of(), violations);
+    }
+
+    @Test
+    void retryBackoffGrowsUpToMaximum() {
+        RetryPolicy policy =
+                RetryPolicy.ofErrors(10, Duration.ofMillis(100), Duration.ofSeconds(1));
+        long[] expected = {100, 200, 400, 800, 1000, 1000};
+        for (int i = 0; i < expected.length; i++) {
+            long backoff = policy.getBackoff(i + 1).toMillis();
+            assertTrue(backoff >= expected[i] / 2 && backoff <= expected[i], backoff + " ms");
+        }
+    }
+
+    @Test
+    void invalidTimeoutFinishesTaskWithError() {
+        addLoggingHandler();
+        WorkflowExecutor executor =
+                executor(
+                        new Task("a", "log", List.of(), List.of(new Parameter("timeout", ""))),
+                        new Task("b", "log", List.of(), List.of(new Parameter("timeout", "PTx"))),
+                        new Task("c", "log", List.of(), List.of(new Parameter("timeout", "-PT1S"))),
+                        new Task("d", "log", List.of(), List.of(new Parameter("timeout", "60"))));
+        executor.setTaskTimeoutPolicy(TaskTimeoutPolicy.fromParameter("timeout", null));
+        Map<String, Result> results = results(executor.execute());
+        for (String id : List.of("a", "b", "c")) {
+            assertEquals(TaskOutcome.ERROR, results.get(id).getOutcome());
+            assertTrue(results.get(id).getOutcomeReason().contains("timeout"));
+        }
+        assertEquals(TaskOutcome.SUCCESS, results.get("d").getOutcome());
+        assertEquals(List.of("d"), started);
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void abandonedAttemptDirectoriesAreReleasedOnExit() throws Exception {
+        List<Path> attemptDirs = Collections.synchronizedList(new ArrayList<>());
+        handlers.put(
+                "stuck",
+                context -> {
+                    attemptDirs.add(context.getResultDir());
+                    // Interrupts are ignored, as by handlers running uninterruptible code
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+                    while (System.nanoTime() < deadline) {
+                        Thread.onSpinWait();
+                    }
+                    try {
+                        Files.writeString(context.addArtifact("log", "late.txt"), "late");
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Too late");
+                });
+        WorkflowExecutor executor =
+                executor(new Task("a", "stuck", List.of(), List.of(new Parameter("t", "PT0.1S"))));
+        executor.setTaskTimeoutPolicy(TaskTimeoutPolicy.fromParameter("t", null));
+        Result result = results(executor.execute()).get("a");
+        assertEquals(TaskOutcome.ERROR, result.getOutcome());
+        assertTrue(result.getOutcomeReason().contains("timed out"));
+        assertEquals(1, attemptDirs.size());
+        awaitCondition(() -> acquiredWorkDirs.isEmpty() && !Files.exists(attemptDirs.get(0)));
+        assertFalse(Files.exists(tempDir.resolve("result").resolve("a-" + result.getId())));
+        assertEquals(List.of(), violations);
+    }
+
+    @Test
+    void timeoutOfHungTaskFailsItsStreamingDependents() throws Exception {
+        CountDownLatch hung = new CountDownLatch(1);
+        handlers.put(
+                "hang",
+                context -> {
+                    try {
+                        Files.writeString(context.getResultDir().resolve("partial.txt"), "partial");
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    context.publishArtifact("log", "partial.txt");
+                    // Interrupts are ignored, as by handlers running uninterruptible code
+                    for (; ; ) {
+                        try {
+                            hung.await();
+                            TaskTermination.success("Released");
+                        } catch (InterruptedException e) {
+                            // Keep hanging
+                        }
+                    }
+                });
+        List<String> streamed = Collections.synchronizedList(new ArrayList<>());
+        handlers.put(
+                "stream",
+                context -> {
+                    context.streamDependencyArtifacts(
+                            "log",
+                            path -> {
+                                try {
+                                    streamed.add(Files.readString(path));
+                                } catch (IOException e) {
+                                    TaskTermination.error(e.toString());
+                                }
+                            });
+                    TaskTermination.success("Streamed");
+                });
+        WorkflowExecutor executor =
+                executor(
+                        new Task("a", "hang", List.of(), List.of(new Parameter("t", "PT1S"))),
+                        task("b", "stream", "a"));
+        executor.setTaskTimeoutPolicy(TaskTimeoutPolicy.fromParameter("t", null));
+        executor.setStreamingTasks(task -> task.getId().equals("b"));
+        try {
+            Map<String, Result> results = results(executor.execute());
+            assertEquals(TaskOutcome.ERROR, results.get("a").getOutcome());
+            assertTrue(results.get("a").getOutcomeReason().contains("timed out"));
+            assertEquals(TaskOutcome.ERROR, results.get("b").getOutcome());
+            assertEquals(List.of("partial"), streamed);
+        } finally {
+            hung.countDown();
+        }
+        awaitCondition(acquiredWorkDirs::isEmpty);
+        assertEquals(List.of(), violations);
+    }
+
+    // Producer publishes two artifacts, waiting until the first one is consumed, then finishes
+    // with given outcome
+    private void addStreamingHandlers(
+            boolean producerSucceeds, boolean consumerCancels, List<String> streamed) {
+        CountDownLatch consumed = new CountDownLatch(1);
+        handlers.put(
+                "produce",
+                context -> {
+                    try {
+                        for (String name : List.of("one", "two")) {
+                            Files.writeString(context.getResultDir().resolve(name), name);
+                            context.publishArtifact("log", name);
+                            if (!consumed.await(10, TimeUnit.SECONDS)) {
+                                TaskTermination.error("Artifact was not consumed");
+                            }
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    if (producerSucceeds) {
+                        TaskTermination.success("Produced");
+                    }
+                    TaskTermination.fail("Broken");
+                });
+        handlers.put(
+                "consume",
+                context -> {
+                    context.streamDependencyArtifacts(
+                            "log",
+                            path -> {
+                                try {
+                                    streamed.add(Files.readString(path));
+                                } catch (IOException e) {
+                                    TaskTermination.error(e.toString());
+                                }
+                                consumed.countDown();
+                                if (consumerCancels) {
+                                    TaskTermination.fail("Enough");
+                                }
+                            });
+                    TaskTermination.success("Consumed");
+                });
+    }
+
+    private Map<String, Result> executeStreaming() {
+        WorkflowExecutor executor = executor(task("a", "produce"), task("b", "consume", "a"));
+        executor.setStreamingTasks(task -> task.getId().equals("b"));
+        return results(executor.execute());
+    }
+
+    @Test
+    void artifactsAreStreamedWhileProducerRuns() {
+        List<String> streamed = Collections.synchronizedList(new ArrayList<>());
+        addStreamingHandlers(true, false, streamed);
+        Map<String, Result> results = executeStreaming();
+        assertEquals(TaskOutcome.SUCCESS, results.get("a").getOutcome());
+        assertEquals(TaskOutcome.SUCCESS, results.get("b").getOutcome());
+        assertEquals(List.of("one", "two"), streamed);
+    }
+
+    @Test
+    void failureOfProducerFailsStreamingConsumer() {
+        List<String> streamed = Collections.synchronizedList(new ArrayList<>());
+        addStreamingHandlers(false, false, streamed);
+        Map<String, Result> results = executeStreaming();
+        assertEquals(TaskOutcome.FAILURE, results.get("a").getOutcome());
+        assertEquals(TaskOutcome.ERROR, results.get("b").getOutcome());
+        assertTrue(
+                results.get("b").getOutcomeReason().startsWith("Streamed dependency failed"),
+                results.get("b").getOutcomeReason());
+        // The first artifact was consumed before the failure, the second one races with it
+        assertEquals("one", streamed.get(0));
+        assertTrue(streamed.size() <= 2);
+        assertEquals(List.of(), violations);
+    }
+
+    @Test
+    void cancelledConsumerDoesNotAffectProducer() {
+        List<String> streamed = Collections.synchronizedList(new ArrayList<>());
+        addStreamingHandlers(true, true, streamed);
+        Map<String, Result> results = executeStreaming();
+        assertEquals(TaskOutcome.SUCCESS, results.get("a").getOutcome());
+        assertEquals(2, results.get("a").getArtifacts().size());
+        assertEquals(TaskOutcome.FAILURE, results.get("b").getOutcome());
+        assertEquals("Enough", results.get("b").getOutcomeReason());
+        assertEquals(List.of("one"), streamed);
+        assertTrue(acquiredWorkDirs.isEmpty());
+        assertEquals(List.of(), violations);
+    }
+
+    @Test
+    void speculativeAttemptOfStragglerWins() throws Exception {
+        List<String> attempts = Collections.synchronizedList(new ArrayList<>());
+        List<Boolean> interrupted = Collections.synchronizedList(new ArrayList<>());
+        handlers.put(
+                "straggle",
+                context -> {
+                    boolean speculative = context.getResultDir().toString().endsWith("speculative");
+                    attempts.add(speculative ? "speculative" : "primary");
+                    if (!speculative) {
+                        try {
+                            Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                        } catch (InterruptedException e) {
+                            interrupted.add(true);
+                        }
+                        TaskTermination.error("Straggled");
+                    }
+                    try {
+                        Files.writeString(context.addArtifact("log", "out.txt"), "speculative");
+                    } catch (IOException e) {
+                        TaskTermination.error(e.toString());
+                    }
+                    TaskTermination.success("Caught up");
+                });
+        Task task = task("a", "straggle");
+        LocalDateTime finished = LocalDateTime.now().minusDays(1);
+        Result historicalResult =
+                new Result(
+                        "historical",
+                        "a",
+                        List.of(),
+                        TaskOutcome.SUCCESS,
+                        "Fast",
+                        finished.minus(Duration.ofMillis(50)),
+                        finished);
+        WorkflowExecutor executor =
+                new WorkflowExecutor(
+                        new Workflow(List.of(task), List.of(historicalResult)),
+                        t -> handlers.get(t.getHandler()),
+                        storage,
+                        throttle,
+                        true);
+        executor.setSpeculativeExecution(2);
+        Result result = results(executor.execute()).get("a");
+        assertEquals(TaskOutcome.SUCCESS, result.getOutcome());
+        assertEquals("Caught up", result.getOutcomeReason());
+        assertEquals(List.of("primary", "speculative"), attempts);
+        Path resultDir = tempDir.resolve("result").resolve("a-" + result.getId());
+        assertEquals("speculative", Files.readString(resultDir.resolve("out.txt")));
+        awaitCondition(() -> !interrupted.isEmpty() && acquiredWorkDirs.isEmpty());
+        assertEquals(List.of(), violations);
+    }
+
+    @Test
+    void overflowingTimeoutIsUnbounded() {
+        addLoggingHandler();
+        WorkflowExecutor executor =
+                executor(
+                        new Task(
+                                "a",
+                                "log",
+                                List.of(),
+                                List.of(new Parameter("t", "PT100000000H"))));
+        executor.setTaskTimeoutPolicy(TaskTimeoutPolicy.fromParameter("t", null));
+        assertEquals(TaskOutcome.SUCCESS, results(executor.execute()).get("a").getOutcome());
+    }
+
+    @Test
+    void invalidWorkflowIsRejected() {
+        assertThrows(
+                IllegalArgumentException.class,
+                () -> executor(task("a", "log", "b"), task("b", "log", "a")));
+        assertThrows(IllegalArgumentException.class, () -> executor(task("a", "log", "x")));
+    }
+
+    @Test
+    void handlersArePreparedWithoutHoldingExecutorMonitor() {
+        addLoggingHandler();
+        handlers.put(
+                "submit",
+                context -> {
+                    context.submitTask(task("b", "log"));
+                    TaskTermination.success("Submitted");
+                });
+        List<String> prepared = Collections.synchronizedList(new ArrayList<>());
+        WorkflowExecutor[] executor = new WorkflowExecutor[1];
+        TaskHandlerFactory handlerFactory =
+                new TaskHandlerFactory() {
+                    @Override
+                    public TaskHandler createTaskHandler(Task task) {
+                        if (!prepared.contains(task.getHandler())) {
+                            violations.add(task.getId() + " handled by unprepared handler");
+                        }
+                        return handlers.get(task.getHandler());
+                    }
+
+                    @Override
+                    public void prepareHandler(Task task) {
+                        if (Thread.holdsLock(executor[0])) {
+                            violations.add(task.getHandler() + " prepared under executor lock");
+                        }
+                        prepared.add(task.getHandler());
+                    }
+                };
+        Workflow workflow = new Workflow(List.of(task("a", "submit")), List.of());
+        executor[0] = new WorkflowExecutor(workflow, handlerFactory, storage, throttle, true);
+        Map<String, Result> results = results(executor[0].execute());
+        assertEquals(List.of(), violations);
+        assertEquals(List.of("submit", "log"), prepared);
+        assertEquals(TaskOutcome.SUCCESS, results.get("b").getOutcome());
+    }
+}
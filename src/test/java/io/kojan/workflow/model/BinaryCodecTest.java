@@ -0,0 +1,150 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BinaryCodecTest {
+    private static final Task TASK =
+            new Task(
+                    "b",
+                    "handler",
+                    List.of("a"),
+                    List.of(new Parameter("key", "value"), new Parameter("key", "other")));
+    private static final Result RESULT =
+            new Result(
+                    "123",
+                    "b",
+                    List.of(
+                            new Artifact("log", "build.log", 42L, "abc", "gzip"),
+                            new Artifact("log", "other.log")),
+                    TaskOutcome.FAILURE,
+                    "failed",
+                    LocalDateTime.of(1969, 1, 2, 3, 4, 5, 6),
+                    LocalDateTime.of(2026, 1, 2, 3, 4, 6, 7000),
+                    "def");
+
+    private static byte[] write(Result result) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        result.writeToBinary(bos);
+        return bos.toByteArray();
+    }
+
+    private static void assertResultEquals(Result expected, Result actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getTaskId(), actual.getTaskId());
+        assertEquals(expected.getArtifacts().size(), actual.getArtifacts().size());
+        for (int i = 0; i < expected.getArtifacts().size(); i++) {
+            Artifact e = expected.getArtifacts().get(i);
+            Artifact a = actual.getArtifacts().get(i);
+            assertEquals(e.getType(), a.getType());
+            assertEquals(e.getName(), a.getName());
+            assertEquals(e.getSize(), a.getSize());
+            assertEquals(e.getDigest(), a.getDigest());
+            assertEquals(e.getEncoding(), a.getEncoding());
+        }
+        assertEquals(expected.getOutcome(), actual.getOutcome());
+        assertEquals(expected.getOutcomeReason(), actual.getOutcomeReason());
+        assertEquals(expected.getTimeStarted(), actual.getTimeStarted());
+        assertEquals(expected.getTimeFinished(), actual.getTimeFinished());
+        assertEquals(expected.getInputDigest(), actual.getInputDigest());
+    }
+
+    @Test
+    void resultRoundTrip() throws Exception {
+        Result result = Result.readFromBinary(new ByteArrayInputStream(write(RESULT)));
+        assertResultEquals(RESULT, result);
+        Artifact artifact = result.getArtifacts().get(1);
+        assertNull(artifact.getSize());
+        assertNull(artifact.getDigest());
+        assertNull(artifact.getEncoding());
+    }
+
+    @Test
+    void workflowRoundTrip() throws Exception {
+        Workflow workflow = new Workflow(List.of(TASK), List.of(RESULT));
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        workflow.writeToBinary(bos);
+        Workflow read = Workflow.readFromBinary(new ByteArrayInputStream(bos.toByteArray()));
+        assertEquals(1, read.getTasks().size());
+        Task task = read.getTasks().get(0);
+        assertEquals("b", task.getId());
+        assertEquals("handler", task.getHandler());
+        assertEquals(List.of("a"), task.getDependencies());
+        assertEquals(2, task.getParameters().size());
+        assertEquals("key", task.getParameters().get(1).getName());
+        assertEquals("other", task.getParameters().get(1).getValue());
+        assertEquals(1, read.getResults().size());
+        assertResultEquals(RESULT, read.getResults().get(0));
+    }
+
+    @Test
+    void trailingDataIsNotConsumed() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        RESULT.writeToBinary(bos);
+        RESULT.writeToBinary(bos);
+        bos.write(7);
+        ByteArrayInputStream is = new ByteArrayInputStream(bos.toByteArray());
+        assertResultEquals(RESULT, Result.readFromBinary(is));
+        assertResultEquals(RESULT, Result.readFromBinary(is));
+        assertEquals(7, is.read());
+        assertEquals(-1, is.read());
+    }
+
+    @Test
+    void badMagic() throws Exception {
+        byte[] bytes = write(RESULT);
+        bytes[0] = 'X';
+        assertThrows(
+                IOException.class, () -> Result.readFromBinary(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void unsupportedVersion() throws Exception {
+        byte[] bytes = write(RESULT);
+        bytes[4] = 2;
+        assertThrows(
+                IOException.class, () -> Result.readFromBinary(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void wrongKind() throws Exception {
+        byte[] bytes = write(RESULT);
+        assertThrows(
+                IOException.class, () -> Workflow.readFromBinary(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test
+    void truncated() throws Exception {
+        byte[] bytes = write(RESULT);
+        for (int length = 0; length < bytes.length; length++) {
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(
+                    IOException.class,
+                    () -> Result.readFromBinary(new ByteArrayInputStream(truncated)));
+        }
+    }
+}
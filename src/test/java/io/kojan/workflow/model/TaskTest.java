@@ -0,0 +1,69 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TaskTest {
+    @Test
+    void parametersAreLookedUpByName() {
+        Task task =
+                new Task(
+                        "t",
+                        "handler",
+                        List.of(),
+                        List.of(new Parameter("a", "1"), new Parameter("b", "2")));
+        assertEquals("1", task.getParameter("a"));
+        assertEquals("2", task.getParameter("b"));
+        assertNull(task.getParameter("c"));
+        assertNull(new Task("u", "handler", List.of(), List.of()).getParameter("a"));
+    }
+
+    @Test
+    void firstOfDuplicateParametersIsFound() {
+        Task task =
+                new Task(
+                        "t",
+                        "handler",
+                        List.of(),
+                        List.of(
+                                new Parameter("a", "1"),
+                                new Parameter("b", "2"),
+                                new Parameter("a", "3")));
+        assertEquals("1", task.getParameter("a"));
+        assertEquals("2", task.getParameter("b"));
+        // All duplicates are kept as parameters
+        assertEquals(3, task.getParameters().size());
+        assertEquals("3", task.getParameters().get(2).getValue());
+    }
+
+    @Test
+    void parameterIndexIsNotAffectedByLaterChangesOfParameterList() {
+        List<Parameter> parameters = new ArrayList<>(List.of(new Parameter("a", "1")));
+        Task task = new Task("t", "handler", List.of(), parameters);
+        assertEquals("1", task.getParameter("a"));
+        parameters.set(0, new Parameter("a", "2"));
+        parameters.add(new Parameter("b", "3"));
+        assertEquals("1", task.getParameter("a"));
+        assertNull(task.getParameter("b"));
+        assertEquals(1, task.getParameters().size());
+    }
+}
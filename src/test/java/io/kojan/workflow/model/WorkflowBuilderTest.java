@@ -0,0 +1,62 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class WorkflowBuilderTest {
+    private static Task task(int i) {
+        return new Task("t" + i, "handler", List.of(), List.of());
+    }
+
+    @Test
+    void builtWorkflowsAreNotAffectedByLaterAdditions() {
+        WorkflowBuilder builder = new WorkflowBuilder();
+        List<Workflow> workflows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            builder.addTask(task(i));
+            workflows.add(builder.build());
+        }
+        LocalDateTime time = LocalDateTime.of(2026, 1, 2, 3, 4, 5);
+        builder.addResult(new Result("r", "t0", List.of(), TaskOutcome.SUCCESS, "", time, time));
+        for (int i = 0; i < 100; i++) {
+            Workflow workflow = workflows.get(i);
+            assertEquals(i + 1, workflow.getTasks().size());
+            assertEquals("t" + i, workflow.getTasks().get(i).getId());
+            assertEquals(0, workflow.getResults().size());
+            assertThrows(IndexOutOfBoundsException.class, () -> workflow.getTasks().get(100));
+        }
+        assertEquals(1, builder.build().getResults().size());
+    }
+
+    @Test
+    void builtWorkflowsAreImmutable() {
+        WorkflowBuilder builder = new WorkflowBuilder();
+        builder.addTask(task(0));
+        Workflow workflow = builder.build();
+        assertThrows(UnsupportedOperationException.class, () -> workflow.getTasks().add(task(1)));
+        assertThrows(UnsupportedOperationException.class, () -> workflow.getTasks().remove(0));
+        Workflow copy = new Workflow(workflow.getTasks(), workflow.getResults());
+        assertSame(workflow.getTasks(), copy.getTasks());
+    }
+}
@@ -0,0 +1,111 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class WorkflowDiffTest {
+    private static Task task(String id, String... dependencies) {
+        return new Task(id, "handler", List.of(dependencies), List.of());
+    }
+
+    private static Workflow workflow(Task... tasks) {
+        return new Workflow(List.of(tasks), List.of());
+    }
+
+    private static final Workflow PREVIOUS =
+            workflow(task("a"), task("b"), task("c", "a", "b"), task("d", "c"), task("e"));
+
+    @Test
+    void unchangedWorkflow() {
+        WorkflowDiff diff =
+                WorkflowDiff.compute(
+                        PREVIOUS,
+                        workflow(
+                                task("e"),
+                                task("d", "c"),
+                                task("c", "a", "b"),
+                                task("b"),
+                                task("a")));
+        assertEquals(Set.of(), diff.getChangedTaskIds());
+        assertEquals(Set.of(), diff.getAffectedTaskIds());
+        assertEquals(Set.of(), diff.getRemovedTaskIds());
+    }
+
+    @Test
+    void addedTasks() {
+        WorkflowDiff diff =
+                WorkflowDiff.compute(
+                        PREVIOUS,
+                        workflow(
+                                task("a"),
+                                task("b"),
+                                task("c", "a", "b"),
+                                task("d", "c"),
+                                task("e"),
+                                task("f", "a"),
+                                task("g", "f")));
+        assertEquals(Set.of("f", "g"), diff.getChangedTaskIds());
+        assertEquals(Set.of("f", "g"), diff.getAffectedTaskIds());
+        assertEquals(Set.of(), diff.getRemovedTaskIds());
+    }
+
+    @Test
+    void removedTasks() {
+        WorkflowDiff diff =
+                WorkflowDiff.compute(PREVIOUS, workflow(task("a"), task("c", "a"), task("e")));
+        assertEquals(Set.of("c"), diff.getChangedTaskIds());
+        assertEquals(Set.of("c"), diff.getAffectedTaskIds());
+        assertEquals(Set.of("b", "d"), diff.getRemovedTaskIds());
+    }
+
+    @Test
+    void modifiedTasksAffectTheirDependents() {
+        Parameter parameter = new Parameter("p", "1");
+        WorkflowDiff diff =
+                WorkflowDiff.compute(
+                        PREVIOUS,
+                        workflow(
+                                new Task("a", "other", List.of(), List.of()),
+                                task("b"),
+                                task("c", "a", "b"),
+                                task("d", "c"),
+                                new Task("e", "handler", List.of(), List.of(parameter))));
+        assertEquals(Set.of("a", "e"), diff.getChangedTaskIds());
+        assertEquals(Set.of("a", "c", "d", "e"), diff.getAffectedTaskIds());
+        assertTrue(diff.isAffected("d"));
+        assertFalse(diff.isAffected("b"));
+    }
+
+    @Test
+    void reorderedDependenciesAreNotChanges() {
+        Task reordered = task("c", "b", "a");
+        assertTrue(WorkflowDiff.isSameDefinition(task("c", "a", "b"), reordered));
+        assertFalse(WorkflowDiff.isSameDefinition(task("c", "a"), reordered));
+        WorkflowDiff diff =
+                WorkflowDiff.compute(
+                        PREVIOUS,
+                        workflow(task("a"), task("b"), reordered, task("d", "c"), task("e")));
+        assertEquals(Set.of(), diff.getChangedTaskIds());
+        assertEquals(Set.of(), diff.getAffectedTaskIds());
+    }
+}
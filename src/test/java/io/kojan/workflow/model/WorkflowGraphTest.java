@@ -0,0 +1,117 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class WorkflowGraphTest {
+    private static Task task(String id, String... dependencies) {
+        return new Task(id, "handler", List.of(dependencies), List.of());
+    }
+
+    private static WorkflowGraph compile(Task... tasks) {
+        return WorkflowGraph.compile(new Workflow(List.of(tasks), List.of()));
+    }
+
+    private static List<String> dependencies(WorkflowGraph graph, String id) {
+        int index = graph.indexOf(id);
+        List<String> ids = new ArrayList<>();
+        for (int n = 0; n < graph.getDependencyCount(index); n++) {
+            ids.add(graph.getTask(graph.getDependency(index, n)).getId());
+        }
+        return ids;
+    }
+
+    private static List<String> dependents(WorkflowGraph graph, String id) {
+        int index = graph.indexOf(id);
+        List<String> ids = new ArrayList<>();
+        for (int n = 0; n < graph.getDependentCount(index); n++) {
+            ids.add(graph.getTask(graph.getDependent(index, n)).getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void adjacency() {
+        WorkflowGraph graph =
+                compile(task("d", "b", "c"), task("b", "a"), task("c", "a"), task("a"));
+        assertEquals(4, graph.size());
+        assertEquals(0, graph.indexOf("d"));
+        assertEquals(-1, graph.indexOf("x"));
+        assertEquals(List.of("b", "c"), dependencies(graph, "d"));
+        assertEquals(List.of(), dependencies(graph, "a"));
+        assertEquals(List.of("b", "c"), dependents(graph, "a"));
+        assertEquals(List.of("d"), dependents(graph, "b"));
+        assertEquals(List.of(), dependents(graph, "d"));
+    }
+
+    @Test
+    void topologicalOrder() {
+        WorkflowGraph graph =
+                compile(task("e", "d"), task("d", "b", "c"), task("b", "a"), task("c"), task("a"));
+        int[] order = graph.getTopologicalOrder();
+        assertEquals(graph.size(), order.length);
+        int[] position = new int[graph.size()];
+        for (int i = 0; i < order.length; i++) {
+            position[order[i]] = i;
+        }
+        for (int i = 0; i < graph.size(); i++) {
+            for (int n = 0; n < graph.getDependencyCount(i); n++) {
+                assertTrue(position[graph.getDependency(i, n)] < position[i]);
+            }
+        }
+    }
+
+    @Test
+    void duplicateTaskId() {
+        Exception e =
+                assertThrows(IllegalArgumentException.class, () -> compile(task("a"), task("a")));
+        assertTrue(e.getMessage().contains("Duplicate task ID a"));
+    }
+
+    @Test
+    void missingDependency() {
+        Exception e =
+                assertThrows(IllegalArgumentException.class, () -> compile(task("a", "x")));
+        assertTrue(e.getMessage().contains("non-existent task x"));
+    }
+
+    @Test
+    void cycle() {
+        Exception e =
+                assertThrows(
+                        IllegalArgumentException.class,
+                        () ->
+                                compile(
+                                        task("a"),
+                                        task("b", "a", "d"),
+                                        task("c", "b"),
+                                        task("d", "c")));
+        assertTrue(e.getMessage().startsWith("Dependency cycle detected: "));
+        String cycle = e.getMessage().substring("Dependency cycle detected: ".length());
+        String[] ids = cycle.split(" -> ");
+        assertEquals(4, ids.length);
+        assertEquals(ids[0], ids[3]);
+        assertEquals(List.of("b", "c", "d"), Stream.of(ids).skip(1).sorted().toList());
+    }
+}
@@ -0,0 +1,196 @@
+/*-
+ * Copyright (c) 2026 Red Hat, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.kojan.workflow.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.kojan.xml.XMLException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class WorkflowReaderTest {
+    private static final Task TASK =
+            new Task("b", "handler", List.of("a"), List.of(new Parameter("key", "value")));
+    private static final Result RESULT =
+            new Result(
+                    "123",
+                    "b",
+                    List.of(new Artifact("log", "build.log")),
+                    TaskOutcome.SUCCESS,
+                    "ok",
+                    LocalDateTime.of(2026, 1, 2, 3, 4, 5),
+                    LocalDateTime.of(2026, 1, 2, 3, 4, 6, 7000));
+
+    private static String write(List<Task> tasks, List<Result> results) throws Exception {
+        StringWriter sw = new StringWriter();
+        try (WorkflowWriter writer = new WorkflowWriter(sw)) {
+            for (Task task : tasks) {
+                writer.writeTask(task);
+            }
+            for (Result result : results) {
+                writer.writeResult(result);
+            }
+        }
+        return sw.toString();
+    }
+
+    private static void read(String xml, List<Task> tasks, List<Result> results)
+            throws XMLException {
+        WorkflowReader.read(new StringReader(xml), tasks::add, results::add);
+    }
+
+    @Test
+    void workflowRoundTrip() throws Exception {
+        List<Task> tasks = new ArrayList<>();
+        List<Result> results = new ArrayList<>();
+        read(write(List.of(TASK), List.of(RESULT)), tasks, results);
+
+        assertEquals(1, tasks.size());
+        Task task = tasks.get(0);
+        assertEquals("b", task.getId());
+        assertEquals("handler", task.getHandler());
+        assertEquals(List.of("a"), task.getDependencies());
+        assertEquals(1, task.getParameters().size());
+        assertEquals("key", task.getParameters().get(0).getName());
+        assertEquals("value", task.getParameters().get(0).getValue());
+
+        assertEquals(1, results.size());
+        Result result = results.get(0);
+        assertEquals("123", result.getId());
+        assertEquals("b", result.getTaskId());
+        assertEquals(TaskOutcome.SUCCESS, result.getOutcome());
+        assertEquals("ok", result.getOutcomeReason());
+        assertEquals(RESULT.getTimeStarted(), result.getTimeStarted());
+        assertEquals(RESULT.getTimeFinished(), result.getTimeFinished());
+        Artifact artifact = result.getArtifacts().get(0);
+        assertEquals("log", artifact.getType());
+        assertEquals("build.log", artifact.getName());
+    }
+
+    @Test
+    void artifactMetadataRoundTrip() throws Exception {
+        Result compressed =
+                new Result(
+                        "1",
+                        "a",
+                        List.of(new Artifact("log", "build.log", 1234L, "ABCDEF", "gzip")),
+                        TaskOutcome.SUCCESS,
+                        "ok",
+                        LocalDateTime.of(2026, 1, 1, 0, 0),
+                        LocalDateTime.of(2026, 1, 1, 0, 1),
+                        "0123");
+        List<Result> results = new ArrayList<>();
+        read(write(List.of(), List.of(compressed)), new ArrayList<>(), results);
+        Result result = results.get(0);
+        assertEquals("0123", result.getInputDigest());
+        Artifact artifact = result.getArtifacts().get(0);
+        assertEquals(1234L, artifact.getSize());
+        assertEquals("ABCDEF", artifact.getDigest());
+        assertEquals("gzip", artifact.getEncoding());
+    }
+
+    @Test
+    void optionalElementsMayBeMissing() throws Exception {
+        Result minimal =
+                new Result(
+                        "1",
+                        "a",
+                        List.of(new Artifact("txt", "a.txt")),
+                        TaskOutcome.FAILURE,
+                        null,
+                        LocalDateTime.of(2026, 1, 1, 0, 0),
+                        LocalDateTime.of(2026, 1, 1, 0, 1));
+        List<Result> results = new ArrayList<>();
+        read(write(List.of(), List.of(minimal)), new ArrayList<>(), results);
+        Result result = results.get(0);
+        assertNull(result.getOutcomeReason());
+        assertEquals(1, result.getArtifacts().size());
+    }
+
+    private static void assertRejected(String xml, String message) {
+        XMLException e =
+                assertThrows(
+                        XMLException.class,
+                        () -> read(xml, new ArrayList<>(), new ArrayList<>()));
+        assertTrue(e.getMessage().contains(message), e.getMessage());
+    }
+
+    @Test
+    void taskWithoutRequiredElementsIsRejected() {
+        assertRejected(
+                "<workflow><task><handler>h</handler></task></workflow>", "Missing element <id>");
+        assertRejected("<workflow><task><id>a</id></task></workflow>", "Missing element <handler>");
+        assertRejected(
+                "<workflow><task><id>a</id><handler>h</handler>"
+                        + "<parameter><name>n</name></parameter></task></workflow>",
+                "Missing element <value>");
+    }
+
+    @Test
+    void resultWithoutRequiredElementsIsRejected() {
+        String times =
+                "<timeStarted>2026-01-01T00:00</timeStarted>"
+                        + "<timeFinished>2026-01-01T00:01</timeFinished>";
+        assertRejected(
+                "<workflow><result><id>1</id><task>a</task>" + times + "</result></workflow>",
+                "Missing element <outcome>");
+        assertRejected(
+                "<workflow><result><id>1</id><outcome>SUCCESS</outcome>"
+                        + times
+                        + "</result></workflow>",
+                "Missing element <task>");
+        assertRejected(
+                "<workflow><result><id>1</id><task>a</task><outcome>SUCCESS</outcome>"
+                        + "<artifact><type>t</type></artifact>"
+                        + times
+                        + "</result></workflow>",
+                "Missing element <name>");
+    }
+
+    @Test
+    void malformedValuesAreRejected() {
+        assertRejected(
+                "<workflow><result><id>1</id><task>a</task><outcome>BOGUS</outcome>"
+                        + "<timeStarted>2026-01-01T00:00</timeStarted>"
+                        + "<timeFinished>2026-01-01T00:01</timeFinished></result></workflow>",
+                "BOGUS");
+        assertThrows(
+                XMLException.class,
+                () ->
+                        read(
+                                "<workflow><result><id>1</id><task>a</task>"
+                                        + "<outcome>SUCCESS</outcome>"
+                                        + "<timeStarted>yesterday</timeStarted>"
+                                        + "<timeFinished>2026-01-01T00:01</timeFinished>"
+                                        + "</result></workflow>",
+                                new ArrayList<>(),
+                                new ArrayList<>()));
+    }
+
+    @Test
+    void unexpectedElementIsRejected() {
+        assertRejected(
+                "<workflow><task><id>a</id><handler>h</handler><bogus/></task></workflow>",
+                "Unexpected element <bogus>");
+    }
+}